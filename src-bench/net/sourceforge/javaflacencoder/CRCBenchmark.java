@@ -0,0 +1,122 @@
+package net.sourceforge.javaflacencoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frame checksums: the sliced CRC16 against feeding it one byte at a time, and the table-driven CRC8 against the bit by bit
+ * implementation it replaced. Sizes go from a frame header to a large frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CRCBenchmark {
+	/**
+	 * The CRC8 implementation used before the lookup table, kept here as the baseline.
+	 */
+	private static final class BitwiseCRC8 {
+		private static final int divisorCRC8 = 0x107 << 23;
+		private static final byte[] fake = { 0 };
+		private int workingCRC8;
+		private int workingCRC8Count;
+
+		private BitwiseCRC8() {
+			reset();
+		}
+
+		private byte checksum() {
+			workingCRC8Count += 8;
+			return updateCRC8(fake, 0, 1);
+		}
+
+		private void reset() {
+			workingCRC8 = 0;
+			workingCRC8Count = 8;
+		}
+
+		private byte updateCRC8(final byte[] inSet, final int start, final int end) {
+			final int topMask = 1 << 31;
+			int current = start;
+			while (current < end) {
+				int topBit = workingCRC8 & topMask;
+				while (workingCRC8Count > 8 && topBit == 0) {
+					workingCRC8Count--;
+					workingCRC8 = workingCRC8 << 1;
+					topBit = workingCRC8 & topMask;
+				}
+				if (workingCRC8Count > 8) {
+					workingCRC8 = workingCRC8 ^ divisorCRC8;
+				} else {
+					workingCRC8 = workingCRC8 | (inSet[current++] << 24 >>> 8);
+					workingCRC8Count += 8;
+				}
+			}
+			return (byte) (workingCRC8 >>> 24);
+		}
+	}
+
+	private final BitwiseCRC8 bitwiseCRC8 = new BitwiseCRC8();
+	private final CRC16 crc16 = new CRC16();
+	private final CRC8 crc8 = new CRC8();
+	private byte[] data;
+	@Param({ "12", "4096", "65536" })
+	public int size;
+
+	@Benchmark
+	public byte crc8Bitwise() {
+		bitwiseCRC8.reset();
+		bitwiseCRC8.updateCRC8(data, 0, data.length);
+		return bitwiseCRC8.checksum();
+	}
+
+	@Benchmark
+	public byte crc8Table() {
+		crc8.reset();
+		crc8.updateCRC8(data, 0, data.length);
+		return crc8.checksum();
+	}
+
+	@Benchmark
+	public short crc16Bytewise() {
+		crc16.reset();
+		for (final byte b : data) {
+			crc16.update(b);
+		}
+		return crc16.checksum();
+	}
+
+	@Benchmark
+	public short crc16Sliced() {
+		crc16.reset();
+		crc16.update(data, 0, data.length);
+		return crc16.checksum();
+	}
+
+	@Setup
+	public void setUp() {
+		data = new byte[size];
+		new Random(size).nextBytes(data);
+		// Comparing speeds only makes sense if both sides agree
+		if (crc8Bitwise() != crc8Table()) {
+			throw new IllegalStateException("CRC8 implementations disagree");
+		}
+		if (crc16Bytewise() != crc16Sliced()) {
+			throw new IllegalStateException("CRC16 implementations disagree");
+		}
+	}
+}
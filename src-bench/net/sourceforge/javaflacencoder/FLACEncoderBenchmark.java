@@ -0,0 +1,141 @@
+package net.sourceforge.javaflacencoder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.javaflacencoder.EncodingConfiguration.ChannelConfig;
+import net.sourceforge.javaflacencoder.EncodingConfiguration.SubframeType;
+import net.srcdemo.bench.BenchmarkData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding one block of audio with the stream settings SrcDemo uses, for a few encoder presets. Encoded frames are counted
+ * but not kept.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FLACEncoderBenchmark {
+	private static final class NullOutputStream implements FLACOutputStream {
+		private long position = 0L;
+		private long size = 0L;
+
+		@Override
+		public boolean canSeek() {
+			return false;
+		}
+
+		@Override
+		public long getPos() {
+			return position;
+		}
+
+		@Override
+		public long seek(final long pos) {
+			return position;
+		}
+
+		@Override
+		public long size() {
+			return size;
+		}
+
+		@Override
+		public void write(final byte data) {
+			position++;
+			size = Math.max(size, position);
+		}
+
+		@Override
+		public int write(final byte[] data, final int offset, final int count) {
+			position += count;
+			size = Math.max(size, position);
+			return count;
+		}
+	}
+
+	/**
+	 * Encoder settings, from fastest to smallest output.
+	 */
+	public enum Preset {
+		BEST, DEFAULT, FAST;
+		private EncodingConfiguration build(final boolean parallelSubframes) {
+			final EncodingConfiguration config = new EncodingConfiguration();
+			switch (this) {
+				case FAST:
+					config.setSubframeType(SubframeType.FIXED);
+					break;
+				case DEFAULT:
+					config.setMaxLPCOrder(8);
+					break;
+				case BEST:
+					config.setMaxLPCOrder(12);
+					config.setChannelConfig(ChannelConfig.EXHAUSTIVE);
+					break;
+			}
+			config.setParallelSubframes(parallelSubframes);
+			return config;
+		}
+	}
+
+	private static final int bitsPerSample = 16;
+	private static final int blockSize = 4096;
+	private static final int channels = 2;
+	private static final int minBlockSize = 256;
+	private static final int sampleRate = 44100;
+	private int[][] blocks;
+	private FLACEncoder encoder;
+	private int nextBlock = 0;
+	@Param({ "false", "true" })
+	public boolean parallelSubframes;
+	@Param({ "FAST", "DEFAULT", "BEST" })
+	public Preset preset;
+	/**
+	 * "resource" for the WAV file under tests/resources, or "synthetic" for generated audio.
+	 */
+	@Param({ "resource", "synthetic" })
+	public String source;
+
+	@Benchmark
+	public int encodeBlock() throws IOException {
+		encoder.addSamples(blocks[nextBlock], blockSize);
+		nextBlock = (nextBlock + 1) % blocks.length;
+		return encoder.encodeSamples(blockSize, false);
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		final byte[] wav = source.equals("resource") ? BenchmarkData.readResource("frame.wav") : BenchmarkData
+			.syntheticWAV(channels, sampleRate, bitsPerSample, sampleRate);
+		// Both sources are 16-bit stereo with a plain 44-byte header
+		final int sampleCount = (wav.length - 44) / 2;
+		final int[] samples = new int[sampleCount];
+		for (int i = 0; i < sampleCount; i++) {
+			samples[i] = (short) ((wav[44 + i * 2] & 0xff) | (wav[45 + i * 2] & 0xff) << 8);
+		}
+		// Cut the audio into blocks, wrapping around to fill the last one
+		blocks = new int[Math.max(1, sampleCount / (blockSize * channels))][blockSize * channels];
+		for (int i = 0; i < blocks.length * blockSize * channels; i++) {
+			blocks[i / (blockSize * channels)][i % (blockSize * channels)] = samples[i % sampleCount];
+		}
+		encoder = new FLACEncoder();
+		encoder.setStreamConfiguration(new StreamConfiguration(channels, minBlockSize, blockSize, sampleRate, bitsPerSample));
+		encoder.setEncodingConfiguration(preset.build(parallelSubframes));
+		encoder.setOutputStream(new NullOutputStream());
+		encoder.openFLACStream();
+	}
+}
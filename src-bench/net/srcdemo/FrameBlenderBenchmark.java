@@ -0,0 +1,114 @@
+package net.srcdemo;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import net.srcdemo.audio.factories.NullAudioHandlerFactory;
+import net.srcdemo.bench.BenchmarkData;
+import net.srcdemo.bench.BenchmarkData.TGAFormat;
+import net.srcdemo.userfs.UserFSUtils;
+import net.srcdemo.video.FrameBlender;
+import net.srcdemo.video.VideoHandler;
+import net.srcdemo.video.VideoHandlerFactory;
+import net.srcdemo.video.factories.LinearFrameWeighter;
+import net.srcdemo.video.image.ImageSavingTask;
+import net.srcdemo.video.image.ImageSavingTaskFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One sub-frame going through a {@link FrameBlender}, from the first write to the close, including the final pack every
+ * blend rate sub-frames. Blended frames are queued for saving as usual, but saving them does nothing, so only the blender
+ * itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameBlenderBenchmark {
+	private static final class NullSavingTask extends ImageSavingTask {
+		private NullSavingTask(final int sequenceIndex, final int[] pixelData, final int width, final int height) {
+			super(sequenceIndex, pixelData, width, height);
+		}
+
+		@Override
+		protected byte[] encode() {
+			return new byte[0];
+		}
+
+		@Override
+		public String getExtension() {
+			return "null";
+		}
+
+		@Override
+		protected void write(final File outputFile, final byte[] encoded) {
+			// Nothing
+		}
+	}
+
+	private FrameBlender blender;
+	@Param({ "32" })
+	public int blendRate;
+	@Param({ "131072" })
+	public int chunkSize;
+	private SrcDemo demo;
+	@Param({ "720p", "1080p", "2160p" })
+	public String frame;
+	private int frameNumber = 0;
+	private File output;
+	private byte[] tga;
+
+	@Setup
+	public void setUp() throws Exception {
+		tga = BenchmarkData.tga(BenchmarkData.frame(frame), TGAFormat.RAW24);
+		UserFSUtils.setVirtualBackend(true);
+		UserFSUtils.init();
+		output = File.createTempFile("srcdemo-bench", "");
+		output.delete();
+		output.mkdir();
+		final SrcDemoFS fs = new SrcDemoFS(output, null, new NullAudioHandlerFactory());
+		demo = new SrcDemo(fs, "bench", new VideoHandlerFactory() {
+			@Override
+			public VideoHandler buildHandler(final SrcDemo demo) {
+				blender = new FrameBlender(demo, new ImageSavingTaskFactory() {
+					@Override
+					public ImageSavingTask buildSavingTask(final int sequenceIndex, final int[] pixelData, final int width,
+						final int height) {
+						return new NullSavingTask(sequenceIndex, pixelData, width, height);
+					}
+				}, blendRate, 360, new LinearFrameWeighter());
+				return blender;
+			}
+		}, new NullAudioHandlerFactory());
+	}
+
+	@Benchmark
+	public void subFrame() {
+		final int current = frameNumber++;
+		for (int offset = 0; offset < tga.length; offset += chunkSize) {
+			blender.write(current, ByteBuffer.wrap(tga, offset, Math.min(chunkSize, tga.length - offset)), offset);
+		}
+		blender.close(current);
+	}
+
+	@TearDown
+	public void tearDown() {
+		demo.destroy();
+		output.delete();
+	}
+}
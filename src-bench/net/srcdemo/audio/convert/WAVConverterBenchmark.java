@@ -0,0 +1,109 @@
+package net.srcdemo.audio.convert;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import net.srcdemo.bench.BenchmarkData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Turning the WAV bytes written by the game into samples. The encoder behind the converter only keeps the last samples it
+ * was given, so this measures the conversion alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WAVConverterBenchmark {
+	private static final class NullEncoder implements AudioEncoder {
+		private int[] samples;
+
+		@Override
+		public void addSamples(final int[] samples) {
+			this.samples = samples;
+		}
+
+		@Override
+		public void close() {
+			samples = null;
+		}
+
+		@Override
+		public void flush() {
+			// Nothing
+		}
+	}
+
+	private static final int headerLength = 44;
+	private static final int syntheticSamples = 44100;
+	@Param({ "4096", "65536" })
+	public int chunkSize;
+	private byte[] chunk;
+	private WAVConverter converter;
+	private final NullEncoder encoder = new NullEncoder();
+	private long offset;
+	private File output;
+	/**
+	 * "resource" for the WAV file under tests/resources, or a bit depth such as "16bit" or "24bit" for synthetic stereo audio.
+	 */
+	@Param({ "resource", "16bit", "24bit" })
+	public String source;
+
+	@Benchmark
+	public int[] convert() {
+		converter.write(chunk, offset);
+		offset += chunk.length;
+		return encoder.samples;
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		final byte[] wav;
+		if (source.equals("resource")) {
+			wav = BenchmarkData.readResource("frame.wav");
+		} else {
+			final int bits = Integer.parseInt(source.substring(0, source.length() - 3));
+			wav = BenchmarkData.syntheticWAV(2, 44100, bits, syntheticSamples);
+		}
+		// Repeat the samples of the file as needed to fill a chunk, keeping whole sample frames
+		final int frameSize = (wav[32] & 0xff) | (wav[33] & 0xff) << 8;
+		chunk = new byte[chunkSize / frameSize * frameSize];
+		final int dataLength = (wav.length - headerLength) / frameSize * frameSize;
+		for (int i = 0; i < chunk.length; i += dataLength) {
+			System.arraycopy(wav, headerLength, chunk, i, Math.min(dataLength, chunk.length - i));
+		}
+		output = File.createTempFile("srcdemo-bench", ".wav");
+		converter = new WAVConverter(new AudioEncoderFactory() {
+			@Override
+			public AudioEncoder buildEncoder(final int channels, final int blockSize, final int sampleRate,
+				final int bitsPerSample, final File outputFile) {
+				return encoder;
+			}
+		}, output);
+		// The header is decoded once enough bytes past the minimal header length have been written
+		converter.write(Arrays.copyOf(wav, headerLength + frameSize), 0);
+		offset = headerLength + frameSize;
+	}
+
+	@TearDown
+	public void tearDown() {
+		converter.destroy();
+		output.delete();
+	}
+}
@@ -0,0 +1,177 @@
+package net.srcdemo.bench;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import net.srcdemo.video.image.TGAWriter;
+
+/**
+ * Inputs shared by the benchmarks: the files under tests/resources, and synthetic frames and audio of any size. Synthetic
+ * data is generated from a fixed seed, so every run measures the same bytes.
+ */
+public final class BenchmarkData {
+	/**
+	 * Pixels of a frame, as RGB ints, row by row.
+	 */
+	public static final class Frame {
+		public final int height;
+		public final int[] pixels;
+		public final int width;
+
+		private Frame(final int[] pixels, final int width, final int height) {
+			this.pixels = pixels;
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	/**
+	 * Ways in which the game may write a frame.
+	 */
+	public enum TGAFormat {
+		RAW24, RAW32, RLE24;
+	}
+
+	private static final String resourceFrame = "resource";
+	private static final String resourceFrameFile = "gaussian-reference.png";
+	private static final String resourcesProperty = "srcdemo.bench.resources";
+	private static final long seed = 0x5c2de4012L;
+
+	/**
+	 * @param name
+	 *            "resource" for the reference image under tests/resources, or a resolution such as "720p", "1080p" or
+	 *            "2160p" for a synthetic 16:9 frame.
+	 */
+	public static Frame frame(final String name) throws IOException {
+		if (name.equals(resourceFrame)) {
+			final BufferedImage image = ImageIO.read(getResource(resourceFrameFile));
+			final int width = image.getWidth();
+			final int height = image.getHeight();
+			final int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+			for (int i = 0; i < pixels.length; i++) {
+				pixels[i] &= 0xffffff;
+			}
+			return new Frame(pixels, width, height);
+		}
+		if (!name.endsWith("p")) {
+			throw new IllegalArgumentException("Unknown frame: " + name);
+		}
+		final int height = Integer.parseInt(name.substring(0, name.length() - 1));
+		return syntheticFrame(height * 16 / 9, height);
+	}
+
+	public static File getResource(final String name) {
+		return new File(System.getProperty(resourcesProperty, "tests/resources"), name);
+	}
+
+	public static byte[] readResource(final String name) throws IOException {
+		final InputStream input = new FileInputStream(getResource(name));
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[65536];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			output.write(buffer, 0, read);
+		}
+		input.close();
+		return output.toByteArray();
+	}
+
+	/**
+	 * A frame which compresses roughly like a game frame does: a flat sky, a smooth gradient for the ground, and noisy
+	 * textured blocks in between.
+	 */
+	public static Frame syntheticFrame(final int width, final int height) {
+		final Random random = new Random(seed);
+		final int[] pixels = new int[width * height];
+		final int skyLine = height / 3;
+		final int groundLine = height * 2 / 3;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final int pixel;
+				if (y < skyLine) {
+					pixel = 0x5080c0;
+				} else if (y >= groundLine) {
+					final int shade = 64 + 96 * (y - groundLine) / (height - groundLine);
+					pixel = shade << 16 | shade << 8 | shade / 2;
+				} else if ((x / 64 + y / 64) % 2 == 0) {
+					final int noise = random.nextInt(48);
+					pixel = (128 + noise) << 16 | (96 + noise) << 8 | (64 + noise);
+				} else {
+					pixel = random.nextInt(0x1000000);
+				}
+				pixels[y * width + x] = pixel;
+			}
+		}
+		return new Frame(pixels, width, height);
+	}
+
+	/**
+	 * Interleaved little-endian PCM, as written by the game: a few tones plus some noise.
+	 *
+	 * @return A complete WAV file, header included.
+	 */
+	public static byte[] syntheticWAV(final int channels, final int sampleRate, final int bitsPerSample,
+		final int samplesPerChannel) {
+		final int bytesPerSample = bitsPerSample / 8;
+		final int dataSize = samplesPerChannel * channels * bytesPerSample;
+		final ByteBuffer wav = ByteBuffer.allocate(44 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+		wav.put("RIFF".getBytes()).putInt(36 + dataSize).put("WAVE".getBytes());
+		wav.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channels).putInt(sampleRate);
+		wav.putInt(sampleRate * channels * bytesPerSample).putShort((short) (channels * bytesPerSample))
+			.putShort((short) bitsPerSample);
+		wav.put("data".getBytes()).putInt(dataSize);
+		final Random random = new Random(seed);
+		final double amplitude = (1 << bitsPerSample - 1) * 0.3d;
+		for (int i = 0; i < samplesPerChannel; i++) {
+			for (int channel = 0; channel < channels; channel++) {
+				final double time = (double) i / sampleRate;
+				final double value = Math.sin(2 * Math.PI * (220 + 110 * channel) * time) + 0.5d
+					* Math.sin(2 * Math.PI * 1375 * time) + 0.1d * random.nextGaussian();
+				final int sample = (int) (value * amplitude);
+				for (int b = 0; b < bytesPerSample; b++) {
+					wav.put((byte) (sample >> 8 * b));
+				}
+			}
+		}
+		return wav.array();
+	}
+
+	public static byte[] tga(final Frame frame, final TGAFormat format) {
+		switch (format) {
+			case RAW24:
+				return new TGAWriter(frame.pixels, frame.width, frame.height, false).getBytes();
+			case RLE24:
+				return new TGAWriter(frame.pixels, frame.width, frame.height, true).getBytes();
+			case RAW32:
+				final byte[] tga = new byte[18 + frame.pixels.length * 4];
+				tga[2] = 2;
+				tga[12] = (byte) frame.width;
+				tga[13] = (byte) (frame.width >> 8);
+				tga[14] = (byte) frame.height;
+				tga[15] = (byte) (frame.height >> 8);
+				tga[16] = 32;
+				tga[17] = 0x28;
+				int offset = 18;
+				for (final int pixel : frame.pixels) {
+					tga[offset++] = (byte) pixel;
+					tga[offset++] = (byte) (pixel >> 8);
+					tga[offset++] = (byte) (pixel >> 16);
+					tga[offset++] = (byte) 0xff;
+				}
+				return tga;
+		}
+		throw new IllegalArgumentException("Unknown format: " + format);
+	}
+
+	private BenchmarkData() {
+	}
+}
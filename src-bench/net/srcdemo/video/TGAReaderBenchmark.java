@@ -0,0 +1,55 @@
+package net.srcdemo.video;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.srcdemo.bench.BenchmarkData;
+import net.srcdemo.bench.BenchmarkData.TGAFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Accumulating one sub-frame into a blended frame, for each way the game may write it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TGAReaderBenchmark {
+	private int[] accumulator;
+	@Param({ "RAW24", "RAW32", "RLE24" })
+	public TGAFormat format;
+	@Param({ "resource", "720p", "1080p" })
+	public String frame;
+	private byte[] tga;
+
+	@Benchmark
+	public int[] addToArray() {
+		new TGAReader(tga).addToArray(accumulator);
+		return accumulator;
+	}
+
+	@Benchmark
+	public int[] addToArrayWeighted() {
+		new TGAReader(tga).addToArrayWeighted(accumulator, 7);
+		return accumulator;
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		tga = BenchmarkData.tga(BenchmarkData.frame(frame), format);
+		accumulator = new int[new TGAReader(tga).getNumPixels() * 3];
+	}
+}
@@ -0,0 +1,60 @@
+package net.srcdemo.video.image;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.srcdemo.bench.BenchmarkData;
+import net.srcdemo.bench.BenchmarkData.Frame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding one blended frame in each output format, without writing it anywhere.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageEncodingBenchmark {
+	private static final float jpegQuality = 0.95f;
+	@Param({ "resource", "720p", "1080p" })
+	public String frame;
+	private Frame pixels;
+
+	@Benchmark
+	public byte[] jpeg() throws IOException {
+		return new JPEGSavingTask(0, pixels.pixels, pixels.width, pixels.height, jpegQuality).encode();
+	}
+
+	@Benchmark
+	public byte[] png() throws IOException {
+		return new PNGSavingTask(0, pixels.pixels, pixels.width, pixels.height).encode();
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		pixels = BenchmarkData.frame(frame);
+	}
+
+	@Benchmark
+	public byte[] tgaRaw() {
+		return new TGASavingTask(0, pixels.pixels, pixels.width, pixels.height, false).encode();
+	}
+
+	@Benchmark
+	public byte[] tgaRLE() {
+		return new TGASavingTask(0, pixels.pixels, pixels.width, pixels.height, true).encode();
+	}
+}
@@ -9,45 +9,190 @@
  */
 package net.sourceforge.javaflacencoder;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The purpose of this class is to provide a source for reusable int arrays. When using large numbers of arrays in succession,
  * it is inefficient to constantly go in an allocate/free loop. This way, we may pass a single, thread-safe recycler to all
  * objects. No matter where the arrays end their life, we can then add it to the same resource store.
  * 
+ * Arrays are kept in power-of-two size classes, so an array of one size is never handed out where a much larger one was needed
+ * (or thrown away because it is too small). All threads share one lock-free pool per size class, which never retains more than
+ * a fixed number of bytes in total; anything beyond that is left to the garbage collector. There are deliberately no
+ * per-thread caches: they would hold arrays outside of that limit, for as long as their (often long-lived) threads run.
+ * Arrays returned by getArray(int) may be longer than requested.
+ * 
  * @author Preston Lacey
  */
 public class ArrayRecycler
 {
-	LinkedBlockingQueue<int[]> usedIntArrays = null;
+	/** Default maximum number of bytes retained by the pool. */
+	public static final long DEFAULT_MAX_RETAINED_BYTES = 32L * 1024 * 1024;
+	/* smallest size class is 2^MIN_CLASS ints; smaller requests are rounded up to it */
+	static final int MIN_CLASS = 6;
+	/* largest size class which is recycled; larger arrays are always allocated */
+	static final int MAX_CLASS = 24;
+	private final ConcurrentLinkedQueue<int[]>[] shared;
+	private final long maxRetainedBytes;
+	private final AtomicLong retainedBytes = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong reused = new AtomicLong();
+	private final AtomicLong allocated = new AtomicLong();
+	private final AtomicLong discarded = new AtomicLong();
 
 	ArrayRecycler()
 	{
-		usedIntArrays = new LinkedBlockingQueue<int[]>();
+		this(DEFAULT_MAX_RETAINED_BYTES);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxRetainedBytes
+	 *            maximum number of bytes the pool may hold on to.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public ArrayRecycler(long maxRetainedBytes)
+	{
+		this.maxRetainedBytes = maxRetainedBytes;
+		// generic arrays cannot be created, so the array of pools is created raw
+		shared = new ConcurrentLinkedQueue[MAX_CLASS + 1];
+		for (int i = MIN_CLASS; i <= MAX_CLASS; i++) {
+			shared[i] = new ConcurrentLinkedQueue<int[]>();
+		}
+	}
+
+	/* size class an array of the given length can be stored in(every array in class c is at least 2^c long) */
+	private static int storeClass(int length)
+	{
+		return 31 - Integer.numberOfLeadingZeros(length);
+	}
+
+	/* size class which satisfies a request of the given size */
+	private static int requestClass(int size)
+	{
+		if (size <= (1 << MIN_CLASS))
+			return MIN_CLASS;
+		return 32 - Integer.numberOfLeadingZeros(size - 1);
 	}
 
 	public void add(int[] array)
 	{
-		usedIntArrays.add(array);
+		if (array == null || array.length < (1 << MIN_CLASS))
+			return;
+		int sizeClass = storeClass(array.length);
+		if (sizeClass > MAX_CLASS) {
+			discarded.incrementAndGet();
+			return;
+		}
+		long bytes = 4L * array.length;
+		if (retainedBytes.addAndGet(bytes) > maxRetainedBytes) {
+			retainedBytes.addAndGet(-bytes);
+			discarded.incrementAndGet();
+			return;
+		}
+		shared[sizeClass].offer(array);
 	}
 
 	/**
+	 * Get an array of at least the given size. Contents of the array are undefined.
+	 * 
 	 * @param size
-	 * @return
+	 *            minimum length of the array.
+	 * @return an array which is at least "size" long.
 	 */
 	public int[] getArray(int size)
 	{
-		int[] result = usedIntArrays.poll();
-		if (result == null) {
-			result = new int[size];
-			// System.err.println("Created new int array from null");
+		requests.incrementAndGet();
+		int sizeClass = requestClass(size);
+		if (sizeClass > MAX_CLASS) {
+			allocated.incrementAndGet();
+			return new int[size];
 		}
-		else if (result.length < size) {
-			usedIntArrays.offer(result);
-			result = new int[size];
-			// System.err.println("created new int array from bad size");
+		int[] result = shared[sizeClass].poll();
+		if (result != null) {
+			retainedBytes.addAndGet(-4L * result.length);
+			reused.incrementAndGet();
+			return result;
 		}
-		return result;
+		allocated.incrementAndGet();
+		return new int[1 << sizeClass];
+	}
+
+	/**
+	 * Exchange an array for one of at least the given size. If the given array is already large enough it is returned as is,
+	 * otherwise it is recycled and a larger one returned in its place.
+	 * 
+	 * @param array
+	 *            array currently in use, may be null.
+	 * @param size
+	 *            minimum length needed.
+	 * @return an array which is at least "size" long. Contents are only preserved if the given array is returned.
+	 */
+	public int[] ensureSize(int[] array, int size)
+	{
+		if (array != null && array.length >= size)
+			return array;
+		add(array);
+		return getArray(size);
+	}
+
+	/**
+	 * Get the number of arrays requested through getArray(int).
+	 * 
+	 * @return number of requests.
+	 */
+	public long getRequestCount()
+	{
+		return requests.get();
+	}
+
+	/**
+	 * Get the number of requests which were satisfied with a recycled array.
+	 * 
+	 * @return number of reused arrays.
+	 */
+	public long getReuseCount()
+	{
+		return reused.get();
+	}
+
+	/**
+	 * Get the number of requests which had to allocate a new array.
+	 * 
+	 * @return number of allocated arrays.
+	 */
+	public long getAllocationCount()
+	{
+		return allocated.get();
+	}
+
+	/**
+	 * Get the number of arrays which were dropped instead of recycled, because the shared pool was full or they were too
+	 * large.
+	 * 
+	 * @return number of discarded arrays.
+	 */
+	public long getDiscardCount()
+	{
+		return discarded.get();
+	}
+
+	/**
+	 * Get the number of bytes currently held by the shared pool.
+	 * 
+	 * @return retained bytes.
+	 */
+	public long getRetainedBytes()
+	{
+		return retainedBytes.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ArrayRecycler[requests=" + getRequestCount() + ", reused=" + getReuseCount() + ", allocated="
+				+ getAllocationCount() + ", discarded=" + getDiscardCount() + ", retainedBytes=" + getRetainedBytes() + "]";
 	}
 }
@@ -26,8 +26,12 @@ public class BlockEncodeRequest
 	volatile int start;
 	/* Number of indices to skip between valid samples */
 	volatile int skip;
-	/* Frame-number this block is assigned */
+	/* Frame-number this block is assigned(sample number of the first sample for variable block sizes) */
 	volatile long frameNumber;
+	/* Whether frameNumber holds a frame number(fixed block size) or a sample number(variable block size) */
+	volatile boolean fixedBlockSize;
+	/* Whether samples[] may be recycled once this request is written; false if later requests share the array */
+	volatile boolean releaseSamples;
 	/* Location to store results to. For safety, use an empty element */
 	volatile EncodedElement result;
 	/* Stores whether the result should be valid */
@@ -53,6 +57,34 @@ public class BlockEncodeRequest
 	 */
 	synchronized public void setAll(int[] samples, int count, int start, int skip, long frameNumber, EncodedElement result)
 	{
+		setAll(samples, count, start, skip, frameNumber, result, true, true);
+	}
+
+	/**
+	 * Set all values, preparing this object to be sent to an encoder. Member variable "valid" is set to false by this call.
+	 * 
+	 * @param samples
+	 *            Sample data, interleaved if multiple channels are used
+	 * @param count
+	 *            Number of valid samples
+	 * @param start
+	 *            Index of first valid sample
+	 * @param skip
+	 *            Number of samples to skip between samples(this should be equal to number-of-channels minus 1.
+	 * @param frameNumber
+	 *            Framenumber assigned to this block, or number of the first sample if fixedBlockSize is false.
+	 * @param result
+	 *            Location to store result of encode.
+	 * @param fixedBlockSize
+	 *            true if the stream uses a fixed block size, false for variable block sizes.
+	 * @param releaseSamples
+	 *            true if the sample array is no longer needed once this request is written.
+	 */
+	synchronized public void setAll(int[] samples, int count, int start, int skip, long frameNumber, EncodedElement result,
+			boolean fixedBlockSize, boolean releaseSamples)
+	{
+		this.fixedBlockSize = fixedBlockSize;
+		this.releaseSamples = releaseSamples;
 		this.samples = samples;
 		this.count = count;
 		this.start = start;
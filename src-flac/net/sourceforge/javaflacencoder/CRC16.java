@@ -10,7 +10,8 @@
 package net.sourceforge.javaflacencoder;
 
 /**
- * Class to calculate a CRC16 checksum.
+ * Class to calculate a CRC16 checksum. Byte arrays are processed eight bytes at a time using slicing tables(slice-by-8), which
+ * replaces most of the table lookups' serial dependency on the working checksum by independent lookups.
  * 
  * @author Preston Lacey
  */
@@ -22,7 +23,16 @@ public class CRC16
 	static final int divisorCRC16 = 0x8005;
 	/** working checksum stored between calls to update(..) */
 	protected int workingCRC;
-	private static final short xorTable[] = generateTable();
+	/* xorTables[0] is the regular byte-wise table; xorTables[k] advances a byte through k further zero bytes */
+	private static final int xorTables[][] = generateTables(8);
+	private static final int xorTable[] = xorTables[0];
+	private static final int xorTable1[] = xorTables[1];
+	private static final int xorTable2[] = xorTables[2];
+	private static final int xorTable3[] = xorTables[3];
+	private static final int xorTable4[] = xorTables[4];
+	private static final int xorTable5[] = xorTables[5];
+	private static final int xorTable6[] = xorTables[6];
+	private static final int xorTable7[] = xorTables[7];
 
 	/**
 	 * Constructor. Creates a CRC16 object that is ready to be used. Next step would be to call update(...) with appropriate
@@ -48,22 +58,33 @@ public class CRC16
 
 	public int update(byte input)
 	{
-		workingCRC = (workingCRC << 8) ^ xorTable[((workingCRC >>> 8) ^ input) & 0xFF];
+		workingCRC = ((workingCRC << 8) ^ xorTable[((workingCRC >>> 8) ^ input) & 0xFF]) & 0xFFFF;
 		return workingCRC;
 	}
 
 	public int update(byte[] input, int start, int stop)
 	{
-		for (int i = start; i < stop; i++) {
-			byte b = input[i];
-			workingCRC = (workingCRC << 8) ^ xorTable[((workingCRC >>> 8) ^ b) & 0xFF];
+		int crc = workingCRC;
+		int i = start;
+		final int sliceStop = stop - 7;
+		while (i < sliceStop) {
+			crc = xorTable7[((crc >>> 8) ^ input[i]) & 0xFF] ^ xorTable6[(crc ^ input[i + 1]) & 0xFF]
+					^ xorTable5[input[i + 2] & 0xFF] ^ xorTable4[input[i + 3] & 0xFF] ^ xorTable3[input[i + 4] & 0xFF]
+					^ xorTable2[input[i + 5] & 0xFF] ^ xorTable1[input[i + 6] & 0xFF] ^ xorTable[input[i + 7] & 0xFF];
+			i += 8;
 		}
+		while (i < stop) {
+			crc = ((crc << 8) ^ xorTable[((crc >>> 8) ^ input[i]) & 0xFF]) & 0xFFFF;
+			i++;
+		}
+		workingCRC = crc;
 		return workingCRC;
 	}
 
-	private static short[] generateTable()
+	private static int[][] generateTables(int count)
 	{
-		short[] table = new short[256];
+		int[][] tables = new int[count][256];
+		int[] table = tables[0];
 		for (int i = 0; i < table.length; i++) {
 			int polynomial = divisorCRC16;
 			int xorVal = i << 8;
@@ -73,8 +94,14 @@ public class CRC16
 				if ((xorVal & topmask) > 0)
 					xorVal = (xorVal) ^ polynomial;
 			}
-			table[i] = (short) (xorVal & 0xFFFF);
+			table[i] = xorVal & 0xFFFF;
+		}
+		for (int k = 1; k < count; k++) {
+			for (int i = 0; i < 256; i++) {
+				int previous = tables[k - 1][i];
+				tables[k][i] = ((previous << 8) ^ table[previous >>> 8]) & 0xFFFF;
+			}
 		}
-		return table;
+		return tables;
 	}
 }
@@ -482,6 +482,37 @@ public class EncodedElement
 		}
 	}
 
+	/**
+	 * Copy the bits stored by this list into a new element, which reserves the given number of bits at the start of its first
+	 * byte. This allows data which was encoded before its final bit position was known to be attached at any offset.
+	 * 
+	 * @param newOffset
+	 *            offset of the copy, from 0 to 7.
+	 * @return this element if its offset already matches, otherwise a new element holding a copy of the whole list.
+	 */
+	public EncodedElement copyToOffset(int newOffset)
+	{
+		if (offset == newOffset)
+			return this;
+		EncodedElement result = new EncodedElement((newOffset + getTotalBits()) / 8 + 1, newOffset);
+		EncodedElement iter = this;
+		while (iter != null) {
+			byte[] source = iter.data;
+			int bit = iter.offset;
+			while (bit < iter.usableBits) {
+				// copy up to the end of the current source byte at once
+				int bits = 8 - bit % 8;
+				if (bits > iter.usableBits - bit)
+					bits = iter.usableBits - bit;
+				int value = (source[bit / 8] >>> (8 - bit % 8 - bits)) & ((1 << bits) - 1);
+				result.addInt(value, bits);
+				bit += bits;
+			}
+			iter = iter.next;
+		}
+		return result;
+	}
+
 	/**
 	 * Total number of usable bits stored by this entire list. This sums the difference of each list element's "usableBits" and
 	 * "offset".
@@ -998,10 +1029,23 @@ public class EncodedElement
 	}
 
 	public short getCRC16()
+	{
+		return getCRC16(new CRC16());
+	}
+
+	/**
+	 * Calculate the CRC16 of the data held by this element and all following elements, using the given calculator. The
+	 * calculator is reset first, so a single one may be reused for every frame.
+	 * 
+	 * @param crc
+	 *            calculator to use.
+	 * @return CRC16 checksum.
+	 */
+	public short getCRC16(CRC16 crc)
 	{
 		assert (getTotalBits() % 8 == 0);
 		assert (offset == 0);
-		CRC16 crc = new CRC16();
+		crc.reset();
 		byte[] input = this.data;
 		int stop = this.usableBits / 8;
 		crc.update(input, 0, stop);
@@ -78,11 +78,14 @@ public class EncodingConfiguration implements Cloneable
 	public static final int DEFAULT_MIN_LPC_ORDER = 1;
 	/** Default maximum Rice partition order */
 	public static final int DEFAULT_MAX_RICE_ORDER = 0;
+	/** Default for parallel subframe encoding. */
+	public static final boolean DEFAULT_PARALLEL_SUBFRAMES = false;
 	ChannelConfig channelConfig;
 	SubframeType subframeType;
 	int minimumLPCOrder = 1;
 	int maximumLPCOrder = 16;
 	int maximumRicePartitionOrder = 0;
+	boolean parallelSubframes = DEFAULT_PARALLEL_SUBFRAMES;
 
 	/**
 	 * Constructor, uses defaults for all options. These defaults should be good for most purposes.
@@ -109,6 +112,7 @@ public class EncodingConfiguration implements Cloneable
 		minimumLPCOrder = e.minimumLPCOrder;
 		maximumLPCOrder = e.maximumLPCOrder;
 		maximumRicePartitionOrder = e.maximumRicePartitionOrder;
+		parallelSubframes = e.parallelSubframes;
 	}
 
 	/**
@@ -201,4 +205,28 @@ public class EncodingConfiguration implements Cloneable
 		maximumLPCOrder = (order < MIN_LPC_ORDER) ? MIN_LPC_ORDER : order;
 		maximumLPCOrder = (maximumLPCOrder > MAX_LPC_ORDER) ? MAX_LPC_ORDER : maximumLPCOrder;
 	}
+
+	/**
+	 * Set whether the subframes of a single frame may be encoded in parallel. When enabled, every channel of every channel
+	 * configuration tried for a frame is encoded as a separate task on a shared fork-join pool. This is most useful when few
+	 * blocks are encoded at once(such as unthreaded encoding), or when there are many channels or channel configurations to
+	 * try. The encoded result is identical either way.
+	 * 
+	 * @param parallel
+	 *            true to encode subframes in parallel, false to encode them one after another.
+	 */
+	public void setParallelSubframes(boolean parallel)
+	{
+		parallelSubframes = parallel;
+	}
+
+	/**
+	 * Get whether subframes of a single frame are encoded in parallel.
+	 * 
+	 * @return true if subframes are encoded in parallel.
+	 */
+	public boolean getParallelSubframes()
+	{
+		return parallelSubframes;
+	}
 }
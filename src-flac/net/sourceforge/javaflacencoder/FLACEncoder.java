@@ -16,12 +16,15 @@ import java.io.IOException;
 import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * This class defines a FLAC Encoder with a simple interface for enabling FLAC encoding support in an application. This class is
- * appropriate for use in the case where you have raw pcm audio samples that you wish to encode. Currently, fixed-blocksize only
- * is implemented, and the "Maximum Block Size" set in the StreamConfiguration object is used as the actual block size. <br>
+ * appropriate for use in the case where you have raw pcm audio samples that you wish to encode. If the "Minimum Block Size"
+ * and "Maximum Block Size" set in the StreamConfiguration object are equal, the stream uses that fixed block size. If the
+ * minimum is lower than the maximum, a variable block-size stream is created: samples are gathered in blocks of the maximum
+ * size, which are then split at transients(see TransientDetector) down to blocks of the minimum size. <br>
  * <br>
  * <br>
  * An encoding process is simple, and should follow these steps:<br>
@@ -91,6 +94,31 @@ public class FLACEncoder
 	volatile long samplesInStream;
 	/* next frame number to use */
 	long nextFrameNumber = 0;
+	/* number of the first sample of the next frame, used as frame header number in variable block-size streams */
+	long nextSampleNumber = 0;
+	/* true if the current stream uses variable block sizes. Set when opening a stream */
+	boolean variableBlockSize = false;
+	/* chooses block boundaries in variable block-size streams */
+	TransientDetector transientDetector = null;
+	/* sizes of the sub-blocks a queued block is split into */
+	int[] subBlockSizes = null;
+	/* number of seek points reserved in the seek table of new streams, zero if no seek table is written */
+	int seekTableSize = 0;
+	/* number of samples between seek points */
+	int seekInterval = 0;
+	/* position of the seek table in output stream location, so it can be filled in once encoding is done */
+	long seekTablePos = 0;
+	/* seek points collected so far: first sample, offset from the first frame, and sample count of their frames */
+	long[] seekSamples = null;
+	long[] seekOffsets = null;
+	int[] seekFrameSamples = null;
+	int seekPointCount = 0;
+	/* sample number at which the next seek point is due */
+	long nextSeekSample = 0;
+	/* samples which must get a seek point of their own, such as segment boundaries */
+	final ConcurrentSkipListSet<Long> cuePoints = new ConcurrentSkipListSet<Long>();
+	/* number of bytes of frame data written to the current stream */
+	long frameBytes = 0;
 	/*
 	 * position of header in output stream location(needed so we can update the header info(md5, minBlockSize, etc), once
 	 * encoding is done
@@ -119,12 +147,12 @@ public class FLACEncoder
 		blockQueue = new Vector<int[]>();
 		StreamConfiguration defaultStreamConfig = new StreamConfiguration();
 		encodingConfig = new EncodingConfiguration();
-		frame = new Frame(defaultStreamConfig);
+		frame = new Frame(defaultStreamConfig, recycler);
 		frame.registerConfiguration(encodingConfig);
 		threadManager = new BlockThreadManager(this);
 		threadedFrames = new Frame[MAX_THREADED_FRAMES];
 		for (int i = 0; i < MAX_THREADED_FRAMES; i++) {
-			threadedFrames[i] = new Frame(defaultStreamConfig);
+			threadedFrames[i] = new Frame(defaultStreamConfig, recycler);
 			threadManager.addFrameThread(threadedFrames[i]);
 		}
 		try {
@@ -178,11 +206,11 @@ public class FLACEncoder
 		if (!isEncoding && sc != null) {
 			synchronized (configWriteLock) {
 				streamConfig = sc;
-				frame = new Frame(sc);
+				frame = new Frame(sc, recycler);
 				threadManager = new BlockThreadManager(this);
 				threadedFrames = new Frame[MAX_THREADED_FRAMES];
 				for (int i = 0; i < MAX_THREADED_FRAMES; i++) {
-					threadedFrames[i] = new Frame(sc);
+					threadedFrames[i] = new Frame(sc, recycler);
 					threadManager.addFrameThread(threadedFrames[i]);
 				}
 				this.setEncodingConfiguration(this.encodingConfig);
@@ -207,6 +235,11 @@ public class FLACEncoder
 		samplesInStream = 0;
 		streamHeaderPos = 0;
 		nextFrameNumber = 0;
+		nextSampleNumber = 0;
+		seekTablePos = 0;
+		seekPointCount = 0;
+		nextSeekSample = 0;
+		frameBytes = 0;
 	}
 
 	/**
@@ -230,6 +263,9 @@ public class FLACEncoder
 		// re-write the updated stream info.
 		if (DEBUG_LEV > 0)
 			System.err.println("FLACEncoder::closeFLACStream : Begin");
+		// a stream made of its last frame only has no other block size to report
+		if (minBlockSize > maxBlockSize && maxBlockSize > 0)
+			minBlockSize = maxBlockSize;
 		streamConfig.setMaxBlockSize(maxBlockSize);
 		streamConfig.setMinBlockSize(minBlockSize);
 		byte[] md5 = md.digest();
@@ -238,7 +274,13 @@ public class FLACEncoder
 		if (out.canSeek()) {
 			out.seek(streamHeaderPos);
 			this.writeDataToOutput(streamInfo);
+			if (seekTablePos != 0) {
+				out.seek(seekTablePos);
+				this.writeDataToOutput(MetadataBlockSeekTable.getSeekTable(seekSamples, seekOffsets, seekFrameSamples,
+						seekPointCount, seekTableSize));
+			}
 		}
+		cuePoints.clear();
 	}
 
 	/**
@@ -255,6 +297,17 @@ public class FLACEncoder
 	{
 		// reset all data.
 		reset();
+		int minBlock = streamConfig.getMinBlockSize();
+		int maxBlock = streamConfig.getMaxBlockSize();
+		variableBlockSize = minBlock < maxBlock;
+		if (variableBlockSize) {
+			transientDetector = new TransientDetector(minBlock);
+			subBlockSizes = new int[transientDetector.getMaxSplitCount(maxBlock)];
+		}
+		else {
+			transientDetector = null;
+			subBlockSizes = new int[1];
+		}
 		// write FLAC stream identifier
 		out.write(FLAC_id.getData(), 0, FLAC_id.getUsableBits() / 8);
 		// write stream headers. These must be updated at close of stream
@@ -264,11 +317,96 @@ public class FLACEncoder
 		// mark stream info location(so we can return to it and re-write headers,
 		// assuming stream is seekable. Then write header.
 		int size = streamInfo.getUsableBits() / 8;
-		EncodedElement metadataBlockHeader = MetadataBlockHeader.getMetadataBlockHeader(true,
+		EncodedElement metadataBlockHeader = MetadataBlockHeader.getMetadataBlockHeader(seekTableSize == 0,
 				MetadataBlockHeader.MetadataBlockType.STREAMINFO, size);
 		this.writeDataToOutput(metadataBlockHeader);
 		streamHeaderPos = out.getPos();
 		out.write(streamInfo.getData(), 0, size);
+		// reserve the seek table. It is filled with placeholders until the stream is closed
+		if (seekTableSize > 0) {
+			EncodedElement seekTable = MetadataBlockSeekTable.getSeekTable(null, null, null, 0, seekTableSize);
+			size = seekTable.getUsableBits() / 8;
+			metadataBlockHeader = MetadataBlockHeader.getMetadataBlockHeader(true,
+					MetadataBlockHeader.MetadataBlockType.SEEKTABLE, size);
+			this.writeDataToOutput(metadataBlockHeader);
+			seekTablePos = out.getPos();
+			out.write(seekTable.getData(), 0, size);
+			if (seekSamples == null || seekSamples.length < seekTableSize) {
+				seekSamples = new long[seekTableSize];
+				seekOffsets = new long[seekTableSize];
+				seekFrameSamples = new int[seekTableSize];
+			}
+		}
+	}
+
+	/**
+	 * Set the seek table written to streams opened after this call. The seek table lets decoders find any position in the
+	 * stream without decoding everything before it. A seek point is recorded for the first frame starting at or after every
+	 * multiple of "interval" samples, as well as for each cue point. Since the table is written before the audio, its size
+	 * must be fixed up front: if a stream ends up with more seek points, evenly spaced ones are kept; unused points are left
+	 * as placeholders. The table is only filled in if the output stream can seek. Must not be called while a stream is open.
+	 * 
+	 * @param points
+	 *            number of seek points to reserve, or zero to write no seek table.
+	 * @param interval
+	 *            number of samples between seek points.
+	 */
+	public void setSeekTable(int points, int interval)
+	{
+		seekTableSize = (points > 0 && interval > 0) ? points : 0;
+		seekInterval = interval;
+	}
+
+	/**
+	 * Add a cue point to the open stream, such as the boundary between two segments of a recording. The frame containing the
+	 * given sample gets a seek point of its own, regardless of the seek interval. Cue points may be added at any time until the
+	 * stream is closed, but are only honored for samples which have not been encoded yet. Has no effect if no seek table is
+	 * written.
+	 * 
+	 * @param sampleNumber
+	 *            number of the inter-channel sample to mark, counted from the start of the stream.
+	 */
+	public void addCuePoint(long sampleNumber)
+	{
+		if (seekTableSize > 0)
+			cuePoints.add(sampleNumber);
+	}
+
+	/**
+	 * Record a seek point for the frame which was just written, if one is due.
+	 * 
+	 * @param frameStart
+	 *            number of the first sample of the frame.
+	 * @param encodedSamples
+	 *            number of inter-channel samples in the frame.
+	 */
+	private void addSeekPoint(long frameStart, int encodedSamples)
+	{
+		boolean due = frameStart >= nextSeekSample;
+		if (!due && !cuePoints.isEmpty()) {
+			Long cue = cuePoints.ceiling(frameStart);
+			due = cue != null && cue < frameStart + encodedSamples;
+		}
+		if (!due)
+			return;
+		if (seekPointCount == seekSamples.length) {
+			int newLength = seekSamples.length * 2;
+			long[] samples = new long[newLength];
+			long[] offsets = new long[newLength];
+			int[] frameSamples = new int[newLength];
+			System.arraycopy(seekSamples, 0, samples, 0, seekPointCount);
+			System.arraycopy(seekOffsets, 0, offsets, 0, seekPointCount);
+			System.arraycopy(seekFrameSamples, 0, frameSamples, 0, seekPointCount);
+			seekSamples = samples;
+			seekOffsets = offsets;
+			seekFrameSamples = frameSamples;
+		}
+		seekSamples[seekPointCount] = frameStart;
+		seekOffsets[seekPointCount] = frameBytes;
+		seekFrameSamples[seekPointCount] = encodedSamples;
+		seekPointCount++;
+		while (nextSeekSample <= frameStart)
+			nextSeekSample += seekInterval;
 	}
 
 	/**
@@ -342,9 +480,7 @@ public class FLACEncoder
 					System.err.println("addSamples(...): creating new block");
 				// copy values to approrpiate locations
 				// add each finished array to the queue
-				/*
-				 * <implement_for_variable_blocksize> blockSize = this.getNextBlockSize(samples, validSamples);
-				 */
+				// (for variable block sizes, the block is split later on, once it is about to be encoded)
 				int blockSize = streamConfig.getMaxBlockSize();
 				// int[] block = new int[blockSize*channels];
 				int[] block = recycler.getArray(blockSize * channels);
@@ -436,18 +572,10 @@ public class FLACEncoder
 			if (ber.count != ber.encodedSamples) {
 				System.err.println("Error encoding frame number: " + ber.frameNumber + ", FLAC stream potentially invalid");
 			}
-			samplesInStream += ber.encodedSamples;
-			if (ber.encodedSamples > maxBlockSize)
-				maxBlockSize = ber.encodedSamples;
-			if (ber.encodedSamples < minBlockSize)
-				minBlockSize = ber.encodedSamples;
-			int frameSize = ber.result.getTotalBits() % 8;
-			if (frameSize > maxFrameSize)
-				maxFrameSize = frameSize;
-			if (frameSize < minFrameSize)
-				minFrameSize = frameSize;
-			addSamplesToMD5(ber.samples, ber.encodedSamples, ber.skip + 1, streamConfig.getBitsPerSample());
-			recycler.add(ber.samples);
+			updateStreamInfo(ber.encodedSamples, ber.result, false);
+			addSamplesToMD5(ber.samples, ber.start, ber.encodedSamples, ber.skip + 1, streamConfig.getBitsPerSample());
+			if (ber.releaseSamples)
+				recycler.add(ber.samples);
 			ber.result = null;
 			ber.samples = null;
 			usedBlockEncodeRequests.add(ber);
@@ -484,18 +612,25 @@ public class FLACEncoder
 			}
 			int[] block = blockQueue.elementAt(0);
 			// encode
-			int encodedSamples = block.length / channels;// interchannel samples
-			EncodedElement result = new EncodedElement(1, 0);
-			// BlockEncodeRequest ber = new BlockEncodeRequest();
-			BlockEncodeRequest ber = usedBlockEncodeRequests.poll();
-			if (ber == null)
-				ber = new BlockEncodeRequest();
-			ber.setAll(block, encodedSamples, 0, channels - 1, nextFrameNumber++, result);
-			threadManager.addRequest(ber);
+			int blockSamples = streamConfig.getMaxBlockSize();// interchannel samples(array may be longer)
+			int subBlocks = splitBlock(block, blockSamples, channels);
+			int subBlockStart = 0;
+			for (int i = 0; i < subBlocks; i++) {
+				int encodedSamples = subBlockSizes[i];
+				EncodedElement result = new EncodedElement(1, 0);
+				// BlockEncodeRequest ber = new BlockEncodeRequest();
+				BlockEncodeRequest ber = usedBlockEncodeRequests.poll();
+				if (ber == null)
+					ber = new BlockEncodeRequest();
+				ber.setAll(block, encodedSamples, subBlockStart * channels, channels - 1, getNextFrameNumber(encodedSamples),
+						result, !variableBlockSize, i == subBlocks - 1);
+				threadManager.addRequest(ber);
+				subBlockStart += encodedSamples;
+			}
 			blockQueue.remove(0);
 			blocksLeft--;
-			count -= encodedSamples;
-			encodedCount += encodedSamples;
+			count -= blockSamples;
+			encodedCount += blockSamples;
 		}
 		// block while requests remain!!!!
 		threadManager.blockWhileQueueExceeds(5);
@@ -506,7 +641,7 @@ public class FLACEncoder
 		// handle "end" setting
 		if (end && this.samplesAvailableToEncode() >= count) {
 			// handle remaining count
-			if (count > 0 && unfinishedBlockUsed >= count) {
+			if (count > 0 && unfinishedBlockUsed / channels >= count) {
 				int[] block = null;
 				if (blockQueue.size() > 0) {
 					block = blockQueue.elementAt(0);
@@ -515,7 +650,8 @@ public class FLACEncoder
 					block = unfinishedBlock;
 				int encodedSamples = count;// interchannel samples
 				EncodedElement result = new EncodedElement(1, 0);
-				int encoded = frame.encodeSamples(block, encodedSamples, 0, channels - 1, result, nextFrameNumber);
+				int encoded = frame.encodeSamples(block, encodedSamples, 0, channels - 1, result,
+						getNextFrameNumber(encodedSamples), !variableBlockSize);
 				if (encoded != encodedSamples) {
 					// ERROR! Return immediately. Do not add results to output.
 					System.err.println("FLACEncoder::encodeSamples : (end)Error in encoding");
@@ -527,18 +663,8 @@ public class FLACEncoder
 					encodedCount += encodedSamples;
 					count -= encodedSamples;
 					// addSamplesToMD5(block, encodedSamples, 0,channels);
-					addSamplesToMD5(block, encodedSamples, channels, streamConfig.getBitsPerSample());
-					samplesInStream += encodedSamples;
-					nextFrameNumber++;
-					if (encodedSamples > maxBlockSize)
-						maxBlockSize = encodedSamples;
-					if (encodedSamples < minBlockSize)
-						minBlockSize = encodedSamples;
-					int frameSize = result.getTotalBits() % 8;
-					if (frameSize > maxFrameSize)
-						maxFrameSize = frameSize;
-					if (frameSize < minFrameSize)
-						minFrameSize = frameSize;
+					addSamplesToMD5(block, 0, encodedSamples, channels, streamConfig.getBitsPerSample());
+					updateStreamInfo(encodedSamples, result, true);
 					// System.err.println("Count: " + count);
 				}
 			}
@@ -586,38 +712,37 @@ public class FLACEncoder
 			}
 			int[] block = blockQueue.elementAt(0);
 			// encode
-			int encodedSamples = block.length / channels;// interchannel samples
-			// count -= encodedSamples;
-			EncodedElement result = new EncodedElement(1, 0);
-			int encoded = frame.encodeSamples(block, encodedSamples, 0, channels - 1, result, nextFrameNumber);
-			if (encoded != encodedSamples) {
-				// ERROR! Return immediately. Do not add results to output.
-				System.err.println("FLACEncoder::encodeSamples : Error in encoding");
-				encodeError = true;
-				break;
+			int blockSamples = streamConfig.getMaxBlockSize();// interchannel samples(array may be longer)
+			int subBlocks = splitBlock(block, blockSamples, channels);
+			int subBlockStart = 0;
+			for (int i = 0; i < subBlocks; i++) {
+				int encodedSamples = subBlockSizes[i];
+				EncodedElement result = new EncodedElement(1, 0);
+				int encoded = frame.encodeSamples(block, encodedSamples, subBlockStart * channels, channels - 1, result,
+						getNextFrameNumber(encodedSamples), !variableBlockSize);
+				if (encoded != encodedSamples) {
+					// ERROR! Return immediately. Do not add results to output.
+					System.err.println("FLACEncoder::encodeSamples : Error in encoding");
+					encodeError = true;
+					break;
+				}
+				// write encoded results to output.
+				// System.err.println("writing frame: "+nextFrameNumber);
+				writeDataToOutput(result.getNext());
+				// update blocks, MD5
+				updateStreamInfo(encodedSamples, result, false);
+				// addSamplesToMD5(block, encodedSamples, 0,channels);
+				addSamplesToMD5(block, subBlockStart * channels, encodedSamples, channels, streamConfig.getBitsPerSample());
+				subBlockStart += encodedSamples;
 			}
-			// write encoded results to output.
-			// System.err.println("writing frame: "+nextFrameNumber);
-			writeDataToOutput(result.getNext());
-			// update encodedCount and count, and blocks, MD5
+			if (encodeError)
+				break;
+			// update encodedCount and count
 			blockQueue.remove(0);
 			blocksLeft--;
-			encodedCount += encodedSamples;
+			encodedCount += blockSamples;
 			// System.err.println("Count pre: " + count);
-			count -= encodedSamples;
-			samplesInStream += encodedSamples;
-			nextFrameNumber++;
-			if (encodedSamples > maxBlockSize)
-				maxBlockSize = encodedSamples;
-			if (encodedSamples < minBlockSize)
-				minBlockSize = encodedSamples;
-			int frameSize = result.getTotalBits() % 8;
-			if (frameSize > maxFrameSize)
-				maxFrameSize = frameSize;
-			if (frameSize < minFrameSize)
-				minFrameSize = frameSize;
-			// addSamplesToMD5(block, encodedSamples, 0,channels);
-			addSamplesToMD5(block, encodedSamples, channels, streamConfig.getBitsPerSample());
+			count -= blockSamples;
 			recycler.add(block);
 			// System.err.println("Count post: " + count);
 		}
@@ -626,7 +751,7 @@ public class FLACEncoder
 			threadManager.stop();
 		if (end && !encodeError && this.samplesAvailableToEncode() >= count) {
 			// handle remaining count
-			if (count > 0 && unfinishedBlockUsed >= count) {
+			if (count > 0 && unfinishedBlockUsed / channels >= count) {
 				int[] block = null;
 				if (blockQueue.size() > 0) {
 					block = blockQueue.elementAt(0);
@@ -635,7 +760,8 @@ public class FLACEncoder
 					block = unfinishedBlock;
 				int encodedSamples = count;// interchannel samples
 				EncodedElement result = new EncodedElement(1, 0);
-				int encoded = frame.encodeSamples(block, encodedSamples, 0, channels - 1, result, nextFrameNumber);
+				int encoded = frame.encodeSamples(block, encodedSamples, 0, channels - 1, result,
+						getNextFrameNumber(encodedSamples), !variableBlockSize);
 				if (encoded != encodedSamples) {
 					// ERROR! Return immediately. Do not add results to output.
 					System.err.println("FLACEncoder::encodeSamples : (end)Error in encoding");
@@ -647,18 +773,8 @@ public class FLACEncoder
 					encodedCount += encodedSamples;
 					count -= encodedSamples;
 					// addSamplesToMD5(block, encodedSamples, 0,channels);
-					addSamplesToMD5(block, encodedSamples, channels, streamConfig.getBitsPerSample());
-					samplesInStream += encodedSamples;
-					nextFrameNumber++;
-					if (encodedSamples > maxBlockSize)
-						maxBlockSize = encodedSamples;
-					if (encodedSamples < minBlockSize)
-						minBlockSize = encodedSamples;
-					int frameSize = result.getTotalBits() % 8;
-					if (frameSize > maxFrameSize)
-						maxFrameSize = frameSize;
-					if (frameSize < minFrameSize)
-						minFrameSize = frameSize;
+					addSamplesToMD5(block, 0, encodedSamples, channels, streamConfig.getBitsPerSample());
+					updateStreamInfo(encodedSamples, result, true);
 					// System.err.println("Count: " + count);
 				}
 			}
@@ -674,15 +790,82 @@ public class FLACEncoder
 		return encodedCount;
 	}
 
+	/**
+	 * Split a block into the sub-blocks that will each be encoded as one frame, storing their sizes in subBlockSizes. Blocks
+	 * are only split in variable block-size streams.
+	 * 
+	 * @param block
+	 *            interleaved samples of the block
+	 * @param count
+	 *            number of inter-channel samples in the block
+	 * @param channels
+	 *            number of channels
+	 * @return number of sub-blocks stored in subBlockSizes
+	 */
+	private int splitBlock(int[] block, int count, int channels)
+	{
+		if (!variableBlockSize) {
+			subBlockSizes[0] = count;
+			return 1;
+		}
+		return transientDetector.split(block, count, channels, subBlockSizes);
+	}
+
+	/**
+	 * Get the number to store in the header of the next frame, and advance past it. This is the frame number for fixed
+	 * block-size streams, and the number of the frame's first sample for variable block-size streams.
+	 * 
+	 * @param encodedSamples
+	 *            number of inter-channel samples in the next frame
+	 * @return frame header number for the next frame
+	 */
+	private long getNextFrameNumber(int encodedSamples)
+	{
+		long number = variableBlockSize ? nextSampleNumber : nextFrameNumber;
+		nextFrameNumber++;
+		nextSampleNumber += encodedSamples;
+		return number;
+	}
+
+	/**
+	 * Update the values stored in the stream header to account for a frame that was just written.
+	 * 
+	 * @param encodedSamples
+	 *            number of inter-channel samples in the frame
+	 * @param result
+	 *            encoded frame
+	 * @param isLast
+	 *            true for the remainder frame which ends the stream; as the FLAC format requires, it does not count towards
+	 *            the minimum block size
+	 */
+	private void updateStreamInfo(int encodedSamples, EncodedElement result, boolean isLast)
+	{
+		int frameSize = result.getTotalBits() / 8;
+		if (seekTablePos != 0)
+			addSeekPoint(samplesInStream, encodedSamples);
+		frameBytes += frameSize;
+		samplesInStream += encodedSamples;
+		if (encodedSamples > maxBlockSize)
+			maxBlockSize = encodedSamples;
+		if (!isLast && encodedSamples < minBlockSize)
+			minBlockSize = encodedSamples;
+		if (frameSize > maxFrameSize)
+			maxFrameSize = frameSize;
+		if (frameSize < minFrameSize)
+			minFrameSize = frameSize;
+	}
+
 	/**
 	 * Add samples to the MD5 hash. CURRENTLY ONLY MAY WORK FOR: sample sizes which are divisible by 8. Need to create some
 	 * audio to test with.
 	 * 
 	 * @param samples
+	 * @param start
+	 *            index of the first sample to add
 	 * @param count
 	 * @param channels
 	 */
-	private void addSamplesToMD5(int[] samples, int count, int channels, int sampleSize)
+	private void addSamplesToMD5(int[] samples, int start, int count, int channels, int sampleSize)
 	{
 		int bytesPerSample = sampleSize / 8;
 		if (sampleSize % 8 != 0)
@@ -695,7 +878,7 @@ public class FLACEncoder
 		for (int i = 0; i < count * channels; i++) {
 			int destIndexBase = i * bytesPerSample;
 			for (int x = 0; x < bytesPerSample; x++) {
-				dataMD5[destIndexBase + x] = (byte) (samples[i] >> x * 8);
+				dataMD5[destIndexBase + x] = (byte) (samples[start + i] >> x * 8);
 			}
 		}
 		md.update(dataMD5, 0, count * bytesPerSample * channels);
@@ -753,6 +936,28 @@ public class FLACEncoder
 		return writtenBytes;
 	}
 
+	/**
+	 * Get the recycler which sample blocks and encoding scratch arrays of this encoder are taken from. Mostly useful to
+	 * inspect how well arrays are being reused.
+	 * 
+	 * @return array recycler of this encoder.
+	 */
+	public ArrayRecycler getArrayRecycler()
+	{
+		return recycler;
+	}
+
+	/**
+	 * Get number of blocks waiting to be encoded: full blocks queued in this encoder, plus encode requests still held by the
+	 * thread manager when encoding with threads.
+	 * 
+	 * @return number of blocks not yet encoded.
+	 */
+	public int getQueuedBlockCount()
+	{
+		return blockQueue.size() + threadManager.getTotalManagedCount();
+	}
+
 	/**
 	 * Get number of samples which are ready to encode. More samples may exist in the encoder as a partial block. Use
 	 * samplesAvailableToEncode() if you wish to include those as well.
@@ -761,12 +966,8 @@ public class FLACEncoder
 	 */
 	public int fullBlockSamplesAvailableToEncode()
 	{
-		int available = 0;
-		int channels = streamConfig.getChannelCount();
-		for (int[] block : blockQueue) {
-			available += block.length / channels;
-		}
-		return available;
+		// every queued block holds exactly one maximum sized block
+		return blockQueue.size() * streamConfig.getMaxBlockSize();
 	}
 
 	/**
@@ -780,11 +981,9 @@ public class FLACEncoder
 		int available = 0;
 		// sum all in blockQueue
 		int channels = streamConfig.getChannelCount();
-		for (int[] block : blockQueue) {
-			available += block.length / channels;
-		}
-		// add remaining in unfinishedBlock.
-		available += unfinishedBlockUsed;
+		available += blockQueue.size() * streamConfig.getMaxBlockSize();
+		// add remaining in unfinishedBlock(unfinishedBlockUsed counts interleaved samples).
+		available += unfinishedBlockUsed / channels;
 		return available;
 	}
 
@@ -9,6 +9,10 @@
  */
 package net.sourceforge.javaflacencoder;
 
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Handles taking a set of audio samples, and splitting it into the proper subframes, and returning the resulting encoded data.
  * This object will do any calculations needed for preparing the “channel configuration” used in encoding, such as mid-side or
@@ -22,6 +26,46 @@ public class Frame
 	 * For debugging: Higher level equals more output(generally in increments of 10
 	 */
 	public static int DEBUG_LEV = 0;
+	/* pool running the subframe tasks of all frames, created once parallel subframe encoding is first used */
+	private static ForkJoinPool subframePool = null;
+
+	/**
+	 * Encodes a single channel on a helper frame, so that several channels of a frame may be encoded at the same time. The
+	 * channel is always encoded at bit offset zero, and moved to its actual position once a channel configuration is chosen.
+	 */
+	private static class SubframeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		final Frame frame;
+		final ChannelData channel;
+		final int count;
+		final boolean testConstant;
+		final EncodedElement data = new EncodedElement();
+		int size;
+
+		SubframeTask(final Frame frame, final ChannelData channel, final int count, final boolean testConstant)
+		{
+			this.frame = frame;
+			this.channel = channel;
+			this.count = count;
+			this.testConstant = testConstant;
+		}
+
+		@Override
+		protected void compute()
+		{
+			frame.testConstant = testConstant;
+			size = frame.encodeChannel(channel.getSamples(), count, 0, 0, 0, data, channel.getSampleSize());
+		}
+	}
+
+	private static synchronized ForkJoinPool getSubframePool()
+	{
+		if (subframePool == null) {
+			subframePool = new ForkJoinPool();
+		}
+		return subframePool;
+	}
 
 	private static int allChannelDecorrelation(final int[] samples, final int count, final int start, final int skip,
 			final EncodedElement data, final int offset, final Frame f)
@@ -47,7 +91,7 @@ public class Frame
 		}
 		int[] midSideSamples = f._midSideSamples;
 		if (midSideSamples == null || midSideSamples.length < samples.length) {
-			midSideSamples = new int[samples.length];
+			midSideSamples = f.recycler.ensureSize(midSideSamples, samples.length);
 			f._midSideSamples = midSideSamples;
 		}
 		int index = 0;
@@ -138,7 +182,7 @@ public class Frame
 	private static int encodeMidSide(final int[] samples, final int count, final int start, final int skip,
 			final EncodedElement data, final int offset, final Frame f)
 	{
-		final int[] midSide = new int[samples.length];
+		final int[] midSide = f.recycler.getArray(samples.length);
 		for (int i = 0; i < count; i++) {
 			final int temp = (samples[2 * i] + samples[2 * i + 1]) >> 1;
 			// if(temp %2 != 0) temp++;
@@ -146,11 +190,13 @@ public class Frame
 			midSide[2 * i + 1] = (samples[2 * i] - samples[2 * i + 1]);
 			// midSide[2*i+1] = 0;
 		}
-		return f.encodeIndependent(midSide, count, start, skip, data, offset);
+		final int result = f.encodeIndependent(midSide, count, start, skip, data, offset);
+		f.recycler.add(midSide);
+		return result;
 	}
 
-	private static void getIndependentChannels(final int[] samples, final int count, final ChannelData[] channels,
-			final int sampleSize)
+	private static void getIndependentChannels(final int[] samples, final int start, final int count,
+			final ChannelData[] channels, final int sampleSize, final ArrayRecycler recycler)
 	{
 		final int channelCount = channels.length;
 		final int[][] independentSamples = new int[channels.length][];
@@ -160,7 +206,7 @@ public class Frame
 				independentSamples[i] = channels[i].getSamples();
 			}
 			if (independentSamples[i] == null || independentSamples[i].length < count) {
-				independentSamples[i] = new int[count];
+				independentSamples[i] = recycler.ensureSize(independentSamples[i], count);
 			}
 			if (temp != null) {
 				channels[i].setData(independentSamples[i], count, sampleSize, ChannelData.ChannelName.INDEPENDENT);
@@ -171,13 +217,13 @@ public class Frame
 		}
 		for (int i = 0; i < count; i++) {
 			for (int x = 0; x < channelCount; x++) {
-				independentSamples[x][i] = samples[channelCount * i + x];
+				independentSamples[x][i] = samples[start + channelCount * i + x];
 			}
 		}
 	}
 
-	private static void getMidSideChannels(final int[] samples, final int count, final ChannelData[] channels,
-			final int sampleSize)
+	private static void getMidSideChannels(final int[] samples, final int start, final int count,
+			final ChannelData[] channels, final int sampleSize, final ArrayRecycler recycler)
 	{
 		final ChannelData midData = channels[0];
 		final ChannelData sideData = channels[1];
@@ -190,10 +236,10 @@ public class Frame
 			sideSamples = sideData.getSamples();
 		}
 		if (midSamples == null || midSamples.length < count) {
-			midSamples = new int[count];
+			midSamples = recycler.ensureSize(midSamples, count);
 		}
 		if (sideSamples == null || sideSamples.length < count) {
-			sideSamples = new int[count];
+			sideSamples = recycler.ensureSize(sideSamples, count);
 		}
 		if (midData != null) {
 			channels[0].setData(midSamples, count, sampleSize, ChannelData.ChannelName.MID);
@@ -208,9 +254,10 @@ public class Frame
 			channels[1] = new ChannelData(sideSamples, count, sampleSize + 1, ChannelData.ChannelName.SIDE);
 		}
 		for (int i = 0; i < count; i++) {
-			final int temp = (samples[2 * i] + samples[2 * i + 1]) >> 1;
-			midSamples[i] = temp;
-			sideSamples[i] = (samples[2 * i] - samples[2 * i + 1]);
+			final int left = samples[start + 2 * i];
+			final int right = samples[start + 2 * i + 1];
+			midSamples[i] = (left + right) >> 1;
+			sideSamples[i] = left - right;
 		}
 	}
 
@@ -288,12 +335,16 @@ public class Frame
 	Subframe_LPC lpcSubframe;
 	ChannelData[] msChanData = null;
 	long[] r_sums = new long[4];
+	/* Source of scratch arrays, shared with the subframes */
+	ArrayRecycler recycler;
 	/* Current stream configuration */
 	StreamConfiguration sc;
 	/* Flag tracking whether we need to test for a constant subframe */
 	boolean testConstant;
 	/* Used for calculation of verbatimSubframes */
 	Subframe_Verbatim verbatimSubframe;
+	/* Helper frames encoding channels in parallel; each subframe task needs its own subframe objects */
+	Frame[] taskFrames = null;
 
 	/**
 	 * Constructor. Private to prevent it's use(if a StreamConfiguration isn't set, then most methods will fail in an undefined
@@ -311,16 +362,31 @@ public class Frame
 	 *            StreamConfiguration to use for encoding with this frame.
 	 */
 	public Frame(final StreamConfiguration sc)
+	{
+		this(sc, new ArrayRecycler());
+	}
+
+	/**
+	 * Constructor. Sets the StreamConfiguration to use at creation of object, and the recycler which all scratch arrays of
+	 * this frame and its subframes are taken from. The recycler may be shared between frames used by different threads.
+	 * 
+	 * @param sc
+	 *            StreamConfiguration to use for encoding with this frame.
+	 * @param recycler
+	 *            source of reusable arrays.
+	 */
+	public Frame(final StreamConfiguration sc, final ArrayRecycler recycler)
 	{
 		lastEncodeSize = 0;
+		this.recycler = recycler;
 		channels = sc.getChannelCount();
 		this.sc = sc;
 		frameHeader = new FrameHeader();
 		crc16 = new CRC16();
 		ec = null;
 		verbatimSubframe = new Subframe_Verbatim(sc);
-		fixedSubframe = new Subframe_Fixed(sc);
-		lpcSubframe = new Subframe_LPC(sc);
+		fixedSubframe = new Subframe_Fixed(sc, recycler);
+		lpcSubframe = new Subframe_LPC(sc, recycler);
 		constantSubframe = new Subframe_Constant(sc);
 		bitsPerSample = sc.getBitsPerSample();
 		testConstant = true;
@@ -465,6 +531,81 @@ public class Frame
 		return totalSize;
 	}
 
+	/**
+	 * Encodes all given channel configurations like encodeChannels(...) does for a single one, but runs each channel as a
+	 * separate fork-join task. Channels shared between configurations(such as the side channel) are only encoded once. The
+	 * subframes of the smallest configuration are attached to "result".
+	 * 
+	 * @return index of the configuration chosen.
+	 */
+	int encodeChannelsParallel(final ChannelData[][] configs, final int count, final EncodedElement result)
+	{
+		final ArrayList<SubframeTask> tasks = new ArrayList<SubframeTask>();
+		final SubframeTask[][] configTasks = new SubframeTask[configs.length][];
+		for (int i = 0; i < configs.length; i++) {
+			configTasks[i] = new SubframeTask[configs[i].length];
+			for (int c = 0; c < configs[i].length; c++) {
+				SubframeTask task = null;
+				for (final SubframeTask t : tasks) {
+					if (t.channel == configs[i][c]) {
+						task = t;
+						break;
+					}
+				}
+				if (task == null) {
+					task = new SubframeTask(getTaskFrame(tasks.size()), configs[i][c], count, testConstant);
+					tasks.add(task);
+				}
+				configTasks[i][c] = task;
+			}
+		}
+		getSubframePool().invoke(new RecursiveAction()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute()
+			{
+				invokeAll(tasks);
+			}
+		});
+		int chosen = 0;
+		int size = Integer.MAX_VALUE;
+		for (int i = 0; i < configTasks.length; i++) {
+			int configSize = 0;
+			for (final SubframeTask task : configTasks[i]) {
+				configSize += task.size;
+			}
+			if (configSize < size) {
+				size = configSize;
+				chosen = i;
+			}
+		}
+		// move each subframe to the bit position it ends up at
+		int totalSize = 0;
+		for (final SubframeTask task : configTasks[chosen]) {
+			result.attachEnd(task.data.copyToOffset(totalSize % 8));
+			totalSize += task.size;
+		}
+		return chosen;
+	}
+
+	private Frame getTaskFrame(final int index)
+	{
+		if (taskFrames == null || taskFrames.length <= index) {
+			final Frame[] frames = new Frame[index + 1];
+			if (taskFrames != null) {
+				System.arraycopy(taskFrames, 0, frames, 0, taskFrames.length);
+			}
+			taskFrames = frames;
+		}
+		if (taskFrames[index] == null) {
+			taskFrames[index] = new Frame(sc, recycler);
+			taskFrames[index].registerConfiguration(ec);
+		}
+		return taskFrames[index];
+	}
+
 	int encodeIndependent(final int[] samples, final int count, final int start, final int skip, final EncodedElement result,
 			int offset)
 	{
@@ -515,23 +656,27 @@ public class Frame
 	private int encodeLeftSide(final int[] samples, final int count, final int start, final int skip,
 			final EncodedElement data, final int offset)
 	{
-		final int[] leftSide = new int[samples.length];
+		final int[] leftSide = recycler.getArray(samples.length);
 		for (int i = 0; i < count; i++) {
 			leftSide[2 * i] = samples[2 * i];
 			leftSide[2 * i + 1] = samples[2 * i] - samples[2 * i + 1];
 		}
-		return encodeIndependent(leftSide, count, start, skip, data, offset);
+		final int result = encodeIndependent(leftSide, count, start, skip, data, offset);
+		recycler.add(leftSide);
+		return result;
 	}
 
 	private int encodeRightSide(final int[] samples, final int count, final int start, final int skip,
 			final EncodedElement data, final int offset)
 	{
-		final int[] rightSide = new int[samples.length];
+		final int[] rightSide = recycler.getArray(samples.length);
 		for (int i = 0; i < count; i++) {
 			rightSide[2 * i] = samples[2 * i] - samples[2 * i + 1];
 			rightSide[2 * i + 1] = samples[2 * i + 1];
 		}
-		return encodeIndependent(rightSide, count, start, skip, data, offset);
+		final int result = encodeIndependent(rightSide, count, start, skip, data, offset);
+		recycler.add(rightSide);
+		return result;
 	}
 
 	/**
@@ -560,6 +705,33 @@ public class Frame
 	 */
 	public int encodeSamples(final int[] samples, final int count, final int start, final int skip,
 			final EncodedElement result, final long frameNumber)
+	{
+		return encodeSamples(samples, count, start, skip, result, frameNumber, true);
+	}
+
+	/**
+	 * Encodes samples into the appropriate compressed format, as encodeSamples(samples, count, start, skip, result,
+	 * frameNumber), but allows encoding frames of a variable block-size stream.
+	 * 
+	 * @param samples
+	 *            the audio samples to encode, interleaved if multiple channels exist.
+	 * @param count
+	 *            the number of inter-channel samples to encode.
+	 * @param start
+	 *            the index of the first sample of the first channel in the array.
+	 * @param skip
+	 *            the number of indices to skip between successive samples of one channel.
+	 * @param result
+	 *            the EncodedElement to attach encoded data to.
+	 * @param frameNumber
+	 *            the frame number for fixed block-size streams, or the number of the first sample in this frame for variable
+	 *            block-size streams.
+	 * @param fixedBlockSize
+	 *            true if the stream uses a fixed block size, false otherwise.
+	 * @return int Returns the number of inter-channel samples encoded.
+	 */
+	public int encodeSamples(final int[] samples, final int count, final int start, final int skip,
+			final EncodedElement result, final long frameNumber, final boolean fixedBlockSize)
 	{
 		// System.err.println("FRAME::encodeSamples: frame#:"+frameNumber);
 		if (DEBUG_LEV > 0) {
@@ -572,21 +744,30 @@ public class Frame
 		final int samplesEncoded = count;
 		testConstant = true;
 		EncodedElement data = null;
-		final ChannelData[][] chanConfigData = getChannelsToEncode(samples, count, sc.getChannelCount(), sc.getBitsPerSample());
+		final ChannelData[][] chanConfigData = getChannelsToEncode(samples, start, count, sc.getChannelCount(),
+				sc.getBitsPerSample());
 		int size = Integer.MAX_VALUE;
 		EncodingConfiguration.ChannelConfig chConf = EncodingConfiguration.ChannelConfig.INDEPENDENT;
-		for (final ChannelData[] element : chanConfigData) {
-			final EncodedElement temp = new EncodedElement();
-			final int configSize = encodeChannels(element, temp);
-			if (configSize < size) {
-				size = configSize;
-				data = temp;
-				chConf = determineConfigUsed(element);
+		if (ec.parallelSubframes && (chanConfigData.length > 1 || chanConfigData[0].length > 1)) {
+			data = new EncodedElement();
+			final int chosen = encodeChannelsParallel(chanConfigData, count, data);
+			chConf = determineConfigUsed(chanConfigData[chosen]);
+		}
+		else {
+			for (final ChannelData[] element : chanConfigData) {
+				final EncodedElement temp = new EncodedElement();
+				final int configSize = encodeChannels(element, temp);
+				if (configSize < size) {
+					size = configSize;
+					data = temp;
+					chConf = determineConfigUsed(element);
+				}
 			}
 		}
 		// create header element; attach to result
 		final EncodedElement header = new EncodedElement(FrameHeader.MAX_HEADER_SIZE, 0);
-		frameHeader.createHeader(true, count, sc.getSampleRate(), chConf, sc.getBitsPerSample(), frameNumber, channels, header);
+		frameHeader.createHeader(fixedBlockSize, count, sc.getSampleRate(), chConf, sc.getBitsPerSample(), frameNumber, channels,
+				header);
 		// result.setNext(header);
 		result.attachEnd(header);
 		// attach data to header
@@ -711,7 +892,8 @@ public class Frame
 		return samplesEncoded;
 	}
 
-	private ChannelData[][] getChannelsToEncode(final int[] samples, final int count, final int channels, final int sampleSize)
+	private ChannelData[][] getChannelsToEncode(final int[] samples, final int start, final int count, final int channels,
+			final int sampleSize)
 	{
 		ChannelData[] independent = indChanData;
 		ChannelData[] midSide = msChanData;
@@ -725,13 +907,13 @@ public class Frame
 			if (independent == null || independent.length != channels) {
 				independent = new ChannelData[channels];
 			}
-			getIndependentChannels(samples, count, independent, sampleSize);
+			getIndependentChannels(samples, start, count, independent, sampleSize, recycler);
 		}
 		if (chConf != EncodingConfiguration.ChannelConfig.INDEPENDENT) {
 			if (midSide == null || midSide.length != 2) {
 				midSide = new ChannelData[2];
 			}
-			getMidSideChannels(samples, count, midSide, sampleSize);
+			getMidSideChannels(samples, start, count, midSide, sampleSize, recycler);
 		}
 		if (chConf == EncodingConfiguration.ChannelConfig.ENCODER_CHOICE) {
 			chConf = selectOptimalChannels(independent, midSide, count);
@@ -775,10 +957,20 @@ public class Frame
 		return results;
 	}
 
+	/**
+	 * Build the footer holding the CRC16 of the finished frame. This is one pass over the frame once it is assembled, rather
+	 * than a CRC kept up to date as bits are written: several channel configurations are encoded for each frame and only the
+	 * smallest is kept, and subframes encoded in parallel are only shifted into place once chosen, so the bytes of the frame
+	 * are not final until then.
+	 * 
+	 * @param header
+	 *            first element of the frame, followed by its data.
+	 * @return footer element to attach to the end of the frame.
+	 */
 	EncodedElement getCRC16(final EncodedElement header)
 	{
 		final EncodedElement crc16Ele = new EncodedElement(2, 0);
-		final short valNew = header.getCRC16();
+		final short valNew = header.getCRC16(crc16);
 		crc16Ele.addInt(valNew, 16);
 		return crc16Ele;
 	}
@@ -818,6 +1010,13 @@ public class Frame
 		fixedSubframe.registerConfiguration(this.ec);
 		lpcSubframe.registerConfiguration(this.ec);
 		constantSubframe.registerConfiguration(this.ec);
+		if (taskFrames != null) {
+			for (final Frame taskFrame : taskFrames) {
+				if (taskFrame != null) {
+					taskFrame.registerConfiguration(this.ec);
+				}
+			}
+		}
 		changed = true;
 		return changed;
 	}
@@ -55,8 +55,7 @@ public class FrameHeader
 	 * form for a FLAC stream.
 	 * 
 	 * @param fixBlock
-	 *            True to use a fixed block size, false to use variable. At this time, this *must* be set to True, as variable
-	 *            block size is not yet implemented.
+	 *            True to use a fixed block size, false to use variable. This must not change within a stream.
 	 * @param blockSize
 	 *            Block Size of this frame.
 	 * @param sampleRate
@@ -66,7 +66,7 @@ public class FrameThread implements Runnable
 				}
 				else {// get available BlockEncodeRequest from manager
 					ber.encodedSamples = frame.encodeSamples(ber.samples, ber.count, ber.start, ber.skip, ber.result,
-							ber.frameNumber);
+							ber.frameNumber, ber.fixedBlockSize);
 					ber.valid = true;
 					manager.returnFinishedRequest(ber);
 					ber = manager.getWaitingRequest();
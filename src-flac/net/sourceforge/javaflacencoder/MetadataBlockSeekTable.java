@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2010 Preston Lacey http://javaflacencoder.sourceforge.net/ All Rights Reserved. This library is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option) any later version. This library is distributed in
+ * the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. You should have received a copy of the
+ * GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package net.sourceforge.javaflacencoder;
+
+/**
+ * MetadataBlockSeekTable is used to create a SEEKTABLE metadata block, which lets decoders jump close to any sample without
+ * decoding the stream up to it. Each seek point stores the number of the first sample of a frame, the byte offset of that
+ * frame from the first frame of the stream, and the number of samples in the frame. Since the table is written before the
+ * audio, its size must be chosen when the stream is opened; points which end up unused are written as placeholders.
+ */
+public class MetadataBlockSeekTable
+{
+	/** Size of a single seek point, in bytes. */
+	public static final int SEEK_POINT_SIZE = 18;
+	/** Sample number marking a placeholder seek point. */
+	public static final long PLACEHOLDER_SAMPLE = 0xFFFFFFFFFFFFFFFFL;
+
+	/**
+	 * Constructor. This class defines only static methods and fields.
+	 */
+	public MetadataBlockSeekTable()
+	{
+	}
+
+	/**
+	 * Create a FLAC SEEKTABLE metadata block. If more seek points are given than fit in the table, evenly spaced points are
+	 * picked from them; if fewer are given, the table is filled up with placeholders.
+	 * 
+	 * @param sampleNumbers
+	 *            number of the first sample of each seek point's frame, in ascending order without duplicates.
+	 * @param offsets
+	 *            byte offset of each seek point's frame, relative to the first frame of the stream.
+	 * @param frameSamples
+	 *            number of samples in each seek point's frame.
+	 * @param count
+	 *            number of valid seek points in the given arrays.
+	 * @param size
+	 *            number of seek points in the table.
+	 * @return EncodedElement containing the created SEEKTABLE block.
+	 */
+	public static EncodedElement getSeekTable(long[] sampleNumbers, long[] offsets, int[] frameSamples, int count, int size)
+	{
+		EncodedElement ele = new EncodedElement();
+		int bytes = getByteSize(size);
+		byte data[] = new byte[bytes];
+		ele.setData(data);
+		int index = 0;
+		for (int i = 0; i < size; i++) {
+			if (i < count) {
+				int point = (count <= size) ? i : (int) ((long) i * count / size);
+				EncodedElement.addLong(sampleNumbers[point], 64, index, data);
+				EncodedElement.addLong(offsets[point], 64, index + 64, data);
+				EncodedElement.addInt(frameSamples[point], 16, index + 128, data);
+			}
+			else {
+				EncodedElement.addLong(PLACEHOLDER_SAMPLE, 64, index, data);
+			}
+			index += SEEK_POINT_SIZE * 8;
+		}
+		ele.setUsableBits(index);
+		return ele;
+	}
+
+	/**
+	 * Get the size of a SEEKTABLE metadata block holding the given number of seek points.
+	 * 
+	 * @param size
+	 *            number of seek points.
+	 * @return size of the block in bytes, not including the metadata block header.
+	 */
+	static public int getByteSize(int size)
+	{
+		return size * SEEK_POINT_SIZE;
+	}
+}
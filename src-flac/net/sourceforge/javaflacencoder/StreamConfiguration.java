@@ -250,7 +250,7 @@ public class StreamConfiguration implements Cloneable
 	public int setMinBlockSize(int size)
 	{
 		minBlockSize = (size <= MAX_BLOCK_SIZE) ? size : MAX_BLOCK_SIZE;
-		minBlockSize = (minBlockSize >= MIN_BLOCK_SIZE) ? maxBlockSize : MIN_BLOCK_SIZE;
+		minBlockSize = (minBlockSize >= MIN_BLOCK_SIZE) ? minBlockSize : MIN_BLOCK_SIZE;
 		return minBlockSize;
 	}
 
@@ -30,6 +30,8 @@ public abstract class Subframe
 	protected EncodingConfiguration ec;
 	/** Store for size of last subframe encoded(in bits). */
 	protected int lastEncodedSize;
+	/** Source of the scratch arrays used while encoding. May be shared with other subframes and threads. */
+	protected ArrayRecycler recycler;
 
 	/**
 	 * Constructor is private to prevenet it's use, as a subframe is not usable without first setting a
@@ -48,8 +50,22 @@ public abstract class Subframe
 	 *            StreamConfiguration to use for encoding.
 	 */
 	public Subframe(StreamConfiguration sc)
+	{
+		this(sc, new ArrayRecycler());
+	}
+
+	/**
+	 * Constructor. Sets StreamConfiguration to use, as well as the recycler which scratch arrays are taken from.
+	 * 
+	 * @param sc
+	 *            StreamConfiguration to use for encoding.
+	 * @param recycler
+	 *            source of reusable arrays.
+	 */
+	public Subframe(StreamConfiguration sc, ArrayRecycler recycler)
 	{
 		this.sc = sc;
+		this.recycler = recycler;
 		ec = new EncodingConfiguration();
 	}
 
@@ -54,7 +54,20 @@ public class Subframe_Fixed extends Subframe
 	 */
 	public Subframe_Fixed(StreamConfiguration sc)
 	{
-		super(sc);
+		this(sc, new ArrayRecycler());
+	}
+
+	/**
+	 * Constructor. Sets StreamConfiguration to use, and the recycler to take residual arrays from.
+	 * 
+	 * @param sc
+	 *            StreamConfiguration to use for encoding.
+	 * @param recycler
+	 *            source of reusable arrays.
+	 */
+	public Subframe_Fixed(StreamConfiguration sc, ArrayRecycler recycler)
+	{
+		super(sc, recycler);
 		sampleSize = sc.getBitsPerSample();
 		rice = new RiceEncoder();
 		bits = new int[5];
@@ -90,13 +103,14 @@ public class Subframe_Fixed extends Subframe
 		int increment = skip + 1;
 		// create space for results: Need four sets for the 5 different versions,
 		// the e0 is sampe as input samples, so no duplicate needed.
-		if (count != _lastCount) {
-			_error1 = new int[count];
-			_error2 = new int[count];
-			_error3 = new int[count];
-			_error4 = new int[count];
-			_lastCount = count;
+		// arrays are only exchanged when too small, as block sizes vary between frames
+		if (_error1 == null || _error1.length < count) {
+			_error1 = recycler.ensureSize(_error1, count);
+			_error2 = recycler.ensureSize(_error2, count);
+			_error3 = recycler.ensureSize(_error3, count);
+			_error4 = recycler.ensureSize(_error4, count);
 		}
+		_lastCount = count;
 		int[] error1 = _error1;
 		int[] error2 = _error2;
 		int[] error3 = _error3;
@@ -284,13 +298,14 @@ public class Subframe_Fixed extends Subframe
 		int increment = skip + 1;
 		// create space for results: Need four sets for the 5 different versions,
 		// the e0 is sampe as input samples, so no duplicate needed.
-		if (count != _lastCount) {
-			_error1 = new int[count];
-			_error2 = new int[count];
-			_error3 = new int[count];
-			_error4 = new int[count];
-			_lastCount = count;
+		// arrays are only exchanged when too small, as block sizes vary between frames
+		if (_error1 == null || _error1.length < count) {
+			_error1 = recycler.ensureSize(_error1, count);
+			_error2 = recycler.ensureSize(_error2, count);
+			_error3 = recycler.ensureSize(_error3, count);
+			_error4 = recycler.ensureSize(_error4, count);
 		}
+		_lastCount = count;
 		int[] error1 = _error1;
 		int[] error2 = _error2;
 		int[] error3 = _error3;
@@ -66,7 +66,12 @@ public class Subframe_LPC extends Subframe
 
 	Subframe_LPC(StreamConfiguration sc)
 	{
-		super(sc);
+		this(sc, new ArrayRecycler());
+	}
+
+	Subframe_LPC(StreamConfiguration sc, ArrayRecycler recycler)
+	{
+		super(sc, recycler);
 		sampleSize = sc.getBitsPerSample();
 		rice = new RiceEncoder();
 		lpcs = new LPC[MAX_LPC_ORDER + 1];
@@ -101,12 +106,13 @@ public class Subframe_LPC extends Subframe
 			}
 		}
 		int increment = skip + 1;
-		if (count != _lastCount) {
-			_errors = new int[count];
-			tempErrors = new int[count];
-			_lastCount = count;
-			_windowedSamples = new int[count];
+		// arrays are only exchanged when too small, as block sizes vary between frames
+		if (_errors == null || _errors.length < count || tempErrors.length < count) {
+			_errors = recycler.ensureSize(_errors, count);
+			tempErrors = recycler.ensureSize(tempErrors, count);
+			_windowedSamples = recycler.ensureSize(_windowedSamples, count);
 		}
+		_lastCount = count;
 		int minOrder = ec.getMinLPCOrder();
 		int maxOrder = ec.getMaxLPCOrder();
 		int frameSampleSize = unencSampleSize;
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2010 Preston Lacey http://javaflacencoder.sourceforge.net/ All Rights Reserved. This library is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option) any later version. This library is distributed in
+ * the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. You should have received a copy of the
+ * GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package net.sourceforge.javaflacencoder;
+
+/**
+ * TransientDetector chooses block boundaries for variable block-size encoding. A block is measured in windows of the minimum
+ * block size, using the summed absolute first difference of all channels as a cheap energy estimate. Whenever the loudest
+ * window of a block is much louder than its quietest window(such as at the onset of a gunshot), the block is split in two
+ * halves which are then examined the same way. Sharp transients thereby end up in short blocks, while steady audio keeps
+ * using long blocks. For best results, the maximum block size should be a power-of-two multiple of the minimum block size.
+ */
+public class TransientDetector
+{
+	/** Default energy ratio between loudest and quietest window which causes a split. */
+	public static final int DEFAULT_TRANSIENT_RATIO = 8;
+	/** Average per-sample difference below which a window is considered too quiet to matter. */
+	static final int NOISE_FLOOR = 8;
+	/* size of the windows energy is measured on, equal to the minimum block size */
+	int windowSize;
+	/* energy ratio which causes a split */
+	int transientRatio;
+	/* energy of each window of the block being split; reused between calls */
+	long[] windowEnergy = null;
+	/* output position while splitting */
+	private int sizeCount;
+
+	/**
+	 * Constructor. Blocks will never be split into anything smaller than the given minimum block size.
+	 *
+	 * @param minBlockSize
+	 *            minimum block size allowed in the stream.
+	 */
+	public TransientDetector(int minBlockSize)
+	{
+		this(minBlockSize, DEFAULT_TRANSIENT_RATIO);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param minBlockSize
+	 *            minimum block size allowed in the stream.
+	 * @param transientRatio
+	 *            energy ratio between the loudest and the quietest window of a block above which the block is split.
+	 */
+	public TransientDetector(int minBlockSize, int transientRatio)
+	{
+		windowSize = minBlockSize;
+		this.transientRatio = transientRatio;
+	}
+
+	/**
+	 * Get the maximum number of blocks that split() may return for a block of the given size.
+	 *
+	 * @param count
+	 *            number of inter-channel samples in the block.
+	 * @return maximum number of sub-blocks.
+	 */
+	public int getMaxSplitCount(int count)
+	{
+		return (count + windowSize - 1) / windowSize;
+	}
+
+	/**
+	 * Split a block of interleaved samples into sub-blocks. The sizes of the resulting sub-blocks are stored in order in
+	 * "sizes", and always sum up to "count".
+	 *
+	 * @param samples
+	 *            interleaved samples of the block, starting at index 0.
+	 * @param count
+	 *            number of inter-channel samples in the block.
+	 * @param channels
+	 *            number of channels interleaved in "samples".
+	 * @param sizes
+	 *            array receiving the sub-block sizes. Must be at least getMaxSplitCount(count) long.
+	 * @return number of sub-blocks stored in "sizes".
+	 */
+	public int split(int[] samples, int count, int channels, int[] sizes)
+	{
+		int windows = getMaxSplitCount(count);
+		if (windows < 2) {
+			sizes[0] = count;
+			return 1;
+		}
+		if (windowEnergy == null || windowEnergy.length < windows)
+			windowEnergy = new long[windows];
+		final long[] energy = windowEnergy;
+		for (int w = 0; w < windows; w++) {
+			int first = w * windowSize;
+			int last = first + windowSize;
+			if (last > count)
+				last = count;
+			long sum = 0;
+			for (int c = 0; c < channels; c++) {
+				int index = first * channels + c;
+				int previous = (first == 0) ? samples[index] : samples[index - channels];
+				for (int i = first; i < last; i++) {
+					int current = samples[index];
+					int diff = current - previous;
+					sum += (diff < 0) ? -diff : diff;
+					previous = current;
+					index += channels;
+				}
+			}
+			// scale a partial window so it compares fairly against full ones
+			energy[w] = sum * windowSize / (last - first);
+		}
+		sizeCount = 0;
+		split(0, windows, count, channels, sizes);
+		return sizeCount;
+	}
+
+	private void split(int firstWindow, int lastWindow, int count, int channels, int[] sizes)
+	{
+		if (lastWindow - firstWindow >= 2 && isTransient(firstWindow, lastWindow, channels)) {
+			int middle = firstWindow + (lastWindow - firstWindow) / 2;
+			split(firstWindow, middle, count, channels, sizes);
+			split(middle, lastWindow, count, channels, sizes);
+		}
+		else {
+			int end = lastWindow * windowSize;
+			if (end > count)
+				end = count;
+			sizes[sizeCount++] = end - firstWindow * windowSize;
+		}
+	}
+
+	private boolean isTransient(int firstWindow, int lastWindow, int channels)
+	{
+		final long[] energy = windowEnergy;
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		for (int w = firstWindow; w < lastWindow; w++) {
+			if (energy[w] < min)
+				min = energy[w];
+			if (energy[w] > max)
+				max = energy[w];
+		}
+		long floor = (long) NOISE_FLOOR * windowSize * channels;
+		return max > floor && max > min * transientRatio;
+	}
+}
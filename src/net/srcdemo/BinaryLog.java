@@ -0,0 +1,210 @@
+package net.srcdemo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of the debug log, for when even formatting messages as text is too much. Message patterns and
+ * thread names are written once and referred to by number afterwards, and arguments are written as their raw values, so
+ * writing an entry is little more than copying it. {@link #decode(InputStream, PrintStream)} turns such a file back into
+ * text.
+ */
+public final class BinaryLog {
+	private static final byte droppedRecord = 'O';
+	private static final byte entryRecord = 'E';
+	private static final byte[] magic = "SRCDEMOLOG".getBytes(Charset.forName("US-ASCII"));
+	private static final byte stringRecord = 'F';
+	private static final byte suppressedRecord = 'S';
+	private static final Charset utf8 = Charset.forName("UTF-8");
+	private static final int version = 1;
+
+	/**
+	 * Print the entries of a binary log as text, one per line, with the time since logging started and the thread name.
+	 */
+	public static void decode(final InputStream stream, final PrintStream output) throws IOException {
+		final DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+		final byte[] header = new byte[magic.length];
+		input.readFully(header);
+		for (int i = 0; i < magic.length; i++) {
+			if (header[i] != magic[i]) {
+				throw new IOException("Not a binary SrcDemo log");
+			}
+		}
+		final int fileVersion = input.readInt();
+		if (fileVersion != version) {
+			throw new IOException("Unsupported binary log version: " + fileVersion);
+		}
+		output.println("Logging started at " + new Date(input.readLong()));
+		final List<String> strings = new ArrayList<String>();
+		while (true) {
+			final int record = input.read();
+			if (record == -1) {
+				break;
+			}
+			try {
+				switch (record) {
+					case stringRecord:
+						strings.add(readString(input));
+						break;
+					case entryRecord:
+						final double seconds = input.readLong() / 1e9d;
+						final String thread = strings.get(input.readInt());
+						final char tag = (char) input.readByte();
+						final int patternId = input.readInt();
+						final String pattern = patternId == -1 ? readString(input) : strings.get(patternId);
+						final Object[] args = new Object[input.readUnsignedByte()];
+						for (int i = 0; i < args.length; i++) {
+							args[i] = readValue(input);
+						}
+						output.println(String.format("%12.6f %-24s [%c] %s", seconds, thread, tag,
+							LogEntry.format(pattern, args)));
+						break;
+					case suppressedRecord:
+						final char suppressedTag = (char) input.readByte();
+						output.println("[" + suppressedTag + "] (" + input.readLong()
+							+ " messages suppressed by sampling or rate limiting)");
+						break;
+					case droppedRecord:
+						output.println("[-] (" + input.readLong() + " messages dropped; log buffer full)");
+						break;
+					default:
+						throw new IOException("Corrupt binary log: unknown record type " + record);
+				}
+			}
+			catch (final EOFException e) {
+				output.println("(Log ends in the middle of an entry)");
+				break;
+			}
+		}
+	}
+
+	private static String readString(final DataInputStream input) throws IOException {
+		final byte[] bytes = new byte[input.readInt()];
+		input.readFully(bytes);
+		return new String(bytes, utf8);
+	}
+
+	private static Object readValue(final DataInputStream input) throws IOException {
+		final char type = (char) input.readByte();
+		switch (type) {
+			case 'I':
+				return input.readInt();
+			case 'J':
+				return input.readLong();
+			case 'D':
+				return input.readDouble();
+			case 'Z':
+				return input.readBoolean();
+			case 'N':
+				return null;
+			case 'S':
+				return readString(input);
+		}
+		throw new IOException("Corrupt binary log: unknown value type " + type);
+	}
+
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final DataOutputStream output;
+
+	BinaryLog(final File file, final long startTime) throws IOException {
+		output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+		output.write(magic);
+		output.writeInt(version);
+		output.writeLong(startTime);
+	}
+
+	void close() throws IOException {
+		output.close();
+	}
+
+	void flush() throws IOException {
+		output.flush();
+	}
+
+	/**
+	 * @return Number of the given string, writing it out first if it hasn't been seen before.
+	 */
+	private int intern(final String string) throws IOException {
+		final Integer id = ids.get(string);
+		if (id != null) {
+			return id;
+		}
+		output.writeByte(stringRecord);
+		writeString(string);
+		ids.put(string, ids.size());
+		return ids.size() - 1;
+	}
+
+	void write(final LogEntry entry) throws IOException {
+		final int thread = intern(entry.thread);
+		// Only patterns with arguments are likely to come back; plain messages are usually one-off concatenations
+		final int pattern = entry.args == null || entry.args.length == 0 ? -1 : intern(entry.message);
+		output.writeByte(entryRecord);
+		output.writeLong(entry.time);
+		output.writeInt(thread);
+		output.writeByte(entry.category.tag);
+		output.writeInt(pattern);
+		if (pattern == -1) {
+			writeString(entry.message);
+			output.writeByte(0);
+			return;
+		}
+		final int count = Math.min(entry.args.length, 255);
+		output.writeByte(count);
+		for (int i = 0; i < count; i++) {
+			writeValue(entry.args[i]);
+		}
+	}
+
+	void writeDropped(final long count) throws IOException {
+		output.writeByte(droppedRecord);
+		output.writeLong(count);
+	}
+
+	private void writeString(final String string) throws IOException {
+		final byte[] bytes = string.getBytes(utf8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	void writeSuppressed(final LogCategory category, final long count) throws IOException {
+		output.writeByte(suppressedRecord);
+		output.writeByte(category.tag);
+		output.writeLong(count);
+	}
+
+	private void writeValue(final Object value) throws IOException {
+		if (value == null) {
+			output.writeByte('N');
+		} else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			output.writeByte('I');
+			output.writeInt(((Number) value).intValue());
+		} else if (value instanceof Long) {
+			output.writeByte('J');
+			output.writeLong((Long) value);
+		} else if (value instanceof Double || value instanceof Float) {
+			output.writeByte('D');
+			output.writeDouble(((Number) value).doubleValue());
+		} else if (value instanceof Boolean) {
+			output.writeByte('Z');
+			output.writeBoolean((Boolean) value);
+		} else {
+			output.writeByte('S');
+			writeString(value.toString());
+		}
+	}
+}
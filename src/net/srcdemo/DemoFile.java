@@ -0,0 +1,25 @@
+package net.srcdemo;
+
+/**
+ * A file of a demo which is currently open: the demo it belongs to and what it is, resolved once when the file is opened so
+ * that reads and writes need no further name parsing.
+ */
+final class DemoFile {
+	static final int soundFrameNumber = -1;
+	final SrcDemo demo;
+	final String fileName;
+	/**
+	 * Frame number of the file, or {@link #soundFrameNumber} for the sound file.
+	 */
+	final int frameNumber;
+
+	DemoFile(final SrcDemo demo, final String fileName, final int frameNumber) {
+		this.demo = demo;
+		this.fileName = fileName;
+		this.frameNumber = frameNumber;
+	}
+
+	boolean isSoundFile() {
+		return frameNumber == soundFrameNumber;
+	}
+}
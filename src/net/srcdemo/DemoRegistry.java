@@ -0,0 +1,183 @@
+package net.srcdemo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registry of live demos, keyed by their lowercase prefix. Lookups walk a character trie without locking and without
+ * allocating, so their cost depends on the length of the file name only, not on the number of demos. Changes to the shape of
+ * the trie copy the nodes along the changed path and publish a new root; each demo sits in a slot of its node, so removing a
+ * demo clears its slot, then drops the nodes which are left with neither a demo nor children.
+ */
+final class DemoRegistry {
+	private static final class Node {
+		private static final Node[] noChildren = new Node[0];
+		private static final char[] noKeys = new char[0];
+		private final Node[] children;
+		private final AtomicReference<SrcDemo> demo;
+		private final char[] keys;
+
+		private Node() {
+			this(noKeys, noChildren, new AtomicReference<SrcDemo>());
+		}
+
+		private Node(final char[] keys, final Node[] children, final AtomicReference<SrcDemo> demo) {
+			this.keys = keys;
+			this.children = children;
+			this.demo = demo;
+		}
+
+		private Node getChild(final char key) {
+			final int index = Arrays.binarySearch(keys, key);
+			return index < 0 ? null : children[index];
+		}
+
+		private Node withChild(final char key, final Node child) {
+			int index = Arrays.binarySearch(keys, key);
+			if (index >= 0) {
+				final Node[] newChildren = children.clone();
+				newChildren[index] = child;
+				return new Node(keys, newChildren, demo);
+			}
+			index = -index - 1;
+			final char[] newKeys = new char[keys.length + 1];
+			final Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			newKeys[index] = key;
+			newChildren[index] = child;
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+			return new Node(newKeys, newChildren, demo);
+		}
+
+		private Node withoutChild(final char key) {
+			final int index = Arrays.binarySearch(keys, key);
+			if (index < 0) {
+				return this;
+			}
+			final char[] newKeys = new char[keys.length - 1];
+			final Node[] newChildren = new Node[children.length - 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+			System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+			return new Node(newKeys, newChildren, demo);
+		}
+	}
+
+	private volatile Node root = new Node();
+
+	/**
+	 * Register a demo under the given prefix, unless another demo already uses it.
+	 * 
+	 * @return The demo registered under the prefix after this call.
+	 */
+	synchronized SrcDemo add(final String lowercasePrefix, final SrcDemo demo) {
+		final int length = lowercasePrefix.length();
+		final Node[] path = new Node[length + 1];
+		path[0] = root;
+		int depth = 0;
+		while (depth < length) {
+			final Node child = path[depth].getChild(lowercasePrefix.charAt(depth));
+			if (child == null) {
+				break;
+			}
+			path[++depth] = child;
+		}
+		if (depth == length) {
+			// The node exists already; only its slot needs to be filled
+			final AtomicReference<SrcDemo> slot = path[length].demo;
+			if (!slot.compareAndSet(null, demo)) {
+				return slot.get();
+			}
+			return demo;
+		}
+		Node branch = new Node();
+		branch.demo.set(demo);
+		for (int i = length - 1; i > depth; i--) {
+			branch = new Node().withChild(lowercasePrefix.charAt(i), branch);
+		}
+		// Attach the new branch, copying the existing path back up to the root
+		Node node = path[depth].withChild(lowercasePrefix.charAt(depth), branch);
+		for (int i = depth - 1; i >= 0; i--) {
+			node = path[i].withChild(lowercasePrefix.charAt(i), node);
+		}
+		root = node;
+		return demo;
+	}
+
+	/**
+	 * Find the demo whose prefix the given file name starts with, ignoring case.
+	 */
+	SrcDemo find(final String fileName) {
+		Node node = root;
+		final SrcDemo rootDemo = node.demo.get();
+		if (rootDemo != null) {
+			return rootDemo;
+		}
+		final int length = fileName.length();
+		for (int i = 0; i < length; i++) {
+			node = node.getChild(Character.toLowerCase(fileName.charAt(i)));
+			if (node == null) {
+				return null;
+			}
+			final SrcDemo demo = node.demo.get();
+			if (demo != null) {
+				return demo;
+			}
+		}
+		return null;
+	}
+
+	Collection<SrcDemo> getDemos() {
+		final Collection<SrcDemo> demos = new ArrayList<SrcDemo>();
+		getDemos(root, demos);
+		return demos;
+	}
+
+	private void getDemos(final Node node, final Collection<SrcDemo> demos) {
+		final SrcDemo demo = node.demo.get();
+		if (demo != null) {
+			demos.add(demo);
+		}
+		for (final Node child : node.children) {
+			getDemos(child, demos);
+		}
+	}
+
+	/**
+	 * Unregister the given demo. Nothing happens if another demo has taken its prefix in the meantime.
+	 */
+	synchronized boolean remove(final SrcDemo demo) {
+		final String prefix = demo.getPrefix();
+		final int length = prefix.length();
+		final Node[] path = new Node[length + 1];
+		path[0] = root;
+		for (int i = 0; i < length; i++) {
+			path[i + 1] = path[i].getChild(prefix.charAt(i));
+			if (path[i + 1] == null) {
+				return false;
+			}
+		}
+		if (!path[length].demo.compareAndSet(demo, null)) {
+			return false;
+		}
+		// Drop the nodes which only led to the removed demo, copying the rest of the path back up to the root
+		int depth = length;
+		while (depth > 0 && path[depth].demo.get() == null
+			&& path[depth].children.length == (depth == length ? 0 : 1)) {
+			depth--;
+		}
+		if (depth < length) {
+			Node node = path[depth].withoutChild(prefix.charAt(depth));
+			for (int i = depth - 1; i >= 0; i--) {
+				node = path[i].withChild(prefix.charAt(i), node);
+			}
+			root = node;
+		}
+		return true;
+	}
+}
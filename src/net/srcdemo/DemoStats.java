@@ -0,0 +1,127 @@
+package net.srcdemo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.srcdemo.audio.BufferedAudioHandler.AudioBufferStatus;
+
+/**
+ * Counters describing the progress of a single demo. Updated by the demo as frames and audio go through it, and read by
+ * telemetry.
+ */
+public final class DemoStats implements DemoStatsMBean {
+	private static double getRate(final RollingRate rate) {
+		final Double value = rate.getRatePerSecond();
+		return value == null ? 0d : value;
+	}
+
+	private final RollingRate audioByteRate = new RollingRate();
+	private volatile int audioBufferOccupied = 0;
+	private volatile int audioBufferSize = 0;
+	private volatile AudioBufferStatus audioBufferStatus = null;
+	private final AtomicLong bytesWritten = new AtomicLong(0L);
+	private final RollingRate frameProcessingRate = new RollingRate();
+	private final RollingRate frameSavingRate = new RollingRate();
+	private final AtomicLong framesProcessed = new AtomicLong(0L);
+	private final AtomicLong framesSaved = new AtomicLong(0L);
+	private volatile long lastFrameTime = -1L;
+	private final String prefix;
+
+	DemoStats(final String prefix) {
+		this.prefix = prefix;
+	}
+
+	void addAudioBytesWritten(final long bytes) {
+		bytesWritten.addAndGet(bytes);
+		audioByteRate.mark(bytes);
+	}
+
+	void addBytesWritten(final long bytes) {
+		bytesWritten.addAndGet(bytes);
+	}
+
+	RollingRate getAudioByteMeter() {
+		return audioByteRate;
+	}
+
+	@Override
+	public double getAudioByteRate() {
+		return getRate(audioByteRate);
+	}
+
+	@Override
+	public int getAudioBufferOccupied() {
+		return audioBufferOccupied;
+	}
+
+	@Override
+	public int getAudioBufferSize() {
+		return audioBufferSize;
+	}
+
+	@Override
+	public String getAudioBufferStatus() {
+		final AudioBufferStatus status = audioBufferStatus;
+		return status == null ? null : status.name();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	RollingRate getFrameProcessingMeter() {
+		return frameProcessingRate;
+	}
+
+	@Override
+	public double getFrameProcessingRate() {
+		return getRate(frameProcessingRate);
+	}
+
+	RollingRate getFrameSavingMeter() {
+		return frameSavingRate;
+	}
+
+	@Override
+	public double getFrameSavingRate() {
+		return getRate(frameSavingRate);
+	}
+
+	@Override
+	public long getFramesProcessed() {
+		return framesProcessed.get();
+	}
+
+	@Override
+	public long getFramesSaved() {
+		return framesSaved.get();
+	}
+
+	@Override
+	public long getMillisSinceLastFrame() {
+		final long last = lastFrameTime;
+		return last == -1L ? -1L : System.currentTimeMillis() - last;
+	}
+
+	@Override
+	public String getPrefix() {
+		return prefix;
+	}
+
+	void onAudioBuffer(final AudioBufferStatus status, final int occupied, final int total) {
+		audioBufferStatus = status;
+		audioBufferOccupied = occupied;
+		audioBufferSize = total;
+	}
+
+	void onFrameProcessed() {
+		framesProcessed.incrementAndGet();
+		frameProcessingRate.mark();
+		lastFrameTime = System.currentTimeMillis();
+	}
+
+	void onFrameSaved() {
+		framesSaved.incrementAndGet();
+		frameSavingRate.mark();
+	}
+}
@@ -0,0 +1,52 @@
+package net.srcdemo;
+
+/**
+ * Live statistics of a demo being rendered, as exposed over JMX.
+ */
+public interface DemoStatsMBean {
+	/**
+	 * @return Audio bytes written per second, recently; 0 if unknown.
+	 */
+	public double getAudioByteRate();
+
+	/**
+	 * @return Bytes currently held in the audio buffer.
+	 */
+	public int getAudioBufferOccupied();
+
+	/**
+	 * @return Size of the audio buffer, in bytes; 0 if audio isn't buffered.
+	 */
+	public int getAudioBufferSize();
+
+	/**
+	 * @return State of the audio buffer (REGULAR, FLUSHING or DESTROYED), or null if audio isn't buffered.
+	 */
+	public String getAudioBufferStatus();
+
+	/**
+	 * @return Total bytes written to the frames and sound file of this demo.
+	 */
+	public long getBytesWritten();
+
+	/**
+	 * @return Sub-frames processed per second, recently; 0 if unknown.
+	 */
+	public double getFrameProcessingRate();
+
+	/**
+	 * @return Blended frames saved per second, recently; 0 if unknown.
+	 */
+	public double getFrameSavingRate();
+
+	public long getFramesProcessed();
+
+	public long getFramesSaved();
+
+	/**
+	 * @return Milliseconds since a frame was last processed, or -1 if none was.
+	 */
+	public long getMillisSinceLastFrame();
+
+	public String getPrefix();
+}
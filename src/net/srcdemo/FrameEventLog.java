@@ -0,0 +1,200 @@
+package net.srcdemo;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Timeline of where each frame spends its time: sub-frames being written, blend groups being finalized, frames being
+ * queued and saved, audio flushes and FLAC blocks, along with every garbage collection. Events are written in the Chrome
+ * trace event format, which chrome://tracing and Perfetto can open, one row per thread, each event tagged with its demo and
+ * frame or sequence number. Off unless a file is given on the command line.
+ */
+public final class FrameEventLog {
+	private static final String audioCategory = "audio";
+	private static final String gcCategory = "gc";
+	private static final String videoCategory = "video";
+	private static volatile boolean enabled = false;
+	private static boolean firstEvent = true;
+	private static final NotificationListener gcListener = new NotificationListener() {
+		@Override
+		public void handleNotification(final Notification notification, final Object handback) {
+			if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+				return;
+			}
+			final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+				.from((CompositeData) notification.getUserData());
+			// GC times are in milliseconds since the JVM started
+			final long start = (jvmStartTime + info.getGcInfo().getStartTime() - wallStartTime) * 1000L;
+			write(info.getGcName(), gcCategory, start, info.getGcInfo().getDuration() * 1000L, 0L, "\"cause\":\""
+				+ escape(info.getGcCause()) + "\"");
+		}
+	};
+	private static long jvmStartTime;
+	private static long nanoStartTime;
+	private static long wallStartTime;
+	private static Writer writer = null;
+
+	public static void audioFlush(final String demo, final long start) {
+		span("Audio flush", audioCategory, start, demo, -1);
+	}
+
+	/**
+	 * A blend group was turned into final pixels and queued for saving.
+	 */
+	public static void blendGroupFinalized(final String demo, final int sequenceIndex, final long start) {
+		span("Blend group finalize", videoCategory, start, demo, sequenceIndex);
+	}
+
+	private static String escape(final String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	public static void flacBlock(final String file, final long blockNumber, final long start) {
+		if (enabled) {
+			write("FLAC block", audioCategory, toMicros(start), toMicros(System.nanoTime()) - toMicros(start), Thread
+				.currentThread().getId(), "\"file\":\"" + escape(file) + "\",\"block\":" + blockNumber);
+		}
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void saveFinished(final String demo, final int sequenceIndex, final long start) {
+		span("Save", videoCategory, start, demo, sequenceIndex);
+	}
+
+	public static void saveQueued(final String demo, final int sequenceIndex) {
+		if (enabled) {
+			final long now = toMicros(System.nanoTime());
+			write("Save queued", videoCategory, now, -1L, Thread.currentThread().getId(), "\"demo\":\"" + escape(demo)
+				+ "\",\"frame\":" + sequenceIndex);
+		}
+	}
+
+	/**
+	 * Record an event which started at the given time and ends now.
+	 *
+	 * @param frame
+	 *            Frame or sequence number, or -1 if the event isn't about a single frame.
+	 */
+	private static void span(final String name, final String category, final long start, final String demo,
+		final int frame) {
+		if (!enabled) {
+			return;
+		}
+		final long startMicros = toMicros(start);
+		final String args = "\"demo\":\"" + escape(demo) + "\"" + (frame == -1 ? "" : ",\"frame\":" + frame);
+		write(name, category, startMicros, toMicros(System.nanoTime()) - startMicros, Thread.currentThread().getId(), args);
+	}
+
+	/**
+	 * Start writing events to the given file, replacing it. Does nothing if events are already being written.
+	 */
+	public static synchronized void start(final File file) throws IOException {
+		if (writer != null) {
+			return;
+		}
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 65536);
+		writer.write("[\n");
+		firstEvent = true;
+		wallStartTime = System.currentTimeMillis();
+		nanoStartTime = System.nanoTime();
+		jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+		for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector instanceof NotificationEmitter) {
+				((NotificationEmitter) collector).addNotificationListener(gcListener, null, null);
+			}
+		}
+		enabled = true;
+		Runtime.getRuntime().addShutdownHook(new Thread("Frame event log shutdown") {
+			@Override
+			public void run() {
+				FrameEventLog.stop();
+			}
+		});
+	}
+
+	public static synchronized void stop() {
+		if (writer == null) {
+			return;
+		}
+		enabled = false;
+		for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector instanceof NotificationEmitter) {
+				try {
+					((NotificationEmitter) collector).removeNotificationListener(gcListener);
+				}
+				catch (final Exception e) {
+					// Wasn't listening to this one
+				}
+			}
+		}
+		try {
+			writer.write("\n]\n");
+			writer.close();
+		}
+		catch (final IOException e) {
+			SrcLogger.error("Error while closing frame event log", e);
+		}
+		writer = null;
+	}
+
+	/**
+	 * A sub-frame was closed; it was first written to at the given time.
+	 */
+	public static void subFrame(final String demo, final int frameNumber, final long created) {
+		span("Sub-frame", videoCategory, created, demo, frameNumber);
+	}
+
+	private static long toMicros(final long nanoTime) {
+		return (nanoTime - nanoStartTime) / 1000L;
+	}
+
+	/**
+	 * @param duration
+	 *            In microseconds, or -1 for an instant event.
+	 */
+	private static synchronized void write(final String name, final String category, final long start,
+		final long duration, final long thread, final String args) {
+		if (writer == null) {
+			return;
+		}
+		final StringBuilder event = new StringBuilder(160);
+		if (!firstEvent) {
+			event.append(",\n");
+		}
+		firstEvent = false;
+		event.append("{\"name\":\"").append(name).append("\",\"cat\":\"").append(category);
+		if (duration < 0L) {
+			event.append("\",\"ph\":\"i\",\"s\":\"t\"");
+		} else {
+			event.append("\",\"ph\":\"X\",\"dur\":").append(duration);
+		}
+		event.append(",\"ts\":").append(start).append(",\"pid\":1,\"tid\":").append(thread).append(",\"args\":{")
+			.append(args).append("}}");
+		try {
+			writer.write(event.toString());
+		}
+		catch (final IOException e) {
+			SrcLogger.error("Error while writing frame event log; disabling it", e);
+			enabled = false;
+		}
+	}
+
+	private FrameEventLog() {
+	}
+}
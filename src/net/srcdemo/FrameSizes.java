@@ -0,0 +1,91 @@
+package net.srcdemo;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Number of bytes written to each frame of a demo. Sizes are kept in a fixed ring indexed by frame number: while rendering,
+ * a frame takes over its slot from the frame one full ring earlier, which is how old sizes expire, and frames older than the
+ * one occupying their slot read as empty and can't be updated anymore. Creating a frame always takes its slot over, so a
+ * demo rendered again, whose frame numbers start over, gets its slots back from the previous render.
+ */
+final class FrameSizes {
+	private static final int emptySlot = Integer.MIN_VALUE;
+	private final AtomicIntegerArray frames;
+	private final int mask;
+	private final AtomicLongArray sizes;
+
+	/**
+	 * @param capacity
+	 *            Number of most recent frames to keep; rounded up to a power of two.
+	 */
+	FrameSizes(final int capacity) {
+		final int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		mask = size - 1;
+		frames = new AtomicIntegerArray(size);
+		sizes = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			frames.set(i, emptySlot);
+		}
+	}
+
+	void add(final int frameNumber, final long delta) {
+		final int slot = frameNumber & mask;
+		if (claim(slot, frameNumber)) {
+			sizes.addAndGet(slot, delta);
+		}
+	}
+
+	/**
+	 * @return Whether the slot now belongs to the given frame.
+	 */
+	private boolean claim(final int slot, final int frameNumber) {
+		final int current = frames.get(slot);
+		if (current == frameNumber) {
+			return true;
+		}
+		if (current != emptySlot && current > frameNumber) {
+			return false;
+		}
+		synchronized (this) {
+			final int owner = frames.get(slot);
+			if (owner == frameNumber) {
+				return true;
+			}
+			if (owner != emptySlot && owner > frameNumber) {
+				return false;
+			}
+			// Reset the size before publishing the new owner, so readers never see the previous frame's size
+			sizes.set(slot, 0L);
+			frames.set(slot, frameNumber);
+			return true;
+		}
+	}
+
+	/**
+	 * Give the frame's slot to the given frame, with a size of 0, whichever frame held it before.
+	 */
+	void create(final int frameNumber) {
+		final int slot = frameNumber & mask;
+		synchronized (this) {
+			// Reset the size before publishing the new owner, so readers never see the previous frame's size
+			sizes.set(slot, 0L);
+			frames.set(slot, frameNumber);
+		}
+	}
+
+	long get(final int frameNumber) {
+		final int slot = frameNumber & mask;
+		if (frames.get(slot) != frameNumber) {
+			return 0L;
+		}
+		return sizes.get(slot);
+	}
+
+	void set(final int frameNumber, final long size) {
+		final int slot = frameNumber & mask;
+		if (claim(slot, frameNumber)) {
+			sizes.set(slot, size);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package net.srcdemo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds which many threads can record into without locking. Buckets are powers of two, each
+ * split into {@link #subBuckets} linear sub-buckets, so any value is known to within 1/{@link #subBuckets} of itself, from
+ * a nanosecond up to centuries, in under 500 counters.
+ */
+public final class LatencyHistogram {
+	public static final class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long max;
+		private final long total;
+
+		private Snapshot(final long[] counts, final long count, final long total, final long max) {
+			this.counts = counts;
+			this.count = count;
+			this.total = total;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * @return Mean duration in nanoseconds, or 0 if nothing was recorded.
+		 */
+		public double getMean() {
+			return count == 0L ? 0d : (double) total / count;
+		}
+
+		/**
+		 * @param percentile
+		 *            Between 0 and 1.
+		 * @return Upper bound of the bucket containing the given percentile, in nanoseconds; never more than the maximum.
+		 */
+		public long getPercentile(final double percentile) {
+			long seen = 0L;
+			for (final long c : counts) {
+				seen += c;
+			}
+			if (seen == 0L) {
+				return 0L;
+			}
+			final long rank = Math.max(1L, (long) Math.ceil(seen * percentile));
+			seen = 0L;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(max, getBucketStart(i + 1) - 1L);
+				}
+			}
+			return max;
+		}
+
+		public long getTotal() {
+			return total;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", count, getMean() / 1000d,
+				getPercentile(0.5d) / 1000d, getPercentile(0.99d) / 1000d, max / 1000d);
+		}
+	}
+
+	private static final int subBucketBits = 3;
+	private static final int subBuckets = 1 << subBucketBits;
+	private static final int bucketCount = (64 - subBucketBits) * subBuckets;
+
+	/**
+	 * @return Smallest value falling into the given bucket.
+	 */
+	private static long getBucketStart(final int bucket) {
+		if (bucket < subBuckets) {
+			return bucket;
+		}
+		final int exponent = bucket / subBuckets + subBucketBits - 1;
+		if (exponent >= 63) {
+			return Long.MAX_VALUE;
+		}
+		return (long) (subBuckets + bucket % subBuckets) << exponent - subBucketBits;
+	}
+
+	private static int getBucket(final long value) {
+		if (value < subBuckets) {
+			return (int) Math.max(0L, value);
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		return (exponent - subBucketBits + 1) * subBuckets + (int) (value >>> exponent - subBucketBits) % subBuckets;
+	}
+
+	private final AtomicLong count = new AtomicLong(0L);
+	private final AtomicLongArray counts = new AtomicLongArray(bucketCount);
+	private final AtomicLong max = new AtomicLong(0L);
+	private final AtomicLong total = new AtomicLong(0L);
+
+	public void record(final long nanos) {
+		counts.incrementAndGet(getBucket(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long currentMax;
+		while (nanos > (currentMax = max.get())) {
+			if (max.compareAndSet(currentMax, nanos)) {
+				break;
+			}
+		}
+	}
+
+	public void reset() {
+		for (int i = 0; i < bucketCount; i++) {
+			counts.set(i, 0L);
+		}
+		count.set(0L);
+		total.set(0L);
+		max.set(0L);
+	}
+
+	/**
+	 * @return A copy of the current state. Values recorded while the copy is made may or may not be part of it.
+	 */
+	public Snapshot snapshot() {
+		final long[] copy = new long[bucketCount];
+		for (int i = 0; i < bucketCount; i++) {
+			copy[i] = counts.get(i);
+		}
+		return new Snapshot(copy, count.get(), total.get(), max.get());
+	}
+}
@@ -0,0 +1,73 @@
+package net.srcdemo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kinds of debug messages, each sampled and rate-limited on its own so that a flood of filesystem messages can't crowd out
+ * the video ones.
+ */
+enum LogCategory {
+	AUDIO('A'), DEMO('D'), FS('F'), MISC('-'), VIDEO('V');
+	static LogCategory fromTag(final char tag) {
+		for (final LogCategory category : values()) {
+			if (category.tag == tag) {
+				return category;
+			}
+		}
+		return MISC;
+	}
+
+	private final AtomicLong sampleCounter = new AtomicLong(0L);
+	private final AtomicLong suppressed = new AtomicLong(0L);
+	final char tag;
+	/**
+	 * Second of the current rate window in the high half, messages let through during it in the low half.
+	 */
+	private final AtomicLong window = new AtomicLong(0L);
+
+	private LogCategory(final char tag) {
+		this.tag = tag;
+	}
+
+	/**
+	 * @param sampleEvery
+	 *            Only let one message through out of this many.
+	 * @param rateLimit
+	 *            Maximum number of messages let through per second, or 0 for no limit.
+	 * @param second
+	 *            Current second, counted from any fixed point.
+	 * @return Whether the message should be logged. Counts it as suppressed if not.
+	 */
+	boolean accept(final int sampleEvery, final int rateLimit, final long second) {
+		if (sampleEvery > 1 && sampleCounter.getAndIncrement() % sampleEvery != 0L) {
+			suppressed.incrementAndGet();
+			return false;
+		}
+		if (rateLimit <= 0) {
+			return true;
+		}
+		while (true) {
+			final long packed = window.get();
+			final long updated;
+			if (packed >>> 32 == second) {
+				if ((packed & 0xffffffffL) >= rateLimit) {
+					suppressed.incrementAndGet();
+					return false;
+				}
+				updated = packed + 1L;
+			} else {
+				updated = second << 32 | 1L;
+			}
+			if (window.compareAndSet(packed, updated)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return Number of messages suppressed since the last call.
+	 */
+	long takeSuppressed() {
+		return suppressed.getAndSet(0L);
+	}
+}
@@ -0,0 +1,49 @@
+package net.srcdemo;
+
+/**
+ * A debug message waiting to be written. Its arguments are only turned into text once it is written, on the log writer
+ * thread.
+ */
+final class LogEntry {
+	/**
+	 * Replace each {} in the given pattern by the next argument. Placeholders left over once the arguments run out are kept
+	 * as they are.
+	 */
+	static String format(final String pattern, final Object[] args) {
+		if (args == null || args.length == 0) {
+			return pattern;
+		}
+		final StringBuilder builder = new StringBuilder(pattern.length() + 16 * args.length);
+		int from = 0;
+		for (final Object arg : args) {
+			final int placeholder = pattern.indexOf("{}", from);
+			if (placeholder == -1) {
+				break;
+			}
+			builder.append(pattern, from, placeholder).append(arg);
+			from = placeholder + 2;
+		}
+		return builder.append(pattern, from, pattern.length()).toString();
+	}
+
+	final Object[] args;
+	final LogCategory category;
+	final String message;
+	final String thread;
+	/**
+	 * In nanoseconds since the logger was loaded.
+	 */
+	final long time;
+
+	LogEntry(final LogCategory category, final String message, final Object[] args, final long time, final String thread) {
+		this.category = category;
+		this.message = message;
+		this.args = args;
+		this.time = time;
+		this.thread = thread;
+	}
+
+	String format() {
+		return format(message, args);
+	}
+}
@@ -1,5 +1,6 @@
 package net.srcdemo;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
@@ -10,6 +11,7 @@ import net.srcdemo.cmd.Arguments;
 import net.srcdemo.cmd.SrcDemoCmd;
 import net.srcdemo.ui.Files;
 import net.srcdemo.ui.SrcDemoUI;
+import net.srcdemo.userfs.MountOptions;
 import net.srcdemo.userfs.UserFSUtils;
 import net.srcdemo.userfs.UserFSUtils.DokanNotInstalledException;
 import net.srcdemo.userfs.UserFSUtils.DokanVersionException;
@@ -30,6 +32,18 @@ public final class Main {
 	private static final void commonInit(final String[] args) throws DokanNotInstalledException, DokanVersionException {
 		isCommandLine = Arguments.commonEnableCmd.isPresent(args);
 		isServerJvm = !Arguments._clientJvm.isPresent(args);
+		SrcLogger.setSampling(Arguments.commonDebugSampling.getInt(args));
+		SrcLogger.setRateLimit(Arguments.commonDebugRateLimit.getInt(args));
+		SrcLogger.setBufferSize(Arguments.commonDebugBufferSize.getInt(args));
+		if (Arguments.commonDebugBinary.isPresent(args)) {
+			final File logFile = new File(Arguments.commonDebugBinary.getString(args));
+			try {
+				SrcLogger.setBinaryOutput(logFile);
+			}
+			catch (final IOException e) {
+				SrcLogger.error("Could not write debug messages to " + logFile, e);
+			}
+		}
 		if (Arguments.commonDebug.isPresent(args)) {
 			debugMode = true;
 			SrcLogger.setLogAll(true);
@@ -63,6 +77,36 @@ public final class Main {
 				version = null;
 			}
 		}
+		final MountOptions mountOptions = new MountOptions()
+			.setMultithreaded(Arguments.commonMultithreaded.getBoolean(args))
+			.setMaxWrite(Arguments.commonFuseMaxWrite.getInt(args) * 1024)
+			.setBigWrites(Arguments.commonFuseBigWrites.getBoolean(args))
+			.setAttributeTimeout(Arguments.commonFuseAttributeTimeout.getDouble(args))
+			.setEntryTimeout(Arguments.commonFuseEntryTimeout.getDouble(args))
+			.setWritebackCache(Arguments.commonFuseWritebackCache.getBoolean(args));
+		if (Arguments.commonTrace.isPresent(args)) {
+			mountOptions.setTraceFile(new File(Arguments.commonTrace.getString(args))).setTraceData(
+				Arguments.commonTraceData.isPresent(args));
+		}
+		MountOptions.setDefault(mountOptions);
+		if (Arguments.commonFrameEvents.isPresent(args)) {
+			final File eventFile = new File(Arguments.commonFrameEvents.getString(args));
+			try {
+				FrameEventLog.start(eventFile);
+			}
+			catch (final IOException e) {
+				SrcLogger.error("Could not record frame events to " + eventFile, e);
+			}
+		}
+		final int metricsPort = Arguments.commonMetricsPort.getInt(args);
+		if (metricsPort != 0) {
+			try {
+				Telemetry.startHttpServer(metricsPort);
+			}
+			catch (final IOException e) {
+				SrcLogger.error("Could not serve telemetry on port " + metricsPort, e);
+			}
+		}
 		UserFSUtils.init();
 		try {
 			socket = new ServerSocket(concurrentRunPort, 8, InetAddress.getLocalHost());
@@ -0,0 +1,186 @@
+package net.srcdemo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * Keeps track of how much memory the video pipeline is holding on to, and makes writers wait when there is too much of it.
+ * Two kinds of bytes are counted: bytes held by frames being received and by blending accumulators, which are only freed
+ * once more data comes in, and bytes held by queued save tasks, which background threads free on their own. Writers only
+ * ever wait for the latter, so a single filesystem thread can never wait on itself.
+ *
+ * Heap pressure comes from the JVM itself: the heap pools are given a usage threshold, and crossing it raises a flag which
+ * stays up until the pool goes back below its threshold after a collection. The garbage collector is never invoked
+ * explicitly.
+ */
+public final class MemoryGovernor {
+	private static final double budgetPortion = 0.5d;
+	private static final long maxWait = 10000L;
+	private static final long pollInterval = 100L;
+	private static final double thresholdPortion = 0.85d;
+	private static final long budget = (long) (Runtime.getRuntime().maxMemory() * budgetPortion);
+	private static final AtomicLong held = new AtomicLong(0L);
+	private static final ReentrantLock lock = new ReentrantLock();
+	private static final Condition memoryFreed = lock.newCondition();
+	private static final List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+	private static volatile boolean pressure = false;
+	private static final AtomicLong queued = new AtomicLong(0L);
+
+	static {
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP || !pool.isUsageThresholdSupported()) {
+				continue;
+			}
+			final long max = pool.getUsage().getMax();
+			if (max <= 0L) {
+				continue;
+			}
+			final long threshold = (long) (max * thresholdPortion);
+			try {
+				pool.setUsageThreshold(threshold);
+				if (pool.isCollectionUsageThresholdSupported()) {
+					pool.setCollectionUsageThreshold(threshold);
+				}
+				pools.add(pool);
+			}
+			catch (final Exception e) {
+				SrcLogger.error("Could not set usage threshold on memory pool " + pool.getName(), e);
+			}
+		}
+		if (!pools.isEmpty()) {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(new NotificationListener() {
+				@Override
+				public void handleNotification(final Notification notification, final Object handback) {
+					final String type = notification.getType();
+					if (type.equals(MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED)
+						|| type.equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED)) {
+						if (!pressure && SrcLogger.getLogVideo()) {
+							SrcLogger.logVideo("Heap usage threshold exceeded; holding back writers. " + getStatus());
+						}
+						pressure = true;
+					}
+				}
+			}, null, null);
+		}
+	}
+
+	/**
+	 * Wait until the pipeline is under budget again, if waiting can help. Only waits while save tasks are queued, and never
+	 * for more than a few seconds in total, after which the writer goes ahead anyway.
+	 */
+	public static void awaitCapacity() {
+		if (!isOverBudget() || queued.get() <= 0L) {
+			return;
+		}
+		if (SrcLogger.getLogVideo()) {
+			SrcLogger.logVideo("Over memory budget; waiting for queued frames to be saved. " + getStatus());
+		}
+		final long deadline = System.currentTimeMillis() + maxWait;
+		lock.lock();
+		try {
+			while (isOverBudget() && queued.get() > 0L) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0L) {
+					SrcLogger.error("Still over memory budget after " + maxWait + "ms; continuing anyway. " + getStatus());
+					break;
+				}
+				memoryFreed.await(Math.min(remaining, pollInterval), TimeUnit.MILLISECONDS);
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public static long getBudget() {
+		return budget;
+	}
+
+	public static long getHeldBytes() {
+		return held.get();
+	}
+
+	public static long getQueuedBytes() {
+		return queued.get();
+	}
+
+	private static String getStatus() {
+		return "Held: " + held.get() / 1024L + "KB / Queued: " + queued.get() / 1024L + "KB / Budget: " + budget / 1024L
+			+ "KB";
+	}
+
+	/**
+	 * @return Whether the heap is still above the usage threshold. Clears the flag once every pool has gone back below it.
+	 */
+	private static boolean isHeapUnderPressure() {
+		if (!pressure) {
+			return false;
+		}
+		for (final MemoryPoolMXBean pool : pools) {
+			// Usage after the last collection is what matters; garbage alone doesn't count as pressure
+			if (pool.isCollectionUsageThresholdSupported() ? pool.isCollectionUsageThresholdExceeded() : pool
+				.isUsageThresholdExceeded()) {
+				return true;
+			}
+		}
+		pressure = false;
+		return false;
+	}
+
+	public static boolean isOverBudget() {
+		return held.get() + queued.get() > budget || isHeapUnderPressure();
+	}
+
+	/**
+	 * Return bytes previously reserved with {@link #reserve(long)}.
+	 */
+	public static void release(final long bytes) {
+		held.addAndGet(-bytes);
+	}
+
+	/**
+	 * Return bytes previously reserved with {@link #reserveQueued(long)}, and wake up writers waiting on them.
+	 */
+	public static void releaseQueued(final long bytes) {
+		queued.addAndGet(-bytes);
+		lock.lock();
+		try {
+			memoryFreed.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Account for bytes held by data being received or blended.
+	 */
+	public static void reserve(final long bytes) {
+		held.addAndGet(bytes);
+	}
+
+	/**
+	 * Account for bytes held by a task which a background thread will complete and release on its own.
+	 */
+	public static void reserveQueued(final long bytes) {
+		queued.addAndGet(bytes);
+	}
+
+	private MemoryGovernor() {
+	}
+}
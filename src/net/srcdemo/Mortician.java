@@ -1,46 +1,149 @@
 package net.srcdemo;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class Mortician extends Timer {
+/**
+ * Watches something for signs of life, and runs a callback once it has been idle for too long. All morticians share one
+ * scheduler thread. Rather than polling, each check goes back to sleep until the earliest time at which the watched object
+ * could be considered dead, so an active object costs one wakeup per timeout period. Callbacks run on a separate pool, so a
+ * slow one (such as flushing a demo's audio) never holds up the checks of other morticians.
+ */
+public class Mortician implements Runnable {
 	public interface Morticianed {
 		public boolean isBusy();
 
 		public long lastLifeSign();
 	}
 
-	private TimerTask task;
+	private static ExecutorService callbacks = null;
+	private static ScheduledThreadPoolExecutor scheduler = null;
 
+	private static synchronized ExecutorService getCallbacks() {
+		if (callbacks == null) {
+			callbacks = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Mortician callback");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return callbacks;
+	}
+
+	private static synchronized ScheduledThreadPoolExecutor getScheduler() {
+		if (scheduler == null) {
+			scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Mortician");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			scheduler.setRemoveOnCancelPolicy(true);
+		}
+		return scheduler;
+	}
+
+	private final Runnable callback;
+	private ScheduledFuture<?> check = null;
+	private final long deadBeef;
+	private final boolean keepTrying;
+	private final Morticianed morticianed;
+	private final String name;
+	private final long pollingInterval;
+	private final AtomicBoolean runningCallback = new AtomicBoolean(false);
+	private boolean stopped = false;
+
+	/**
+	 * @param pollingInterval
+	 *            Time between checks while there has been no sign of life yet, or while the object is busy.
+	 * @param deadBeef
+	 *            Time without signs of life after which the object is considered dead.
+	 */
 	public Mortician(final Morticianed morticianed, final String name, final long pollingInterval, final long deadBeef,
 		final boolean keepTrying, final Runnable callback) {
-		super(name, true);
-		task = new TimerTask() {
-			@Override
-			public void run() {
-				final long lastTime = morticianed.lastLifeSign();
-				if (lastTime != -1L && System.currentTimeMillis() - lastTime > deadBeef && !morticianed.isBusy()) {
-					if (!keepTrying) {
-						// Cancel TimerTask
-						cancel();
-						// Also cancel entire Timer
-						stopService();
-					}
-					if (callback != null) {
-						callback.run();
-					}
-				}
-			}
-		};
-		schedule(task, 0, pollingInterval);
+		this.morticianed = morticianed;
+		this.name = name;
+		this.pollingInterval = pollingInterval;
+		this.deadBeef = deadBeef;
+		this.keepTrying = keepTrying;
+		this.callback = callback;
+		schedule(0L);
 	}
 
 	public Mortician(final Morticianed morticianed, final String name, final Runnable callback) {
 		this(morticianed, name, 5000, 60000, false, callback);
 	}
 
-	public void stopService() {
-		task = null;
-		cancel();
+	@Override
+	public void run() {
+		synchronized (this) {
+			if (stopped) {
+				return;
+			}
+			check = null;
+		}
+		final long lastTime = morticianed.lastLifeSign();
+		long delay = pollingInterval;
+		if (lastTime != -1L) {
+			final long idle = System.currentTimeMillis() - lastTime;
+			if (idle <= deadBeef) {
+				// Can't be dead before then
+				delay = deadBeef - idle + 1L;
+			} else if (!morticianed.isBusy()) {
+				if (!keepTrying) {
+					stopService();
+				}
+				// Skip this one if the previous callback is still running
+				if (callback != null && runningCallback.compareAndSet(false, true)) {
+					getCallbacks().execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								callback.run();
+							}
+							catch (final Throwable e) {
+								SrcLogger.error("Error in callback of " + Mortician.this, e);
+							}
+							finally {
+								runningCallback.set(false);
+							}
+						}
+					});
+				}
+				if (!keepTrying) {
+					return;
+				}
+			}
+		}
+		schedule(delay);
+	}
+
+	private synchronized void schedule(final long delay) {
+		if (!stopped) {
+			check = getScheduler().schedule(this, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public synchronized void stopService() {
+		stopped = true;
+		if (check != null) {
+			check.cancel(false);
+			check = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Mortician(" + name + ")";
 	}
 }
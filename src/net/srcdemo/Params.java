@@ -1,6 +1,7 @@
 package net.srcdemo;
 
 import net.srcdemo.audio.AudioType;
+import net.srcdemo.userfs.MountOptions;
 import net.srcdemo.video.VideoType;
 
 public interface Params {
@@ -15,10 +16,23 @@ public interface Params {
 	static final AudioType audioTypeDef = AudioType.BUFFERED;
 	static final boolean autoCheckUpdatesDef = false;
 	static final String backingDirectoryDef = "";
+	static final int batchThreadsDef = 0;
+	static final int batchThreadsMax = 256;
+	static final int batchThreadsMin = 0;
 	static final int blendRateDef = 32;
 	static final int blendRateMax = Integer.MAX_VALUE;
 	static final int blendRateMin = 1;
 	static final int frameRateDef = 30;
+	static final double fuseAttributeTimeoutDef = MountOptions.defaultAttributeTimeout;
+	static final boolean fuseBigWritesDef = MountOptions.defaultBigWrites;
+	static final double fuseEntryTimeoutDef = MountOptions.defaultEntryTimeout;
+	static final int fuseMaxWriteDef = MountOptions.defaultMaxWrite / 1024;
+	static final int fuseMaxWriteMax = 1024;
+	static final int fuseMaxWriteMin = 4;
+	static final boolean fuseMultithreadedDef = MountOptions.defaultMultithreaded;
+	static final double fuseTimeoutMax = 3600d;
+	static final double fuseTimeoutMin = 0d;
+	static final boolean fuseWritebackCacheDef = MountOptions.defaultWritebackCache;
 	static final int frameRateMax = Integer.MAX_VALUE;
 	static final int frameRateMin = 1;
 	static final boolean gaussianBlendingDef = false;
@@ -28,6 +42,18 @@ public interface Params {
 	static final int jpegQualityDef = 95;
 	static final int jpegQualityMax = 100;
 	static final int jpegQualityMin = 1;
+	static final int logBufferSizeDef = 8192;
+	static final int logBufferSizeMax = 1048576;
+	static final int logBufferSizeMin = 64;
+	static final int logRateLimitDef = 0;
+	static final int logRateLimitMax = 1000000;
+	static final int logRateLimitMin = 0;
+	static final int logSamplingDef = 1;
+	static final int logSamplingMax = 1000000;
+	static final int logSamplingMin = 1;
+	static final int metricsPortDef = 0;
+	static final int metricsPortMax = 65535;
+	static final int metricsPortMin = 0;
 	static final String mountpointDef = "";
 	static final boolean previewEnabledDef = true;
 	static final String qSettingsName = "SrcDemo";
@@ -0,0 +1,186 @@
+package net.srcdemo;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms and queue depths for each stage of the capture pipeline, from the game writing a frame to the
+ * filesystem to the blended image being on disk. Recording costs two {@link System#nanoTime()} calls and a few atomic
+ * increments, so it is always on. Metrics are process-wide, as there is only ever one filesystem mounted at a time.
+ */
+public final class PipelineMetrics {
+	public enum Queue {
+		/**
+		 * FLAC blocks waiting to be encoded.
+		 */
+		FLAC_BLOCKS,
+		/**
+		 * Blended frames waiting to be saved.
+		 */
+		IMAGE_SAVE;
+	}
+
+	public static final class Snapshot {
+		private final Map<Queue, Long> queueDepths = new EnumMap<Queue, Long>(Queue.class);
+		private final Map<Queue, Long> queuePeaks = new EnumMap<Queue, Long>(Queue.class);
+		private final Map<Stage, LatencyHistogram.Snapshot> stages = new EnumMap<Stage, LatencyHistogram.Snapshot>(
+			Stage.class);
+		private final long time = System.currentTimeMillis();
+
+		private Snapshot() {
+			for (final Stage stage : Stage.values()) {
+				stages.put(stage, histograms.get(stage).snapshot());
+			}
+			for (final Queue queue : Queue.values()) {
+				queueDepths.put(queue, depths.get(queue.ordinal()));
+				queuePeaks.put(queue, peaks.get(queue.ordinal()));
+			}
+		}
+
+		public LatencyHistogram.Snapshot get(final Stage stage) {
+			return stages.get(stage);
+		}
+
+		public long getQueueDepth(final Queue queue) {
+			return queueDepths.get(queue);
+		}
+
+		/**
+		 * @return Highest depth the queue reached since the metrics were last reset.
+		 */
+		public long getQueuePeak(final Queue queue) {
+			return queuePeaks.get(queue);
+		}
+
+		/**
+		 * @return Wall-clock time at which the snapshot was taken.
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder builder = new StringBuilder();
+			builder.append(String.format("%-20s %9s %11s %11s %11s %11s%n", "Stage", "Count", "Mean (us)", "p50 (us)",
+				"p99 (us)", "Max (us)"));
+			for (final Stage stage : Stage.values()) {
+				final LatencyHistogram.Snapshot histogram = stages.get(stage);
+				if (histogram.getCount() == 0L) {
+					continue;
+				}
+				builder.append(String.format("%-20s %9d %11.1f %11.1f %11.1f %11.1f%n", stage, histogram.getCount(),
+					histogram.getMean() / 1000d, histogram.getPercentile(0.5d) / 1000d,
+					histogram.getPercentile(0.99d) / 1000d, histogram.getMax() / 1000d));
+			}
+			for (final Queue queue : Queue.values()) {
+				builder.append(String.format("%-20s depth %d (peak %d)%n", queue, queueDepths.get(queue),
+					queuePeaks.get(queue)));
+			}
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Stages in the order data goes through them.
+	 */
+	public enum Stage {
+		/**
+		 * A single write call on a demo file, as seen by the filesystem.
+		 */
+		FS_WRITE,
+		/**
+		 * Time a sub-frame spends being written, from its first write until it is closed.
+		 */
+		SUB_FRAME_BUFFERING,
+		/**
+		 * Copying a closed sub-frame out of its buffer and reading its TGA header.
+		 */
+		TGA_DECODE,
+		/**
+		 * Accumulating a decoded sub-frame into the blended frame.
+		 */
+		ACCUMULATION,
+		/**
+		 * Packing the accumulated frame into final pixels.
+		 */
+		FINAL_PACK,
+		/**
+		 * Encoding a blended frame into its image format, in memory.
+		 */
+		IMAGE_ENCODE,
+		/**
+		 * Writing an encoded image to disk.
+		 */
+		DISK_WRITE,
+		/**
+		 * Writing a buffered chunk of audio through to the underlying audio handler.
+		 */
+		AUDIO_FLUSH,
+		/**
+		 * Encoding one FLAC block.
+		 */
+		FLAC_ENCODE;
+	}
+
+	private static final AtomicLongArray depths = new AtomicLongArray(Queue.values().length);
+	private static final Map<Stage, LatencyHistogram> histograms = new EnumMap<Stage, LatencyHistogram>(Stage.class);
+	private static final AtomicLongArray peaks = new AtomicLongArray(Queue.values().length);
+
+	static {
+		for (final Stage stage : Stage.values()) {
+			histograms.put(stage, new LatencyHistogram());
+		}
+	}
+
+	public static void adjustQueue(final Queue queue, final long delta) {
+		final int index = queue.ordinal();
+		final long depth = depths.addAndGet(index, delta);
+		long peak;
+		while (depth > (peak = peaks.get(index))) {
+			if (peaks.compareAndSet(index, peak, depth)) {
+				break;
+			}
+		}
+	}
+
+	public static void dequeued(final Queue queue) {
+		adjustQueue(queue, -1L);
+	}
+
+	public static void enqueued(final Queue queue) {
+		adjustQueue(queue, 1L);
+	}
+
+	public static long getQueueDepth(final Queue queue) {
+		return depths.get(queue.ordinal());
+	}
+
+	/**
+	 * @param start
+	 *            Value of {@link System#nanoTime()} when the stage started.
+	 */
+	public static void record(final Stage stage, final long start) {
+		histograms.get(stage).record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Clear all histograms and queue peaks. Queue depths are left alone, as the queues themselves still hold those items.
+	 */
+	public static void reset() {
+		for (final LatencyHistogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+		for (int i = 0; i < peaks.length(); i++) {
+			peaks.set(i, depths.get(i));
+		}
+	}
+
+	public static Snapshot snapshot() {
+		return new Snapshot();
+	}
+
+	private PipelineMetrics() {
+	}
+}
@@ -0,0 +1,40 @@
+package net.srcdemo;
+
+import net.srcdemo.PipelineMetrics.Queue;
+
+final class PipelineStats implements PipelineStatsMBean {
+	@Override
+	public int getDemoCount() {
+		return Telemetry.getDemos().size();
+	}
+
+	@Override
+	public long getFlacBlockQueueDepth() {
+		return PipelineMetrics.getQueueDepth(Queue.FLAC_BLOCKS);
+	}
+
+	@Override
+	public long getHeldBytes() {
+		return MemoryGovernor.getHeldBytes();
+	}
+
+	@Override
+	public long getImageSaveQueueDepth() {
+		return PipelineMetrics.getQueueDepth(Queue.IMAGE_SAVE);
+	}
+
+	@Override
+	public long getMemoryBudget() {
+		return MemoryGovernor.getBudget();
+	}
+
+	@Override
+	public long getQueuedBytes() {
+		return MemoryGovernor.getQueuedBytes();
+	}
+
+	@Override
+	public boolean isOverMemoryBudget() {
+		return MemoryGovernor.isOverBudget();
+	}
+}
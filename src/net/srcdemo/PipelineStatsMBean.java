@@ -0,0 +1,29 @@
+package net.srcdemo;
+
+/**
+ * Process-wide statistics of the capture pipeline, as exposed over JMX.
+ */
+public interface PipelineStatsMBean {
+	public int getDemoCount();
+
+	public long getFlacBlockQueueDepth();
+
+	/**
+	 * @return Bytes held by frames being received and by blending accumulators.
+	 */
+	public long getHeldBytes();
+
+	public long getImageSaveQueueDepth();
+
+	/**
+	 * @return Bytes the pipeline may hold before writers are made to wait.
+	 */
+	public long getMemoryBudget();
+
+	/**
+	 * @return Bytes held by blended frames waiting to be saved.
+	 */
+	public long getQueuedBytes();
+
+	public boolean isOverMemoryBudget();
+}
@@ -1,51 +1,185 @@
 package net.srcdemo;
 
 import java.text.DecimalFormat;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Measures how fast something happens, such as frames being processed or audio bytes being written, over several horizons.
+ * Marking never locks: all state lives in atomics. Counts are kept per second of a one-minute ring, where each slot packs
+ * the second it belongs to with its count so that a single compare-and-set moves a slot to a new second.
+ */
 public final class RollingRate {
+	public enum Horizon {
+		/**
+		 * Exponentially weighted average of the most recent intervals between marks.
+		 */
+		INSTANT,
+		/**
+		 * The last full second.
+		 */
+		SECOND,
+		/**
+		 * The last sixty full seconds, or as many as there were.
+		 */
+		MINUTE,
+		/**
+		 * From the first mark to the last one.
+		 */
+		TOTAL;
+	}
+
+	private static final double ewmaWeight = 0.1d;
 	private static final DecimalFormat framesProcessedPerSecondFormat = new DecimalFormat(
 		Strings.lblFramesProcessedPerSecondFormat);
-	private static final int numberOfSamples = 20;
-	private static final double rateClampMax = 9001;
-	private static final double rateClampMin = 0;
-	private boolean full = false;
-	private int index = 0;
-	private final Lock lock = new ReentrantLock();
-	private final long[] times = new long[numberOfSamples];
+	private static final int intervalSamples = 256;
+	private static final long nanosPerSecond = 1000000000L;
+	private static final int secondSlots = 64;
+	private static final int windowSeconds = 60;
+	private final AtomicLong ewmaNanosPerUnit = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+	private final AtomicLong firstCount = new AtomicLong(0L);
+	private final AtomicLong firstMark = new AtomicLong(Long.MIN_VALUE);
+	private final AtomicLong intervalIndex = new AtomicLong(0L);
+	private final AtomicLongArray intervals = new AtomicLongArray(intervalSamples);
+	private final AtomicLong lastMark = new AtomicLong(Long.MIN_VALUE);
+	private final long origin = System.nanoTime();
+	private final AtomicLongArray seconds = new AtomicLongArray(secondSlots);
+	private final AtomicLong total = new AtomicLong(0L);
 
 	public RollingRate() {
 		// Nothing
 	}
 
+	private void addToSecond(final long second, final long count) {
+		final int slot = (int) (second % secondSlots);
+		while (true) {
+			final long packed = seconds.get(slot);
+			final long slotSecond = packed >>> 32;
+			final long updated;
+			if (slotSecond == second) {
+				updated = packed + count;
+			} else if (slotSecond > second) {
+				// Marked so late that the slot has moved on already
+				return;
+			} else {
+				updated = second << 32 | count;
+			}
+			if (seconds.compareAndSet(slot, packed, updated)) {
+				return;
+			}
+		}
+	}
+
+	public long getCount() {
+		return total.get();
+	}
+
+	private long getCountInSecond(final long second) {
+		final long packed = seconds.get((int) (second % secondSlots));
+		return packed >>> 32 == second ? packed & 0xffffffffL : 0L;
+	}
+
 	public String getFormattedRate() {
-		final Double rate = getRatePerSecond();
+		return getFormattedRate(Horizon.INSTANT);
+	}
+
+	public String getFormattedRate(final Horizon horizon) {
+		final Double rate = getRate(horizon);
 		return rate == null ? Strings.lblFramesProcessedPerSecondDefault : framesProcessedPerSecondFormat.format(rate);
 	}
 
-	public Double getRatePerSecond() {
-		lock.lock();
-		if (!full) {
-			lock.unlock();
-			return null;
+	/**
+	 * @param percentile
+	 *            Between 0 and 1.
+	 * @return The given percentile of the most recent intervals between marks, in nanoseconds, or -1 if there are none yet.
+	 */
+	public long getIntervalPercentile(final double percentile) {
+		final int count = (int) Math.min(intervalIndex.get(), intervalSamples);
+		if (count == 0) {
+			return -1L;
 		}
-		final long timeElapsed = times[index - 1 < 0 ? numberOfSamples - 1 : index - 1] - times[index];
-		lock.unlock();
-		if (timeElapsed == 0) {
-			return null;
+		final long[] sorted = new long[count];
+		for (int i = 0; i < count; i++) {
+			sorted[i] = intervals.get(i);
 		}
-		return Math.max(rateClampMin, Math.min(rateClampMax, 1000.0 * numberOfSamples / timeElapsed));
+		Arrays.sort(sorted);
+		return sorted[Math.min(count - 1, (int) (count * percentile))];
+	}
+
+	/**
+	 * @return Units per second over the given horizon, or null if not enough has been marked yet.
+	 */
+	public Double getRate(final Horizon horizon) {
+		switch (horizon) {
+			case INSTANT:
+				final double nanosPerUnit = Double.longBitsToDouble(ewmaNanosPerUnit.get());
+				if (Double.isNaN(nanosPerUnit) || nanosPerUnit <= 0d) {
+					return null;
+				}
+				return nanosPerSecond / nanosPerUnit;
+			case SECOND:
+			case MINUTE:
+				final long current = getSecond(System.nanoTime());
+				final int window = (int) Math.min(horizon == Horizon.SECOND ? 1 : windowSeconds, current);
+				if (window == 0) {
+					return null;
+				}
+				long count = 0L;
+				for (long second = current - window; second < current; second++) {
+					count += getCountInSecond(second);
+				}
+				return (double) count / window;
+			case TOTAL:
+				final long first = firstMark.get();
+				final long last = lastMark.get();
+				if (first == Long.MIN_VALUE || last == first) {
+					return null;
+				}
+				return (total.get() - firstCount.get()) * (double) nanosPerSecond / (last - first);
+		}
+		return null;
+	}
+
+	/**
+	 * @return Units per second recently, or null if not enough has been marked yet.
+	 */
+	public Double getRatePerSecond() {
+		return getRate(Horizon.INSTANT);
+	}
+
+	private long getSecond(final long nanoTime) {
+		return (nanoTime - origin) / nanosPerSecond;
 	}
 
 	public void mark() {
-		lock.lock();
-		times[index] = System.currentTimeMillis();
-		index++;
-		if (index >= numberOfSamples) {
-			index = 0;
-			full = true;
+		mark(1L);
+	}
+
+	public void mark(final long count) {
+		final long now = System.nanoTime();
+		total.addAndGet(count);
+		addToSecond(getSecond(now), count);
+		final long previous = lastMark.getAndSet(now);
+		if (previous == Long.MIN_VALUE) {
+			if (firstMark.compareAndSet(Long.MIN_VALUE, now)) {
+				firstCount.set(count);
+			}
+			return;
+		}
+		final long interval = Math.max(0L, now - previous);
+		intervals.set((int) (intervalIndex.getAndIncrement() % intervalSamples), interval);
+		if (count <= 0L) {
+			return;
+		}
+		final double sample = (double) interval / count;
+		while (true) {
+			final long bits = ewmaNanosPerUnit.get();
+			final double average = Double.longBitsToDouble(bits);
+			final double updated = Double.isNaN(average) ? sample : average + ewmaWeight * (sample - average);
+			if (ewmaNanosPerUnit.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+				return;
+			}
 		}
-		lock.unlock();
 	}
 }
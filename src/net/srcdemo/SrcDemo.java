@@ -15,7 +15,7 @@ import net.srcdemo.video.VideoHandler;
 import net.srcdemo.video.VideoHandlerFactory;
 
 public class SrcDemo implements Morticianed {
-	private static final long frameSizeTimeout = 30000;
+	private static final int frameSizeCapacity = 1024;
 	private static final Pattern trailingDigitsPattern = Pattern.compile("\\d+$", Pattern.CASE_INSENSITIVE);
 	private final AudioHandler audioHandler;
 	private final SrcDemoFS backingFS;
@@ -23,7 +23,7 @@ public class SrcDemo implements Morticianed {
 	private final String demoDirectory;
 	private final String demoPrefix;
 	private final boolean enableFrameFileInfo = !UserFSUtils.getOperatingSystem().isWindows();
-	private final TimedMap<Integer, Long> frameSize = new TimedMap<Integer, Long>(frameSizeTimeout);
+	private final FrameSizes frameSizes = new FrameSizes(frameSizeCapacity);
 	private long lastClosedFrameTime = -1L;
 	private final Mortician mortician;
 	private String prefixSuffix = "";
@@ -31,6 +31,7 @@ public class SrcDemo implements Morticianed {
 	private final FileInfo soundFileInfo;
 	private final String soundFileName;
 	private final String soundFileNameLowercase;
+	private final DemoStats stats;
 	private final VideoHandler videoHandler;
 
 	SrcDemo(final SrcDemoFS backingFS, final String prefix, final VideoHandlerFactory videoHandlerFactory,
@@ -41,6 +42,7 @@ public class SrcDemo implements Morticianed {
 		this.backingFS = backingFS;
 		demoPrefix = prefix;
 		demoActualPrefixLength = prefix.length();
+		stats = new DemoStats(prefix);
 		if (trailingDigitsPattern.matcher(demoPrefix).find()) {
 			prefixSuffix = "_";
 		}
@@ -58,7 +60,14 @@ public class SrcDemo implements Morticianed {
 		});
 		videoHandler = videoHandlerFactory.buildHandler(this);
 		audioHandler = audioHandlerFactory.buildHandler(this);
-		GCChecker.poke(); // Make sure it is going
+	}
+
+	void closeFile(final DemoFile file) {
+		if (file.isSoundFile()) {
+			audioHandler.close();
+		} else {
+			closeFrame(file.frameNumber, file.fileName);
+		}
 	}
 
 	void closeFile(final String fileName) {
@@ -67,22 +76,28 @@ public class SrcDemo implements Morticianed {
 		} else {
 			final Integer frameNumber = getFrameNumber(fileName);
 			if (frameNumber != null) {
-				lastClosedFrameTime = System.currentTimeMillis();
-				videoHandler.close(frameNumber);
-				backingFS.notifyFrameProcessed(fileName);
-				if (SrcLogger.getLogDemo()) {
-					SrcLogger.logDemo("Finished processing frame: " + fileName);
-				}
+				closeFrame(frameNumber, fileName);
 			}
 		}
 	}
 
+	private void closeFrame(final int frameNumber, final String fileName) {
+		lastClosedFrameTime = System.currentTimeMillis();
+		videoHandler.close(frameNumber);
+		stats.onFrameProcessed();
+		backingFS.notifyFrameProcessed(fileName);
+		if (SrcLogger.getLogDemo()) {
+			SrcLogger.logDemo("Finished processing frame: {}", fileName);
+		}
+	}
+
 	void createFile(final String fileName) {
 		if (isSoundFile(fileName)) {
 			audioHandler.create();
 		} else {
 			final Integer frameNumber = getFrameNumber(fileName);
 			if (frameNumber != null) {
+				frameSizes.create(frameNumber);
 				videoHandler.create(frameNumber);
 			}
 		}
@@ -97,7 +112,6 @@ public class SrcDemo implements Morticianed {
 		audioHandler.destroy();
 		// Notify the upper layer that we're dead, Jim
 		backingFS.destroy(this);
-		System.gc();
 		if (SrcLogger.getLogDemo()) {
 			SrcLogger.logDemo("Fully destroyed SrcDemo object: " + this);
 		}
@@ -107,10 +121,27 @@ public class SrcDemo implements Morticianed {
 		audioHandler.flush();
 	}
 
+	/**
+	 * Wait until every frame made from the sub-frames closed so far has been saved.
+	 */
+	public void flushFrames() {
+		videoHandler.flush();
+	}
+
 	public File getBackedFile(final String fileSuffix) {
 		return backingFS.getBackedFile(demoPrefix + prefixSuffix + fileSuffix);
 	}
 
+	FileInfo getFileInfo(final DemoFile file) {
+		if (file.isSoundFile()) {
+			return soundFileInfo.setSize(audioHandler.getSize());
+		}
+		if (enableFrameFileInfo) {
+			return new FileInfo(file.fileName, false, frameSizes.get(file.frameNumber), 0L, 0L, 0L);
+		}
+		return null;
+	}
+
 	FileInfo getFileInfo(final String fileName) {
 		if (isSoundFile(fileName)) {
 			return soundFileInfo.setSize(audioHandler.getSize());
@@ -118,7 +149,7 @@ public class SrcDemo implements Morticianed {
 		if (enableFrameFileInfo) {
 			final Integer frameNumer = getFrameNumber(fileName);
 			if (frameNumer != null) {
-				return new FileInfo(fileName, false, 0L, 0L, 0L, frameSize.getDefault(frameNumer, 0L));
+				return new FileInfo(fileName, false, frameSizes.get(frameNumer), 0L, 0L, 0L);
 			}
 		}
 		return null;
@@ -145,6 +176,10 @@ public class SrcDemo implements Morticianed {
 		return soundFile;
 	}
 
+	public DemoStats getStats() {
+		return stats;
+	}
+
 	@Override
 	public boolean isBusy() {
 		return videoHandler.isLocked() || audioHandler.isLocked();
@@ -169,11 +204,31 @@ public class SrcDemo implements Morticianed {
 	}
 
 	public void notifyAudioBuffer(final AudioBufferStatus status, final int occupied, final int total) {
+		stats.onAudioBuffer(status, occupied, total);
 		backingFS.notifyAudioBuffer(status, occupied, total);
 	}
 
-	public void notifyFrameSaved(final File frame, final int[] pixelData, final int width, final int height) {
-		backingFS.notifyFrameSaved(frame, pixelData, width, height);
+	public void notifyFramePreview(final int[] pixels, final int width, final int height) {
+		backingFS.notifyFramePreview(pixels, width, height);
+	}
+
+	public void notifyFrameSaved(final File frame) {
+		stats.onFrameSaved();
+		backingFS.notifyFrameSaved(frame);
+	}
+
+	/**
+	 * @return The open file context for the given file, or null if it is neither the sound file nor a frame of this demo.
+	 */
+	DemoFile openFile(final String fileName) {
+		if (isSoundFile(fileName)) {
+			return new DemoFile(this, fileName, DemoFile.soundFrameNumber);
+		}
+		final Integer frameNumber = getFrameNumber(fileName);
+		if (frameNumber == null) {
+			return null;
+		}
+		return new DemoFile(this, fileName, frameNumber);
 	}
 
 	int readFile(final String fileName, final ByteBuffer buffer, final long offset) {
@@ -188,6 +243,15 @@ public class SrcDemo implements Morticianed {
 		return "SrcDemo(Prefix = " + demoPrefix + ")";
 	}
 
+	void truncateFile(final DemoFile file, final long length) {
+		if (file.isSoundFile()) {
+			audioHandler.truncate(length);
+		} else {
+			videoHandler.truncate(file.frameNumber, length);
+			frameSizes.set(file.frameNumber, length);
+		}
+	}
+
 	void truncateFile(final String fileName, final long length) {
 		if (isSoundFile(fileName)) {
 			audioHandler.truncate(length);
@@ -195,19 +259,34 @@ public class SrcDemo implements Morticianed {
 			final Integer frameNumber = getFrameNumber(fileName);
 			if (frameNumber != null) {
 				videoHandler.truncate(frameNumber, length);
-				frameSize.put(frameNumber, length);
+				frameSizes.set(frameNumber, length);
 			}
 		}
 	}
 
+	int writeFile(final DemoFile file, final ByteBuffer buffer, final long offset) {
+		if (file.isSoundFile()) {
+			final int w = audioHandler.write(buffer, offset);
+			stats.addAudioBytesWritten(w);
+			return w;
+		}
+		final int w = videoHandler.write(file.frameNumber, buffer, offset);
+		frameSizes.add(file.frameNumber, w);
+		stats.addBytesWritten(w);
+		return w;
+	}
+
 	int writeFile(final String fileName, final ByteBuffer buffer, final long offset) {
 		if (isSoundFile(fileName)) {
-			return audioHandler.write(buffer, offset);
+			final int w = audioHandler.write(buffer, offset);
+			stats.addAudioBytesWritten(w);
+			return w;
 		}
 		final Integer frameNumber = getFrameNumber(fileName);
 		if (frameNumber != null) {
 			final int w = videoHandler.write(frameNumber, buffer, offset);
-			frameSize.put(frameNumber, frameSize.getDefault(frameNumber, 0L) + w);
+			frameSizes.add(frameNumber, w);
+			stats.addBytesWritten(w);
 			return w;
 		}
 		return buffer.remaining();
@@ -3,9 +3,7 @@ package net.srcdemo;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
@@ -23,7 +21,7 @@ public class SrcDemoFS extends LoopbackFS {
 	private final AudioHandlerFactory audioHandlerFactory;
 	private final Set<SrcDemoListener> demoListeners = new HashSet<SrcDemoListener>();
 	private final ReentrantLock demoLock = new ReentrantLock();
-	private final Map<String, SrcDemo> demos = new HashMap<String, SrcDemo>();
+	private final DemoRegistry demos = new DemoRegistry();
 	private final VideoHandlerFactory videoHandlerFactory;
 
 	public SrcDemoFS(final File backingStorage, final VideoHandlerFactory videoHandlerFactory,
@@ -31,12 +29,23 @@ public class SrcDemoFS extends LoopbackFS {
 		super(backingStorage);
 		this.audioHandlerFactory = audioHandlerFactory;
 		this.videoHandlerFactory = videoHandlerFactory;
+		Telemetry.registerPipeline();
 	}
 
 	public void addListener(final SrcDemoListener listener) {
 		demoListeners.add(listener);
 	}
 
+	@Override
+	protected void closeFile(final Object context, final String fileName) {
+		if (context instanceof DemoFile) {
+			final DemoFile file = (DemoFile) context;
+			file.demo.closeFile(file);
+		} else {
+			super.closeFile(context, fileName);
+		}
+	}
+
 	@Override
 	protected void closeFile(final String fileName) {
 		final SrcDemo demo = getDemo(fileName);
@@ -64,29 +73,17 @@ public class SrcDemoFS extends LoopbackFS {
 		if (srcDemo == null) {
 			return;
 		}
-		String toDelete = null;
-		demoLock.lock();
-		for (final String demoPrefix : demos.keySet()) {
-			if (srcDemo.equals(demos.get(demoPrefix))) {
-				toDelete = demoPrefix;
-				break;
-			}
-		}
-		if (toDelete != null) {
-			demos.remove(toDelete);
-		}
-		demoLock.unlock();
+		demos.remove(srcDemo);
+		Telemetry.unregister(srcDemo.getStats());
 	}
 
 	public void flushAudioBuffer(final boolean block) {
 		final Thread t = new Thread("Audio buffer flush") {
 			@Override
 			public void run() {
-				demoLock.lock();
-				for (final SrcDemo demo : demos.values()) {
+				for (final SrcDemo demo : demos.getDemos()) {
 					demo.flushAudioBuffer();
 				}
-				demoLock.unlock();
 			}
 		};
 		if (block) {
@@ -96,23 +93,57 @@ public class SrcDemoFS extends LoopbackFS {
 		}
 	}
 
-	private SrcDemo getDemo(String fileName) {
-		fileName = fileName.toLowerCase();
-		for (final String prefix : demos.keySet()) {
-			if (fileName.startsWith(prefix)) {
-				return demos.get(prefix);
-			}
+	/**
+	 * Wait until every frame made from the sub-frames written so far has been saved, so that they are not lost when
+	 * unmounting.
+	 */
+	public void flushFrames() {
+		for (final SrcDemo demo : demos.getDemos()) {
+			demo.flushFrames();
+		}
+	}
+
+	/**
+	 * @return Latency histograms and queue depths of the capture pipeline, so far.
+	 */
+	public PipelineMetrics.Snapshot getMetrics() {
+		return PipelineMetrics.snapshot();
+	}
+
+	private SrcDemo getDemo(final String fileName) {
+		final SrcDemo existing = demos.find(fileName);
+		if (existing != null) {
+			return existing;
 		}
-		final Matcher match = demoNamePattern.matcher(fileName);
+		final String lowercaseFileName = fileName.toLowerCase();
+		final Matcher match = demoNamePattern.matcher(lowercaseFileName);
 		if (!match.find()) {
 			return null;
 		}
+		// Creation is serialized so that concurrent first writes of a demo don't create it twice
+		final String demoName = lowercaseFileName.substring(0, match.start());
 		demoLock.lock();
-		final String demoName = fileName.substring(0, match.start());
-		final SrcDemo demo = new SrcDemo(this, demoName, videoHandlerFactory, audioHandlerFactory);
-		demos.put(demoName, demo);
-		demoLock.unlock();
-		return demo;
+		try {
+			SrcDemo demo = demos.find(demoName);
+			if (demo == null) {
+				demo = new SrcDemo(this, demoName, videoHandlerFactory, audioHandlerFactory);
+				demos.add(demoName, demo);
+				Telemetry.register(demo.getStats());
+			}
+			return demo;
+		}
+		finally {
+			demoLock.unlock();
+		}
+	}
+
+	@Override
+	protected FileInfo getFileInfo(final Object context, final String fileName) {
+		if (context instanceof DemoFile) {
+			final DemoFile file = (DemoFile) context;
+			return file.demo.getFileInfo(file);
+		}
+		return super.getFileInfo(context, fileName);
 	}
 
 	@Override
@@ -142,21 +173,47 @@ public class SrcDemoFS extends LoopbackFS {
 		}
 	}
 
-	void notifyFrameSaved(final File savedFrame, final int[] pixelData, final int width, final int height) {
+	void notifyFramePreview(final int[] pixels, final int width, final int height) {
 		for (final SrcDemoListener listener : demoListeners) {
-			listener.onFrameSaved(savedFrame, pixelData, width, height);
+			listener.onFramePreview(pixels, width, height);
+		}
+	}
+
+	void notifyFrameSaved(final File savedFrame) {
+		for (final SrcDemoListener listener : demoListeners) {
+			listener.onFrameSaved(savedFrame);
 		}
 	}
 
 	protected boolean onUnmount() {
-		demoLock.lock();
-		for (final SrcDemo demo : demos.values()) {
+		for (final SrcDemo demo : demos.getDemos()) {
 			demo.destroy();
 		}
-		demoLock.unlock();
 		return true;
 	}
 
+	@Override
+	protected Object openFile(final String fileName, final FileCreationFlags creation) {
+		final SrcDemo demo;
+		if (creation.shouldCreate()) {
+			demo = getDemo(fileName);
+			if (demo == null) {
+				return super.openFile(fileName, creation);
+			}
+			demo.createFile(fileName);
+		} else {
+			demo = demos.find(fileName);
+			if (demo == null) {
+				return super.openFile(fileName, creation);
+			}
+			if (!createFile(fileName, creation)) {
+				return null;
+			}
+		}
+		final DemoFile file = demo.openFile(fileName);
+		return file == null ? noContext : file;
+	}
+
 	@Override
 	protected int readFile(final String fileName, final ByteBuffer buffer, final long offset) {
 		final SrcDemo demo = getDemo(fileName);
@@ -170,6 +227,16 @@ public class SrcDemoFS extends LoopbackFS {
 		demoListeners.remove(listener);
 	}
 
+	@Override
+	protected void truncateFile(final Object context, final String fileName, final long length) {
+		if (context instanceof DemoFile) {
+			final DemoFile file = (DemoFile) context;
+			file.demo.truncateFile(file, length);
+		} else {
+			super.truncateFile(context, fileName, length);
+		}
+	}
+
 	@Override
 	protected void truncateFile(final String fileName, final long length) {
 		final SrcDemo demo = getDemo(fileName);
@@ -180,12 +247,27 @@ public class SrcDemoFS extends LoopbackFS {
 		}
 	}
 
+	@Override
+	protected int writeFile(final Object context, final String fileName, final ByteBuffer buffer, final long offset) {
+		if (context instanceof DemoFile) {
+			final long start = System.nanoTime();
+			final DemoFile file = (DemoFile) context;
+			final int written = file.demo.writeFile(file, buffer, offset);
+			PipelineMetrics.record(PipelineMetrics.Stage.FS_WRITE, start);
+			return written;
+		}
+		return super.writeFile(context, fileName, buffer, offset);
+	}
+
 	@Override
 	protected int writeFile(final String fileName, final ByteBuffer buffer, final long offset) {
 		final SrcDemo demo = getDemo(fileName);
 		if (demo == null) {
 			return super.writeFile(fileName, buffer, offset);
 		}
-		return demo.writeFile(fileName, buffer, offset);
+		final long start = System.nanoTime();
+		final int written = demo.writeFile(fileName, buffer, offset);
+		PipelineMetrics.record(PipelineMetrics.Stage.FS_WRITE, start);
+		return written;
 	}
 }
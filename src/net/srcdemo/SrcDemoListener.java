@@ -9,5 +9,13 @@ public interface SrcDemoListener {
 
 	public void onFrameProcessed(final String frameName);
 
-	public void onFrameSaved(final File savedFrame, int[] pixels, int width, int height);
+	/**
+	 * A small, downscaled copy of a frame which was just blended. Called at most a few times per second per demo.
+	 *
+	 * @param pixels
+	 *            RGB pixels, row by row. Only valid for the duration of the call; copy them to keep them.
+	 */
+	public void onFramePreview(int[] pixels, int width, int height);
+
+	public void onFrameSaved(final File savedFrame);
 }
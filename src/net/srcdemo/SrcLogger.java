@@ -1,18 +1,54 @@
 package net.srcdemo;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.commons.codec.binary.Base64;
 
+/**
+ * Debug messages are written asynchronously: the calling thread only checks sampling and rate limits, then puts the
+ * message in a bounded ring buffer, which a background thread drains to standard output, or to a binary file. Messages
+ * may be given as a pattern with {} placeholders plus arguments, in which case the arguments are only turned into text by
+ * the background thread, so they must not change once passed in. When the buffer is full, messages are dropped rather than
+ * making the caller wait; the number of dropped and suppressed messages is reported about once a second.
+ *
+ * Errors and commands are still written synchronously, after whatever debug messages came before them.
+ */
 public final class SrcLogger {
+	private static final long flushTimeout = 2000000000L;
+	private static final long idleWait = 10000000L;
+	private static final long nanosPerSecond = 1000000000L;
+	private static final int textBatchSize = 65536;
+	private static BinaryLog binaryLog = null;
+	private static int bufferSize = 8192;
+	private static volatile long flushed = 0L;
+	private static volatile long head = 0L;
 	private static boolean logAudio = false;
 	private static boolean logDemo = false;
 	private static boolean logFS = false;
 	private static boolean logMisc = false;
 	private static boolean logVideo = false;
+	private static final long origin = System.nanoTime();
+	private static final AtomicLong overflowed = new AtomicLong(0L);
+	private static volatile int rateLimit = 0;
+	private static volatile int sampleEvery = 1;
+	private static int slotMask;
+	private static AtomicReferenceArray<LogEntry> slots;
+	private static volatile boolean stopping = false;
+	private static final AtomicLong tail = new AtomicLong(0L);
+	private static volatile Thread writer = null;
+	private static volatile boolean writerWaiting = false;
+
+	private static void append(final StringBuilder text, final char tag, final String message) {
+		text.append('[').append(tag).append("] ").append(message).append(System.lineSeparator());
+	}
 
 	private static final void command(final String command, final String... args) {
+		flush();
 		final StringBuilder builder = new StringBuilder();
 		escapeString(builder, command);
 		for (final String arg : args) {
@@ -35,11 +71,40 @@ public final class SrcLogger {
 		command("unmount", mountPoint.getAbsolutePath());
 	}
 
+	private static void enqueue(final LogCategory category, final String message, final Object[] args) {
+		final long time = System.nanoTime() - origin;
+		if (!category.accept(sampleEvery, rateLimit, time / nanosPerSecond)) {
+			return;
+		}
+		final LogEntry entry = new LogEntry(category, message, args, time, Thread.currentThread().getName());
+		Thread current = writer;
+		if (current == null) {
+			current = startWriter();
+		}
+		final long capacity = slotMask + 1L;
+		while (true) {
+			final long claimed = tail.get();
+			if (claimed - head >= capacity) {
+				overflowed.incrementAndGet();
+				return;
+			}
+			if (tail.compareAndSet(claimed, claimed + 1L)) {
+				slots.set((int) (claimed & slotMask), entry);
+				break;
+			}
+		}
+		if (writerWaiting) {
+			LockSupport.unpark(current);
+		}
+	}
+
 	public static final void error(final String message) {
+		flush();
 		System.err.println(message);
 	}
 
 	public static final void error(final String message, final Throwable e) {
+		flush();
 		System.err.println("[E] " + message + ": " + e);
 		e.printStackTrace();
 	}
@@ -50,6 +115,30 @@ public final class SrcLogger {
 		builder.append("\"");
 	}
 
+	/**
+	 * Wait for the debug messages logged so far to be written, for up to a couple of seconds.
+	 */
+	public static final void flush() {
+		final Thread current = writer;
+		if (current == null || current == Thread.currentThread()) {
+			return;
+		}
+		final long target = tail.get();
+		final long deadline = System.nanoTime() + flushTimeout;
+		while (flushed < target && current.isAlive() && System.nanoTime() < deadline) {
+			LockSupport.unpark(current);
+			LockSupport.parkNanos(100000L);
+		}
+	}
+
+	private static void flushText(final StringBuilder text) {
+		if (text.length() > 0) {
+			System.out.print(text);
+			System.out.flush();
+			text.setLength(0);
+		}
+	}
+
 	public static final boolean getLogAudio() {
 		return logAudio;
 	}
@@ -72,32 +161,141 @@ public final class SrcLogger {
 
 	public static final void log(final String message) {
 		if (logMisc) {
-			System.out.println("[-] " + message);
+			enqueue(LogCategory.MISC, message, null);
+		}
+	}
+
+	/**
+	 * @param pattern
+	 *            Message with a {} placeholder for each argument.
+	 */
+	public static final void log(final String pattern, final Object... args) {
+		if (logMisc) {
+			enqueue(LogCategory.MISC, pattern, args);
 		}
 	}
 
 	public static final void logAudio(final String message) {
 		if (logAudio) {
-			System.out.println("[A] " + message);
+			enqueue(LogCategory.AUDIO, message, null);
+		}
+	}
+
+	/**
+	 * @param pattern
+	 *            Message with a {} placeholder for each argument.
+	 */
+	public static final void logAudio(final String pattern, final Object... args) {
+		if (logAudio) {
+			enqueue(LogCategory.AUDIO, pattern, args);
 		}
 	}
 
 	public static final void logDemo(final String message) {
 		if (logDemo) {
-			System.out.println("[D] " + message);
+			enqueue(LogCategory.DEMO, message, null);
+		}
+	}
+
+	/**
+	 * @param pattern
+	 *            Message with a {} placeholder for each argument.
+	 */
+	public static final void logDemo(final String pattern, final Object... args) {
+		if (logDemo) {
+			enqueue(LogCategory.DEMO, pattern, args);
 		}
 	}
 
 	public static final void logFS(final String message) {
 		if (logFS) {
-			System.out.println("[F] " + message);
+			enqueue(LogCategory.FS, message, null);
+		}
+	}
+
+	/**
+	 * @param pattern
+	 *            Message with a {} placeholder for each argument.
+	 */
+	public static final void logFS(final String pattern, final Object... args) {
+		if (logFS) {
+			enqueue(LogCategory.FS, pattern, args);
 		}
 	}
 
 	public static final void logVideo(final String message) {
 		if (logVideo) {
-			System.out.println("[V] " + message);
+			enqueue(LogCategory.VIDEO, message, null);
+		}
+	}
+
+	/**
+	 * @param pattern
+	 *            Message with a {} placeholder for each argument.
+	 */
+	public static final void logVideo(final String pattern, final Object... args) {
+		if (logVideo) {
+			enqueue(LogCategory.VIDEO, pattern, args);
+		}
+	}
+
+	private static LogEntry poll() {
+		final long position = head;
+		if (position == tail.get()) {
+			return null;
+		}
+		final int index = (int) (position & slotMask);
+		LogEntry entry;
+		while ((entry = slots.get(index)) == null) {
+			// Claimed, but the logging thread hasn't put the entry in yet
+			Thread.yield();
+		}
+		slots.set(index, null);
+		head = position + 1L;
+		return entry;
+	}
+
+	private static void reportDropped(final StringBuilder text) throws IOException {
+		for (final LogCategory category : LogCategory.values()) {
+			final long suppressed = category.takeSuppressed();
+			if (suppressed == 0L) {
+				continue;
+			}
+			if (binaryLog != null) {
+				binaryLog.writeSuppressed(category, suppressed);
+			} else {
+				append(text, category.tag, "(" + suppressed + " messages suppressed by sampling or rate limiting)");
+			}
+		}
+		final long dropped = overflowed.getAndSet(0L);
+		if (dropped != 0L) {
+			if (binaryLog != null) {
+				binaryLog.writeDropped(dropped);
+			} else {
+				append(text, LogCategory.MISC.tag, "(" + dropped + " messages dropped; log buffer full)");
+			}
+		}
+	}
+
+	/**
+	 * Write debug messages to the given file in binary form instead of to standard output. Must be called before the first
+	 * debug message is logged.
+	 *
+	 * @see BinaryLog
+	 */
+	public static final synchronized void setBinaryOutput(final File file) throws IOException {
+		if (writer != null) {
+			throw new IllegalStateException("Debug messages are already being written");
 		}
+		binaryLog = new BinaryLog(file, System.currentTimeMillis() - (System.nanoTime() - origin) / 1000000L);
+	}
+
+	/**
+	 * Set how many debug messages may wait to be written before new ones are dropped. Rounded up to a power of two. Only
+	 * has an effect before the first debug message is logged.
+	 */
+	public static final synchronized void setBufferSize(final int entries) {
+		bufferSize = entries;
 	}
 
 	public static final void setLogAll(final boolean log) {
@@ -127,4 +325,101 @@ public final class SrcLogger {
 	public static final void setLogVideo(final boolean log) {
 		logVideo = log;
 	}
+
+	/**
+	 * @param perSecond
+	 *            Maximum number of debug messages of each kind to log per second, or 0 for no limit.
+	 */
+	public static final void setRateLimit(final int perSecond) {
+		rateLimit = perSecond;
+	}
+
+	/**
+	 * @param oneIn
+	 *            Only log one debug message of each kind out of this many.
+	 */
+	public static final void setSampling(final int oneIn) {
+		sampleEvery = Math.max(1, oneIn);
+	}
+
+	private static synchronized Thread startWriter() {
+		if (writer != null) {
+			return writer;
+		}
+		final int capacity = Integer.highestOneBit(Math.max(2, bufferSize) * 2 - 1);
+		slots = new AtomicReferenceArray<LogEntry>(capacity);
+		slotMask = capacity - 1;
+		final Thread thread = new Thread("Log writer") {
+			@Override
+			public void run() {
+				write();
+			}
+		};
+		thread.setDaemon(true);
+		Runtime.getRuntime().addShutdownHook(new Thread("Log writer shutdown") {
+			@Override
+			public void run() {
+				stopping = true;
+				LockSupport.unpark(thread);
+				try {
+					thread.join(flushTimeout / 1000000L);
+				}
+				catch (final InterruptedException e) {
+					// Exiting anyway
+				}
+			}
+		});
+		writer = thread;
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Body of the writer thread: drain the buffer until the JVM shuts down, then drain it one last time.
+	 */
+	private static void write() {
+		final StringBuilder text = new StringBuilder(textBatchSize);
+		long nextReport = System.nanoTime() + nanosPerSecond;
+		try {
+			while (true) {
+				final LogEntry entry = poll();
+				if (entry != null) {
+					if (binaryLog != null) {
+						binaryLog.write(entry);
+					} else {
+						append(text, entry.category.tag, entry.format());
+						if (text.length() >= textBatchSize) {
+							flushText(text);
+						}
+					}
+					continue;
+				}
+				if (System.nanoTime() >= nextReport) {
+					reportDropped(text);
+					nextReport = System.nanoTime() + nanosPerSecond;
+				}
+				flushText(text);
+				if (binaryLog != null) {
+					binaryLog.flush();
+				}
+				flushed = head;
+				if (stopping) {
+					break;
+				}
+				writerWaiting = true;
+				if (head == tail.get() && !stopping) {
+					LockSupport.parkNanos(idleWait);
+				}
+				writerWaiting = false;
+			}
+			reportDropped(text);
+			flushText(text);
+			if (binaryLog != null) {
+				binaryLog.close();
+			}
+		}
+		catch (final IOException e) {
+			SrcLogger.error("Error while writing binary debug log; no more debug messages will be written", e);
+		}
+	}
 }
@@ -23,6 +23,14 @@ public interface Strings {
 	static final String btnUpdateChecking = "Checking...";
 	static final String btnUpdateRecheck = "Re-check for updates";
 	static final String chkUpdateAutoCheck = "Check for updates when starting";
+	static final String cmdBatchBlending = "Blending sub-frames from:";
+	static final String cmdBatchDone1 = "Saved ";
+	static final String cmdBatchDone2 = " frames in ";
+	static final String cmdBatchDone3 = " s.";
+	static final String cmdBatchNoSubFrames = "No TGA sub-frames found to blend.";
+	static final String cmdBatchProgress1 = "[Blending: ";
+	static final String cmdBatchProgress2 = "/";
+	static final String cmdBatchProgress3 = " saved]";
 	static final String cmdBlendRate1 = "Blend rate is ";
 	static final String cmdBlendRate2 = "Multiply this by the desired video framerate to get the\nhost_framerate to use in-game.";
 	static final String cmdDefaultPrefix = "Def: ";
@@ -37,13 +45,17 @@ public interface Strings {
 	static final String cmdDisplayVideo2 = " frames/";
 	static final String cmdDisplayVideo3 = " fps/";
 	static final String cmdDisplayVideo4 = " saved] ";
+	static final String cmdDisplayVideoMinute = " fps, 1 min: ";
 	static final String cmdEnumPossibleValues = "Possible values:";
 	static final String cmdGoingToMount = "Will now mount virtual filesystem to:";
 	static final String cmdHostFramerate = "host_framerate ";
-	static final String cmdMustIncludeRenderOptions = "Must specify at least -m and -o.\n\nUse -h for help.";
+	static final String cmdMustIncludeRenderOptions = "Must specify at least -m and -o, or -i and -o.\n\nUse -h for help.";
 	static final String cmdToExit = "To exit, do NOT kill the SrcDemo2 wrapper process;\nkill the java process instead.";
+	static final String cmdVariants = "Also blending into: ";
 	static final String cmdVersionPrefix = "Version: ";
 	static final String dateSeparator = "-";
+	static final String errBatchVariants = "Variants cannot be used when blending existing sub-frames.";
+	static final String errBatchVideoDisabled = "Video output must not be disabled when blending existing sub-frames.";
 	static final String errCmdInvalidAudioArgument = "Invalid audio output type";
 	static final String errCmdInvalidVideoArgument = "Invalid video output type.";
 	static final String errDirectoriesEqual = "Directories must not be equal";
@@ -51,6 +63,7 @@ public interface Strings {
 	static final String errDokanTitle = "Dokan error";
 	static final String errInvalidBacking = "Invalid folder to save frames.";
 	static final String errInvalidDokan = "The version of Dokan installed is not the correct one.\nThis application required Dokan 0.6.";
+	static final String errInvalidInput = "Invalid folder to read sub-frames from.";
 	static final String errInvalidMountpoint = "Invalid folder where the game will save frames.";
 	static final String errMountpointNotEmpty = "Folder where the game will save frames is not empty.";
 	static final String errUpdateContact = "Error while attempting to grab update information.";
@@ -74,6 +87,8 @@ public interface Strings {
 	static final String lblFramesProcessedPerSecond = "Frames per second:";
 	static final String lblFramesProcessedPerSecondDefault = "...";
 	static final String lblFramesProcessedPerSecondFormat = "#.00";
+	static final String lblFramesProcessedPerSecondMinute = "Last minute: ";
+	static final String lblFramesProcessedPerSecondTotal = "\nWhole render: ";
 	static final String lblGaussianBlending = "Use Gaussian blending";
 	static final String lblGaussianVariance = "Gaussian variance:";
 	static final String lblInvalidSettings = "Invalid settings: ";
@@ -0,0 +1,283 @@
+package net.srcdemo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.srcdemo.PipelineMetrics.Queue;
+import net.srcdemo.PipelineMetrics.Stage;
+import net.srcdemo.RollingRate.Horizon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Publishes live render statistics: each demo and the pipeline as a whole are registered as MBeans under the
+ * {@value #domain} domain, and the same values can be served in the Prometheus text format over HTTP. The HTTP server only
+ * listens on the loopback interface.
+ */
+public final class Telemetry {
+	private static final String contentType = "text/plain; version=0.0.4; charset=utf-8";
+	private static final Set<DemoStats> demos = new CopyOnWriteArraySet<DemoStats>();
+	private static final String domain = "net.srcdemo";
+	private static final String metricsPath = "/metrics";
+	private static final double[] quantiles = { 0.5d, 0.9d, 0.99d };
+	/**
+	 * Statistics currently registered under each demo MBean name. A demo rendered again under the same prefix takes the name
+	 * over, so the previous demo must not unregister it afterwards.
+	 */
+	private static final Map<ObjectName, DemoStats> registered = new HashMap<ObjectName, DemoStats>();
+	private static HttpServer server = null;
+
+	private static void appendHeader(final StringBuilder out, final String name, final String help, final String type) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * Append one sample per horizon for which the rate is known.
+	 */
+	private static void appendRates(final StringBuilder out, final String name, final DemoStats stats,
+		final RollingRate rate) {
+		for (final Horizon horizon : Horizon.values()) {
+			final Double value = rate.getRate(horizon);
+			if (value != null) {
+				appendSample(out, name, demoLabel(stats) + ",horizon=\"" + horizon.name().toLowerCase(Locale.ENGLISH)
+					+ "\"", value);
+			}
+		}
+	}
+
+	private static void appendSample(final StringBuilder out, final String name, final String labels, final double value) {
+		out.append(name);
+		if (labels != null) {
+			out.append('{').append(labels).append('}');
+		}
+		out.append(' ');
+		if (value == Math.rint(value) && !Double.isInfinite(value)) {
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+		out.append('\n');
+	}
+
+	private static String demoLabel(final DemoStats stats) {
+		return "demo=\"" + escape(stats.getPrefix()) + "\"";
+	}
+
+	private static String escape(final String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	public static Collection<DemoStats> getDemos() {
+		return Collections.unmodifiableSet(demos);
+	}
+
+	private static ObjectName getName(final DemoStats stats) throws JMException {
+		return new ObjectName(domain + ":type=Demo,name=" + ObjectName.quote(stats.getPrefix()));
+	}
+
+	/**
+	 * @return All statistics, in the Prometheus text exposition format.
+	 */
+	public static String getPrometheusText() {
+		final StringBuilder out = new StringBuilder(4096);
+		appendHeader(out, "srcdemo_frames_processed_total", "Sub-frames received and processed.", "counter");
+		for (final DemoStats stats : demos) {
+			appendSample(out, "srcdemo_frames_processed_total", demoLabel(stats), stats.getFramesProcessed());
+		}
+		appendHeader(out, "srcdemo_frames_saved_total", "Blended frames saved.", "counter");
+		for (final DemoStats stats : demos) {
+			appendSample(out, "srcdemo_frames_saved_total", demoLabel(stats), stats.getFramesSaved());
+		}
+		appendHeader(out, "srcdemo_frame_processing_rate", "Sub-frames processed per second.", "gauge");
+		for (final DemoStats stats : demos) {
+			appendRates(out, "srcdemo_frame_processing_rate", stats, stats.getFrameProcessingMeter());
+		}
+		appendHeader(out, "srcdemo_blend_rate", "Blended frames saved per second.", "gauge");
+		for (final DemoStats stats : demos) {
+			appendRates(out, "srcdemo_blend_rate", stats, stats.getFrameSavingMeter());
+		}
+		appendHeader(out, "srcdemo_audio_byte_rate", "Audio bytes written per second.", "gauge");
+		for (final DemoStats stats : demos) {
+			appendRates(out, "srcdemo_audio_byte_rate", stats, stats.getAudioByteMeter());
+		}
+		appendHeader(out, "srcdemo_bytes_written_total", "Bytes written to frames and sound files.", "counter");
+		for (final DemoStats stats : demos) {
+			appendSample(out, "srcdemo_bytes_written_total", demoLabel(stats), stats.getBytesWritten());
+		}
+		appendHeader(out, "srcdemo_seconds_since_last_frame", "Time since a sub-frame was last processed.", "gauge");
+		for (final DemoStats stats : demos) {
+			final long millis = stats.getMillisSinceLastFrame();
+			if (millis != -1L) {
+				appendSample(out, "srcdemo_seconds_since_last_frame", demoLabel(stats), millis / 1000d);
+			}
+		}
+		appendHeader(out, "srcdemo_audio_buffer_bytes", "Bytes held in the audio buffer.", "gauge");
+		for (final DemoStats stats : demos) {
+			appendSample(out, "srcdemo_audio_buffer_bytes", demoLabel(stats), stats.getAudioBufferOccupied());
+		}
+		appendHeader(out, "srcdemo_audio_buffer_size_bytes", "Size of the audio buffer.", "gauge");
+		for (final DemoStats stats : demos) {
+			appendSample(out, "srcdemo_audio_buffer_size_bytes", demoLabel(stats), stats.getAudioBufferSize());
+		}
+		appendHeader(out, "srcdemo_audio_buffer_flushing", "Whether the audio buffer is being flushed.", "gauge");
+		for (final DemoStats stats : demos) {
+			appendSample(out, "srcdemo_audio_buffer_flushing", demoLabel(stats),
+				"FLUSHING".equals(stats.getAudioBufferStatus()) ? 1 : 0);
+		}
+		appendHeader(out, "srcdemo_demos", "Demos currently being rendered.", "gauge");
+		appendSample(out, "srcdemo_demos", null, demos.size());
+		appendHeader(out, "srcdemo_queue_depth", "Items waiting in each queue of the pipeline.", "gauge");
+		for (final Queue queue : Queue.values()) {
+			appendSample(out, "srcdemo_queue_depth", "queue=\"" + queue.name().toLowerCase(Locale.ENGLISH) + "\"",
+				PipelineMetrics.getQueueDepth(queue));
+		}
+		appendHeader(out, "srcdemo_pipeline_held_bytes", "Heap held by frames being received and blended.", "gauge");
+		appendSample(out, "srcdemo_pipeline_held_bytes", null, MemoryGovernor.getHeldBytes());
+		appendHeader(out, "srcdemo_pipeline_queued_bytes", "Heap held by blended frames waiting to be saved.", "gauge");
+		appendSample(out, "srcdemo_pipeline_queued_bytes", null, MemoryGovernor.getQueuedBytes());
+		appendHeader(out, "srcdemo_pipeline_budget_bytes", "Heap the pipeline may hold before writers wait.", "gauge");
+		appendSample(out, "srcdemo_pipeline_budget_bytes", null, MemoryGovernor.getBudget());
+		appendHeader(out, "srcdemo_stage_seconds", "Time spent in each stage of the pipeline.", "summary");
+		final PipelineMetrics.Snapshot metrics = PipelineMetrics.snapshot();
+		for (final Stage stage : Stage.values()) {
+			final LatencyHistogram.Snapshot histogram = metrics.get(stage);
+			final String label = "stage=\"" + stage.name().toLowerCase(Locale.ENGLISH) + "\"";
+			for (final double quantile : quantiles) {
+				appendSample(out, "srcdemo_stage_seconds", label + ",quantile=\"" + quantile + "\"",
+					histogram.getPercentile(quantile) / 1e9d);
+			}
+			appendSample(out, "srcdemo_stage_seconds_sum", label, histogram.getTotal() / 1e9d);
+			appendSample(out, "srcdemo_stage_seconds_count", label, histogram.getCount());
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Register a demo's statistics, replacing those of any previous demo with the same prefix.
+	 */
+	static synchronized void register(final DemoStats stats) {
+		demos.add(stats);
+		try {
+			final MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = getName(stats);
+			if (mbeans.isRegistered(name)) {
+				mbeans.unregisterMBean(name);
+			}
+			mbeans.registerMBean(stats, name);
+			registered.put(name, stats);
+		}
+		catch (final JMException e) {
+			SrcLogger.error("Could not register MBean for demo " + stats.getPrefix(), e);
+		}
+	}
+
+	/**
+	 * Register the process-wide pipeline statistics, unless they already are.
+	 */
+	static void registerPipeline() {
+		try {
+			final MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(domain + ":type=Pipeline");
+			if (!mbeans.isRegistered(name)) {
+				mbeans.registerMBean(new PipelineStats(), name);
+			}
+		}
+		catch (final JMException e) {
+			SrcLogger.error("Could not register pipeline MBean", e);
+		}
+	}
+
+	/**
+	 * Serve statistics at {@value #metricsPath} on the given port of the loopback interface. Does nothing if already started.
+	 */
+	public static synchronized void startHttpServer(final int port) throws IOException {
+		if (server != null) {
+			return;
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 4);
+		server.createContext(metricsPath, new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+					exchange.sendResponseHeaders(405, -1L);
+					exchange.close();
+					return;
+				}
+				final byte[] body = getPrometheusText().getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type", contentType);
+				if (exchange.getRequestMethod().equals("HEAD")) {
+					exchange.sendResponseHeaders(200, -1L);
+				} else {
+					exchange.sendResponseHeaders(200, body.length);
+					final OutputStream out = exchange.getResponseBody();
+					out.write(body);
+					out.close();
+				}
+				exchange.close();
+			}
+		});
+		server.setExecutor(Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "Telemetry HTTP server");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}));
+		server.start();
+		if (SrcLogger.getLogMisc()) {
+			SrcLogger.log("Serving telemetry at http://" + server.getAddress().getHostString() + ":"
+				+ server.getAddress().getPort() + metricsPath);
+		}
+	}
+
+	public static synchronized void stopHttpServer() {
+		if (server != null) {
+			server.stop(0);
+			server = null;
+		}
+	}
+
+	/**
+	 * Unregister a demo's statistics, unless another demo with the same prefix has taken their name over since.
+	 */
+	static synchronized void unregister(final DemoStats stats) {
+		demos.remove(stats);
+		try {
+			final ObjectName name = getName(stats);
+			if (registered.get(name) != stats) {
+				return;
+			}
+			registered.remove(name);
+			final MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+			if (mbeans.isRegistered(name)) {
+				mbeans.unregisterMBean(name);
+			}
+		}
+		catch (final JMException e) {
+			SrcLogger.error("Could not unregister MBean for demo " + stats.getPrefix(), e);
+		}
+	}
+
+	private Telemetry() {
+	}
+}
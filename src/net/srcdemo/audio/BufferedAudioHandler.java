@@ -8,8 +8,10 @@ import java.util.Collection;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
+import net.srcdemo.FrameEventLog;
 import net.srcdemo.Mortician;
 import net.srcdemo.Mortician.Morticianed;
+import net.srcdemo.PipelineMetrics;
 import net.srcdemo.SrcDemo;
 import net.srcdemo.SrcLogger;
 
@@ -94,8 +96,13 @@ public class BufferedAudioHandler implements AudioHandler, Morticianed {
 		if (subHandler == null) {
 			create();
 		}
+		final long start = System.nanoTime();
 		subHandler.write(buffer.toByteArray(), bufferOffset);
 		subHandler.flush();
+		PipelineMetrics.record(PipelineMetrics.Stage.AUDIO_FLUSH, start);
+		if (FrameEventLog.isEnabled()) {
+			FrameEventLog.audioFlush(demo.getPrefix(), start);
+		}
 		bufferOffset = fileSize;
 		bufferOccupiedSize = 0;
 		buffer.reset();
@@ -151,7 +158,7 @@ public class BufferedAudioHandler implements AudioHandler, Morticianed {
 	public int write(final byte[] buffer, final long offset) {
 		final int toWrite = buffer.length;
 		if (SrcLogger.getLogAudio()) {
-			SrcLogger.logAudio("Writing " + toWrite + " bytes to audio buffer at offset " + offset);
+			SrcLogger.logAudio("Writing {} bytes to audio buffer at offset {}", toWrite, offset);
 		}
 		fileLock.lock();
 		if (offset < fileSize) {
@@ -165,8 +172,8 @@ public class BufferedAudioHandler implements AudioHandler, Morticianed {
 		}
 		if (offset != fileSize) {
 			if (SrcLogger.getLogAudio()) {
-				SrcLogger.logAudio("Offset (" + offset + ") is in front of the current buffer position (" + fileSize
-					+ "); flushing.");
+				SrcLogger.logAudio("Offset ({}) is in front of the current buffer position ({}); flushing.", offset,
+					fileSize);
 			}
 			flush();
 			fileSize = offset;
@@ -198,7 +205,7 @@ public class BufferedAudioHandler implements AudioHandler, Morticianed {
 	public int write(final ByteBuffer buffer, final long offset) {
 		final int toWrite = buffer.remaining();
 		if (SrcLogger.getLogAudio()) {
-			SrcLogger.logAudio("Writing " + toWrite + " bytes to audio buffer at offset " + offset);
+			SrcLogger.logAudio("Writing {} bytes to audio buffer at offset {}", toWrite, offset);
 		}
 		fileLock.lock();
 		if (offset < fileSize) {
@@ -212,8 +219,8 @@ public class BufferedAudioHandler implements AudioHandler, Morticianed {
 		}
 		if (offset != fileSize) {
 			if (SrcLogger.getLogAudio()) {
-				SrcLogger.logAudio("Offset (" + offset + ") is in front of the current buffer position (" + fileSize
-					+ "); flushing.");
+				SrcLogger.logAudio("Offset ({}) is in front of the current buffer position ({}); flushing.", offset,
+					fileSize);
 			}
 			flush();
 			fileSize = offset;
@@ -7,18 +7,43 @@ import net.sourceforge.javaflacencoder.EncodingConfiguration;
 import net.sourceforge.javaflacencoder.FLACEncoder;
 import net.sourceforge.javaflacencoder.FLACFileOutputStream;
 import net.sourceforge.javaflacencoder.StreamConfiguration;
+import net.srcdemo.FrameEventLog;
+import net.srcdemo.PipelineMetrics;
+import net.srcdemo.PipelineMetrics.Queue;
+import net.srcdemo.PipelineMetrics.Stage;
 
 public class FlacEncoder implements AudioEncoder {
+	/**
+	 * Block size bounds of the FLAC stream. Blocks are split down to the minimum size around transients (gunshots and such),
+	 * and kept at the maximum size elsewhere.
+	 */
+	private static final int maxBlockSize = 4096;
+	private static final int minBlockSize = 256;
+	/**
+	 * Seek points reserved in the FLAC seek table, one every {@link #seekPointInterval} seconds. Enough for over 11 hours of
+	 * audio; longer recordings get evenly spaced seek points instead.
+	 */
+	private static final int seekPoints = 4096;
+	private static final int seekPointInterval = 10;
 	private final int channels;
+	private long blocksEncoded = 0L;
 	private final FLACEncoder encoder;
+	private final String fileName;
+	private int queuedBlocks = 0;
 
-	public FlacEncoder(final int channels, final int blockSize, final int sampleRate, final int bitsPerSample,
-		final File outputFile) throws IOException {
+	public FlacEncoder(final int channels, final int sampleRate, final int bitsPerSample, final File outputFile)
+		throws IOException {
 		final File flacFile = new File(outputFile.getParentFile(), outputFile.getName().replaceAll("\\.wav", ".flac"));
 		this.channels = channels;
+		fileName = flacFile.getName();
 		encoder = new FLACEncoder();
-		encoder.setStreamConfiguration(new StreamConfiguration(channels, blockSize, blockSize, sampleRate, bitsPerSample));
-		encoder.setEncodingConfiguration(new EncodingConfiguration());
+		encoder.setStreamConfiguration(new StreamConfiguration(channels, minBlockSize, maxBlockSize, sampleRate,
+			bitsPerSample));
+		final EncodingConfiguration encodingConfig = new EncodingConfiguration();
+		// Blocks are encoded one at a time here, so spread the channels of each block over all cores instead
+		encodingConfig.setParallelSubframes(true);
+		encoder.setEncodingConfiguration(encodingConfig);
+		encoder.setSeekTable(seekPoints, seekPointInterval * sampleRate);
 		encoder.setOutputStream(new FLACFileOutputStream(flacFile));
 		encoder.openFLACStream();
 	}
@@ -26,23 +51,47 @@ public class FlacEncoder implements AudioEncoder {
 	@Override
 	public void addSamples(final int[] samples) throws IOException {
 		encoder.addSamples(samples, samples.length / channels);
-		while (encoder.fullBlockSamplesAvailableToEncode() > 0) {
-			encoder.encodeSamples(encoder.fullBlockSamplesAvailableToEncode(), false);
+		updateQueuedBlocks();
+		encodeFullBlocks();
+	}
+
+	private void blockEncoded(final long start) {
+		PipelineMetrics.record(Stage.FLAC_ENCODE, start);
+		if (FrameEventLog.isEnabled()) {
+			FrameEventLog.flacBlock(fileName, blocksEncoded, start);
 		}
+		blocksEncoded++;
 	}
 
 	@Override
 	public void close() throws IOException {
+		encodeFullBlocks();
+		final long start = System.nanoTime();
+		encoder.encodeSamples(encoder.samplesAvailableToEncode(), true);
+		blockEncoded(start);
+		updateQueuedBlocks();
+	}
+
+	/**
+	 * Encode full blocks one at a time, so that each of them is timed.
+	 */
+	private void encodeFullBlocks() throws IOException {
 		while (encoder.fullBlockSamplesAvailableToEncode() > 0) {
-			encoder.encodeSamples(encoder.fullBlockSamplesAvailableToEncode(), false);
+			final long start = System.nanoTime();
+			encoder.encodeSamples(maxBlockSize, false);
+			blockEncoded(start);
+			updateQueuedBlocks();
 		}
-		int samples = encoder.samplesAvailableToEncode();
-		samples -= samples % channels;
-		encoder.encodeSamples(samples, true);
 	}
 
 	@Override
 	public void flush() throws IOException {
 		// Unsupported
 	}
+
+	private void updateQueuedBlocks() {
+		final int queued = encoder.getQueuedBlockCount();
+		PipelineMetrics.adjustQueue(Queue.FLAC_BLOCKS, queued - queuedBlocks);
+		queuedBlocks = queued;
+	}
 }
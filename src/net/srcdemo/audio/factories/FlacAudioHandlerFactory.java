@@ -19,7 +19,7 @@ public class FlacAudioHandlerFactory extends AudioHandlerFactory {
 			@Override
 			public AudioEncoder buildEncoder(final int channels, final int blockSize, final int sampleRate,
 				final int bitsPerSample, final File outputFile) throws IOException {
-				return new FlacEncoder(channels, blockSize, sampleRate, bitsPerSample, outputFile);
+				return new FlacEncoder(channels, sampleRate, bitsPerSample, outputFile);
 			}
 		};
 	}
@@ -179,7 +179,7 @@ public class Argument {
 			throw new IllegalStateException("This argument is not of type Boolean.");
 		}
 		final String s = scan(args);
-		return Boolean.getBoolean(s == null ? defaultValue : s);
+		return Boolean.parseBoolean(s == null ? defaultValue : s);
 	}
 
 	public double getDouble(final String... args) throws InvalidFormatArgumentException {
@@ -52,23 +52,65 @@ public final class Arguments {
 		"Display all debug messages.");
 	public final static Argument commonDebugAudio = Argument.present(Category.COMMON, null, "srcdemo-debug-audio",
 		"Display audio-related debug messages.");
+	public final static Argument commonDebugBinary = Argument.create(Category.COMMON, null, "srcdemo-debug-binary",
+		Type.STRING, null, "Write debug messages to the given file in binary form instead of displaying them.");
+	public final static Argument commonDebugBufferSize = Argument.rangedInt(Category.COMMON, null,
+		"srcdemo-debug-buffer", Params.logBufferSizeDef, Params.logBufferSizeMin, Params.logBufferSizeMax,
+		"Number of debug messages which may wait to be written before new ones are dropped.");
 	public final static Argument commonDebugDemo = Argument.present(Category.COMMON, null, "srcdemo-debug-demo",
 		"Display demo-related debug messages.");
 	public final static Argument commonDebugFilesystem = Argument.present(Category.COMMON, null, "srcdemo-debug-fs",
 		"Display filesystem-related debug messages.");
 	public final static Argument commonDebugMisc = Argument.present(Category.COMMON, null, "srcdemo-debug-misc",
 		"Display miscellaneous debug messages.");
+	public final static Argument commonDebugRateLimit = Argument.rangedInt(Category.COMMON, null, "srcdemo-debug-rate",
+		Params.logRateLimitDef, Params.logRateLimitMin, Params.logRateLimitMax,
+		"Maximum number of debug messages of each kind to display per second (0 for no limit).");
+	public final static Argument commonDebugSampling = Argument.rangedInt(Category.COMMON, null, "srcdemo-debug-sample",
+		Params.logSamplingDef, Params.logSamplingMin, Params.logSamplingMax,
+		"Only display one debug message of each kind out of this many.");
 	public final static Argument commonDebugVideo = Argument.present(Category.COMMON, null, "srcdemo-debug-video",
 		"Display video-related debug messages.");
 	public final static Argument commonEnableCmd = Argument.present(Category.COMMON, null, "srcdemo-cmd",
 		"Turn on command-line mode.");
+	public final static Argument commonFrameEvents = Argument.create(Category.COMMON, null, "frame-events", Type.STRING,
+		null, "Record a timeline of each frame's way through the pipeline into the given file (Chrome trace format).");
+	public final static Argument commonFuseAttributeTimeout = Argument.rangedDouble(Category.COMMON, null,
+		"fuse-attr-timeout", Params.fuseAttributeTimeoutDef, Params.fuseTimeoutMin, Params.fuseTimeoutMax,
+		"Time during which the kernel may cache file attributes, in seconds (FUSE only).");
+	public final static Argument commonFuseBigWrites = Argument.create(Category.COMMON, null, "fuse-big-writes",
+		Type.BOOLEAN, Params.fuseBigWritesDef,
+		"Whether to allow writes larger than 4 kilobytes (libfuse 2 only; left out with --fuse-writeback).");
+	public final static Argument commonFuseEntryTimeout = Argument.rangedDouble(Category.COMMON, null,
+		"fuse-entry-timeout", Params.fuseEntryTimeoutDef, Params.fuseTimeoutMin, Params.fuseTimeoutMax,
+		"Time during which the kernel may cache file name lookups, in seconds (FUSE only).");
+	public final static Argument commonFuseMaxWrite = Argument.rangedInt(Category.COMMON, null, "fuse-max-write",
+		Params.fuseMaxWriteDef, Params.fuseMaxWriteMin, Params.fuseMaxWriteMax,
+		"Maximum size of a single write, in kilobytes (FUSE only).");
+	public final static Argument commonFuseWritebackCache = Argument.create(Category.COMMON, null, "fuse-writeback",
+		Type.BOOLEAN, Params.fuseWritebackCacheDef,
+		"Whether the kernel may cache writes before sending them (libfuse 3 only; libfuse 2 refuses to mount with it).");
+	public final static Argument commonMetricsPort = Argument.rangedInt(Category.COMMON, null, "metrics-port",
+		Params.metricsPortDef, Params.metricsPortMin, Params.metricsPortMax,
+		"Serve live render statistics in Prometheus format on this local port (0 to disable).");
+	public final static Argument commonMultithreaded = Argument.create(Category.COMMON, null, "fs-multithreaded",
+		Type.BOOLEAN, Params.fuseMultithreadedDef, "Whether the filesystem handles several requests at once.");
+	public final static Argument commonTrace = Argument.create(Category.COMMON, null, "fs-trace", Type.STRING, null,
+		"Record all filesystem operations into the given file, for later replay.");
+	public final static Argument commonTraceData = Argument.present(Category.COMMON, null, "fs-trace-data",
+		"Store all written data in the filesystem trace, rather than only file headers.");
 	public final static Argument miscHelp = Argument.present(Category.MISC, "h", "help", "Displays this help message");
 	public final static Argument miscVersion = Argument.present(Category.MISC, null, "version",
 		"Prints this build's version number.");
 	public final static Argument renderBackingDir = Argument.create(Category.RENDER, "o", "output", Type.STRING, null,
 		"Specify the directory where the final frames and audio will be saved (required in command-line mode).");
+	public final static Argument renderInput = Argument.create(Category.RENDER, "i", "input", Type.STRING, null,
+		"Blend the TGA sub-frames already in this directory into the output directory, instead of mounting anything.");
 	public final static Argument renderMountpoint = Argument.create(Category.RENDER, "m", "mountpoint", Type.STRING, null,
 		"Specify the directory where the game will save frames (required in command-line mode).");
+	public final static Argument renderThreads = Argument.rangedInt(Category.RENDER, null, "threads",
+		Params.batchThreadsDef, Params.batchThreadsMin, Params.batchThreadsMax,
+		"Number of frames to blend at once with -i (0 for one per processor).");
 	public final static Argument serverJvm = Argument.present(null, null, "srcdemo-jvm-server", null);
 	public static final Argument video = Argument.createEnum(Category.VIDEO, "v", "video", Params.videoTypeDef,
 		"Set the video output format.", VideoType.class);
@@ -84,6 +126,10 @@ public final class Arguments {
 		Params.shutterAngleMin, Params.shutterAngleMax, "The shutter angle, in degrees.");
 	public static final Argument videoTgaCompression = Argument.create(Category.VIDEO, null, "tga-rle", Type.BOOLEAN,
 		Params.tgaRleCompressionDef, "Whether to use RLE compression in TGA files.");
+	public static final Argument videoVariants = Argument.create(Category.VIDEO, null, "variants", Type.STRING, null,
+		"Also blend the same capture in other ways, each into its own folder within the output folder, as a comma-separated "
+			+ "list of folder=blendrate:shutter[:format[:gaussian variance]]. Format and blending default to the "
+			+ "ones set above.");
 	static {
 		{
 			_arguments.add(miscHelp);
@@ -92,6 +138,8 @@ public final class Arguments {
 		{
 			_arguments.add(renderMountpoint);
 			_arguments.add(renderBackingDir);
+			_arguments.add(renderInput);
+			_arguments.add(renderThreads);
 		}
 		{
 			_arguments.add(commonEnableCmd);
@@ -101,6 +149,20 @@ public final class Arguments {
 			_arguments.add(commonDebugAudio);
 			_arguments.add(commonDebugFilesystem);
 			_arguments.add(commonDebugMisc);
+			_arguments.add(commonDebugSampling);
+			_arguments.add(commonDebugRateLimit);
+			_arguments.add(commonDebugBufferSize);
+			_arguments.add(commonDebugBinary);
+			_arguments.add(commonMultithreaded);
+			_arguments.add(commonFuseMaxWrite);
+			_arguments.add(commonFuseBigWrites);
+			_arguments.add(commonFuseAttributeTimeout);
+			_arguments.add(commonFuseEntryTimeout);
+			_arguments.add(commonFuseWritebackCache);
+			_arguments.add(commonTrace);
+			_arguments.add(commonTraceData);
+			_arguments.add(commonMetricsPort);
+			_arguments.add(commonFrameEvents);
 		}
 		{
 			_arguments.add(video);
@@ -109,6 +171,7 @@ public final class Arguments {
 			_arguments.add(videoJpegQuality);
 			_arguments.add(videoTgaCompression);
 			_arguments.add(videoGaussianVariance);
+			_arguments.add(videoVariants);
 		}
 		{
 			_arguments.add(audio);
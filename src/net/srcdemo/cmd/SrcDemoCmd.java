@@ -1,9 +1,15 @@
 package net.srcdemo.cmd;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import net.srcdemo.EnumUtils;
 import net.srcdemo.Main;
+import net.srcdemo.Params;
 import net.srcdemo.SrcDemoFS;
 import net.srcdemo.SrcLogger;
 import net.srcdemo.Strings;
@@ -17,6 +23,8 @@ import net.srcdemo.audio.factories.VorbisAudioHandlerFactory;
 import net.srcdemo.cmd.Arguments.Category;
 import net.srcdemo.userfs.UserFSUtils.DokanNotInstalledException;
 import net.srcdemo.userfs.UserFSUtils.DokanVersionException;
+import net.srcdemo.video.BatchBlender;
+import net.srcdemo.video.BlendVariant;
 import net.srcdemo.video.FrameWeighter;
 import net.srcdemo.video.VideoHandlerFactory;
 import net.srcdemo.video.VideoType;
@@ -117,6 +125,19 @@ public class SrcDemoCmd {
 		this.args = args;
 	}
 
+	private ImageSavingTaskFactory buildImageFactory(final VideoType type) throws InvalidFormatArgumentException {
+		switch (type) {
+			case PNG:
+				return new PNGSavingFactory();
+			case JPEG:
+				return new JPEGSavingFactory(Arguments.videoJpegQuality.getInt(args));
+			case TGA:
+				return new TGASavingFactory(Arguments.videoTgaCompression.getBoolean(args));
+			default:
+				return null;
+		}
+	}
+
 	private int error(final String message) {
 		System.err.println("Error: " + message);
 		return 1;
@@ -126,6 +147,42 @@ public class SrcDemoCmd {
 		return arg.isPresent(args);
 	}
 
+	/**
+	 * Parse the variants given with {@link Arguments#videoVariants}, each as folder=blendrate:shutter[:format[:variance]].
+	 */
+	private List<BlendVariant> parseVariants(final String list, final VideoType defaultType,
+		final FrameWeighter defaultWeighter) throws InvalidFormatArgumentException {
+		final List<BlendVariant> variants = new ArrayList<BlendVariant>();
+		final Set<String> directories = new HashSet<String>();
+		for (final String spec : list.split(",")) {
+			final int equals = spec.indexOf('=');
+			final String directory = spec.substring(0, Math.max(0, equals)).trim();
+			final String[] settings = spec.substring(equals + 1).split(":");
+			if (directory.isEmpty() || !directories.add(directory) || settings.length < 2 || settings.length > 4) {
+				throw new InvalidFormatArgumentException(Arguments.videoVariants, spec);
+			}
+			try {
+				final int blendRate = Integer.parseInt(settings[0].trim());
+				final int shutterAngle = Integer.parseInt(settings[1].trim());
+				final VideoType type = settings.length > 2 ? EnumUtils.fromName(VideoType.class, settings[2].trim(), true)
+					: defaultType;
+				final double variance = settings.length > 3 ? Double.parseDouble(settings[3].trim())
+					: Params.gaussianVarianceDef;
+				if (blendRate < Params.blendRateMin || shutterAngle < Params.shutterAngleMin
+					|| shutterAngle > Params.shutterAngleMax || type == null || type == VideoType.DISABLED
+					|| variance < Params.gaussianVarianceMin || variance > Params.gaussianVarianceMax) {
+					throw new InvalidFormatArgumentException(Arguments.videoVariants, spec);
+				}
+				final FrameWeighter weighter = settings.length > 3 ? new GaussianFrameWeighter(variance) : defaultWeighter;
+				variants.add(new BlendVariant(directory, buildImageFactory(type), blendRate, shutterAngle, weighter));
+			}
+			catch (final NumberFormatException e) {
+				throw new InvalidFormatArgumentException(Arguments.videoVariants, spec);
+			}
+		}
+		return variants;
+	}
+
 	private int run() {
 		if (isPresent(Arguments.miscHelp)) {
 			printHelp();
@@ -140,15 +197,24 @@ public class SrcDemoCmd {
 			return 0;
 		}
 		try {
-			if (!isPresent(Arguments.renderMountpoint) || !isPresent(Arguments.renderBackingDir)) {
+			final boolean batch = isPresent(Arguments.renderInput);
+			if (!batch && !isPresent(Arguments.renderMountpoint) || !isPresent(Arguments.renderBackingDir)) {
 				return error(Strings.cmdMustIncludeRenderOptions);
 			}
-			final File mountPoint = new File(Arguments.renderMountpoint.getString(args)).getAbsoluteFile();
-			if (!mountPoint.isDirectory()) {
-				return error(Strings.errInvalidMountpoint);
-			}
-			if (mountPoint.list() == null || mountPoint.list().length != 0) {
-				return error(Strings.errMountpointNotEmpty);
+			final File mountPoint;
+			if (batch) {
+				mountPoint = new File(Arguments.renderInput.getString(args)).getAbsoluteFile();
+				if (!mountPoint.isDirectory()) {
+					return error(Strings.errInvalidInput);
+				}
+			} else {
+				mountPoint = new File(Arguments.renderMountpoint.getString(args)).getAbsoluteFile();
+				if (!mountPoint.isDirectory()) {
+					return error(Strings.errInvalidMountpoint);
+				}
+				if (mountPoint.list() == null || mountPoint.list().length != 0) {
+					return error(Strings.errMountpointNotEmpty);
+				}
 			}
 			final File backingDirectory = new File(Arguments.renderBackingDir.getString(args)).getAbsoluteFile();
 			if (!backingDirectory.isDirectory()) {
@@ -169,23 +235,12 @@ public class SrcDemoCmd {
 				blendRate = Arguments.videoBlendRate.getInt(args);
 				final int shutterAngle = Arguments.videoShutterAngle.getInt(args);
 				final ImageSavingTaskFactory imageFactory;
-				switch (type) {
-					case DISABLED:
-						videoFactory = new NullVideoHandlerFactory();
-						imageFactory = null;
-						videoEnabled = false;
-						break;
-					case PNG:
-						imageFactory = new PNGSavingFactory();
-						break;
-					case JPEG:
-						imageFactory = new JPEGSavingFactory(Arguments.videoJpegQuality.getInt(args));
-						break;
-					case TGA:
-						imageFactory = new TGASavingFactory(Arguments.videoTgaCompression.getBoolean(args));
-						break;
-					default:
-						imageFactory = null;
+				if (type == VideoType.DISABLED) {
+					videoFactory = new NullVideoHandlerFactory();
+					imageFactory = null;
+					videoEnabled = false;
+				} else {
+					imageFactory = buildImageFactory(type);
 				}
 				final FrameWeighter weighter;
 				if (Arguments.videoGaussianVariance.isPresent(args)) {
@@ -193,8 +248,22 @@ public class SrcDemoCmd {
 				} else {
 					weighter = new LinearFrameWeighter();
 				}
+				if (batch) {
+					if (!videoEnabled) {
+						return error(Strings.errBatchVideoDisabled);
+					}
+					if (isPresent(Arguments.videoVariants)) {
+						return error(Strings.errBatchVariants);
+					}
+					return runBatch(mountPoint, backingDirectory, imageFactory, blendRate, shutterAngle, weighter);
+				}
 				if (videoFactory == null) {
-					videoFactory = new FrameBlenderVideoHandlerFactory(imageFactory, blendRate, shutterAngle, weighter);
+					final List<BlendVariant> variants = new ArrayList<BlendVariant>();
+					variants.add(new BlendVariant(null, imageFactory, blendRate, shutterAngle, weighter));
+					if (isPresent(Arguments.videoVariants)) {
+						variants.addAll(parseVariants(Arguments.videoVariants.getString(args), type, weighter));
+					}
+					videoFactory = new FrameBlenderVideoHandlerFactory(variants);
 				}
 			}
 			AudioHandlerFactory audioFactory = null;
@@ -230,6 +299,9 @@ public class SrcDemoCmd {
 			if (videoEnabled && blendRate != -1) {
 				System.out.println(Strings.cmdBlendRate1 + blendRate);
 				System.out.println(Strings.cmdBlendRate2);
+				if (isPresent(Arguments.videoVariants)) {
+					System.out.println(Strings.cmdVariants + Arguments.videoVariants.getString(args));
+				}
 			}
 			System.out.println(Strings.cmdToExit);
 			System.out.println(); // Empty line
@@ -247,6 +319,54 @@ public class SrcDemoCmd {
 		}
 	}
 
+	/**
+	 * Blend the sub-frames in the input directory into the output directory, displaying progress until done.
+	 */
+	private int runBatch(final File inputDirectory, final File outputDirectory, final ImageSavingTaskFactory imageFactory,
+		final int blendRate, final int shutterAngle, final FrameWeighter weighter) {
+		System.out.println(Strings.cmdBatchBlending);
+		System.out.println(inputDirectory);
+		System.out.println(Strings.cmdBlendRate1 + blendRate);
+		System.out.println(); // Empty line
+		final BatchBlender blender = new BatchBlender(imageFactory, blendRate, shutterAngle, weighter,
+			Arguments.renderThreads.getInt(args));
+		final Thread progress = new Thread("Batch progress display") {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						Thread.sleep(1000);
+					}
+					catch (final InterruptedException e) {
+						return;
+					}
+					System.out.print("\r" + Strings.cmdBatchProgress1 + blender.getFramesSaved() + Strings.cmdBatchProgress2
+						+ blender.getFramesTotal() + Strings.cmdBatchProgress3);
+				}
+			}
+		};
+		progress.setDaemon(true);
+		progress.start();
+		final long start = System.currentTimeMillis();
+		final int saved;
+		try {
+			saved = blender.blend(inputDirectory, outputDirectory);
+		}
+		catch (final IOException e) {
+			SrcLogger.error("Error while blending sub-frames", e);
+			return error(e.getMessage());
+		}
+		finally {
+			progress.interrupt();
+		}
+		if (blender.getFramesTotal() == 0) {
+			return error(Strings.cmdBatchNoSubFrames);
+		}
+		System.out.println("\r" + Strings.cmdBatchDone1 + saved + Strings.cmdBatchProgress2 + blender.getFramesTotal()
+			+ Strings.cmdBatchDone2 + (System.currentTimeMillis() - start) / 1000d + Strings.cmdBatchDone3);
+		return saved == blender.getFramesTotal() ? 0 : 1;
+	}
+
 	private void unmount() {
 		if (mountedFS != null) {
 			if (SrcLogger.getLogMisc()) {
@@ -6,6 +6,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import net.srcdemo.RollingRate;
+import net.srcdemo.RollingRate.Horizon;
 import net.srcdemo.SrcDemoListener;
 import net.srcdemo.Strings;
 import net.srcdemo.audio.BufferedAudioHandler.AudioBufferStatus;
@@ -21,9 +22,7 @@ final class StatusDisplay extends Thread implements SrcDemoListener {
 	private final RollingRate framerate;
 	private final AtomicInteger framesProcessed = new AtomicInteger(0);
 	private int framesSaved = 0;
-	private int lastFrameHeight = -1;
 	private int[] lastFramePixels = null;
-	private int lastFrameWidth = -1;
 	private final Lock lock = new ReentrantLock();
 
 	StatusDisplay(final boolean videoEnabled, final boolean audioEnabled) {
@@ -47,12 +46,19 @@ final class StatusDisplay extends Thread implements SrcDemoListener {
 	}
 
 	@Override
-	public void onFrameSaved(final File savedFrame, final int[] pixels, final int width, final int height) {
+	public void onFramePreview(final int[] pixels, final int width, final int height) {
+		// Scaling makes a copy, which is all that is kept
+		final int[] scaled = CoarseScale.scale(pixels, width, height, SrcDemoCmd.targetTerminalWidth,
+			SrcDemoCmd.targetTerminalHeight);
+		lock.lock();
+		lastFramePixels = scaled;
+		lock.unlock();
+	}
+
+	@Override
+	public void onFrameSaved(final File savedFrame) {
 		lock.lock();
 		framesSaved++;
-		lastFramePixels = pixels;
-		lastFrameWidth = width;
-		lastFrameHeight = height;
 		lock.unlock();
 	}
 
@@ -67,18 +73,19 @@ final class StatusDisplay extends Thread implements SrcDemoListener {
 				}
 				lock.lock();
 				if (framerate != null) {
-					if (lastFramePixels != null && lastFrameWidth > 0 && lastFrameHeight > 0) {
+					if (lastFramePixels != null) {
 						System.out.println();
 						System.out.println(line);
 						// Got a new frame
-						System.out.println(ASCII_mod.getAscii(CoarseScale.scale(lastFramePixels, lastFrameWidth,
-							lastFrameHeight, SrcDemoCmd.targetTerminalWidth, SrcDemoCmd.targetTerminalHeight),
-							SrcDemoCmd.targetTerminalWidth, SrcDemoCmd.targetTerminalHeight));
+						System.out.println(ASCII_mod.getAscii(lastFramePixels, SrcDemoCmd.targetTerminalWidth,
+							SrcDemoCmd.targetTerminalHeight));
 						lastFramePixels = null;
 						System.out.println(line);
 					}
 					System.out.print("\r" + Strings.cmdDisplayVideo1 + framesProcessed + Strings.cmdDisplayVideo2
-						+ framerate.getFormattedRate() + Strings.cmdDisplayVideo3 + framesSaved + Strings.cmdDisplayVideo4);
+						+ framerate.getFormattedRate() + Strings.cmdDisplayVideoMinute
+						+ framerate.getFormattedRate(Horizon.MINUTE) + Strings.cmdDisplayVideo3 + framesSaved
+						+ Strings.cmdDisplayVideo4);
 				} else {
 					System.out.print("\r");
 				}
@@ -22,6 +22,7 @@ import net.srcdemo.audio.AudioHandlerFactory;
 import net.srcdemo.audio.BufferedAudioHandler.AudioBufferStatus;
 import net.srcdemo.audio.DiskAudioHandler;
 import net.srcdemo.userfs.UserFSUtils;
+import net.srcdemo.userfs.VirtualUserFS;
 import net.srcdemo.video.FrameBlender;
 import net.srcdemo.video.FrameWeighter;
 import net.srcdemo.video.VideoHandler;
@@ -53,10 +54,14 @@ final class BlendFSTest implements SrcDemoListener {
 	private static final String testImageReferenceSuffix = "reference.png";
 
 	public static final void main(final String[] args) {
-		if (args.length != 2) {
-			System.err.println("Usage: outputdir mountpoint");
+		if (args.length != 2 && !(args.length == 3 && args[2].equals("virtual"))) {
+			System.err.println("Usage: outputdir mountpoint [virtual]");
 			System.exit(1);
 		}
+		if (args.length == 3) {
+			// No kernel mount; files are written through the filesystem's entry points directly
+			UserFSUtils.setVirtualBackend(true);
+		}
 		System.out.println("Testing linear blending...");
 		try {
 			new BlendFSTest(args[0], args[1], false);
@@ -79,6 +84,7 @@ final class BlendFSTest implements SrcDemoListener {
 
 	private final String filePrefix;
 	private File mountPoint;
+	private VirtualUserFS virtualFS = null;
 	private final AtomicBoolean receivedFrame = new AtomicBoolean(false);
 	private final AtomicBoolean validFrame = new AtomicBoolean(false);
 
@@ -116,11 +122,18 @@ final class BlendFSTest implements SrcDemoListener {
 			}
 		});
 		mountedFS.addListener(this);
-		if (!mountedFS.mount(this.mountPoint, false)) {
-			throw new Exception("Error while mounting.");
+		if (mountedFS.getBackend() instanceof VirtualUserFS) {
+			virtualFS = (VirtualUserFS) mountedFS.getBackend();
+			if (!mountedFS.mount(this.mountPoint, true)) {
+				throw new Exception("Error while mounting.");
+			}
+		} else {
+			if (!mountedFS.mount(this.mountPoint, false)) {
+				throw new Exception("Error while mounting.");
+			}
+			// Wait for mount
+			Thread.sleep(5000);
 		}
-		// Wait for mount
-		Thread.sleep(5000);
 		final Thread audioThread = new Thread() {
 			@Override
 			public void run() {
@@ -163,6 +176,12 @@ final class BlendFSTest implements SrcDemoListener {
 
 	private void copy(final File file) throws IOException {
 		System.out.println("Copying " + file.getName());
+		if (virtualFS != null) {
+			final InputStream in = new FileInputStream(file);
+			virtualFS.writeFile(File.separator + filePrefix + file.getName(), in);
+			in.close();
+			return;
+		}
 		final File target = new File(mountPoint, filePrefix + file.getName());
 		final InputStream in = new FileInputStream(file);
 		final OutputStream out = new FileOutputStream(target);
@@ -204,16 +223,25 @@ final class BlendFSTest implements SrcDemoListener {
 	}
 
 	@Override
-	public void onFrameSaved(final File savedFrame, final int[] pixels, final int width, final int height) {
+	public void onFramePreview(final int[] pixels, final int width, final int height) {
+	}
+
+	@Override
+	public void onFrameSaved(final File savedFrame) {
 		final BufferedImage reference;
+		final BufferedImage saved;
 		try {
 			reference = ImageIO.read(new File(_testImagesDirectory, filePrefix + testImageReferenceSuffix));
+			saved = ImageIO.read(savedFrame);
 		}
 		catch (final IOException e) {
-			System.err.println("Error while reading reference frame: " + e);
+			System.err.println("Error while reading reference or saved frame: " + e);
 			e.printStackTrace();
 			return;
 		}
+		final int width = saved.getWidth();
+		final int height = saved.getHeight();
+		final int[] pixels = saved.getRGB(0, 0, width, height, null, 0, width);
 		final int refWidth = reference.getWidth();
 		final int refHeight = reference.getHeight();
 		if (refWidth != width || refHeight != height) {
@@ -224,6 +252,7 @@ final class BlendFSTest implements SrcDemoListener {
 		}
 		final int[] referencePixels = reference.getRGB(0, 0, refWidth, refHeight, null, 0, refWidth);
 		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = pixels[i] & 0xFFFFFF;
 			referencePixels[i] = referencePixels[i] & 0xFFFFFF;
 			if (pixels[i] != referencePixels[i]) {
 				System.err.println("Mismatched pixel value: " + pixels[i] + " vs reference " + referencePixels[i]
@@ -0,0 +1,101 @@
+package net.srcdemo.test;
+
+import java.io.File;
+
+import net.srcdemo.SrcDemoFS;
+import net.srcdemo.audio.factories.NullAudioHandlerFactory;
+import net.srcdemo.userfs.UserFSUtils;
+import net.srcdemo.userfs.VirtualUserFS;
+import net.srcdemo.video.factories.NullVideoHandlerFactory;
+
+/**
+ * Checks the sizes a SrcDemoFS reports for frames, without mounting it: first for a render running past the end of the ring
+ * frame sizes are kept in, then for the same demo rendered again from frame 0, whose first frames land in slots held by
+ * higher frame numbers of the first render.
+ */
+final class FrameSizesTest {
+	/**
+	 * Number of frames past which frame sizes share slots; must be at least the number of frames SrcDemo keeps sizes for.
+	 */
+	private static final int ringSize = 1024;
+	/**
+	 * Number of frames at the end of each render whose sizes are checked.
+	 */
+	private static final int checkedFrames = 16;
+
+	public static final void main(final String[] args) {
+		if (args.length != 1) {
+			System.err.println("Usage: outputdir");
+			System.exit(1);
+		}
+		if (UserFSUtils.getOperatingSystem().isWindows()) {
+			System.out.println("Frame sizes are not reported on Windows; nothing to test.");
+			System.exit(0);
+		}
+		try {
+			if (!new FrameSizesTest(new File(args[0])).run()) {
+				System.exit(1);
+			}
+		}
+		catch (final Exception e) {
+			System.err.println(e);
+			e.printStackTrace();
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	private final File outputDirectory;
+
+	private FrameSizesTest(final File outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+	private String getFrameName(final int frameNumber) {
+		return "/sizes_" + String.format("%04d", frameNumber) + ".tga";
+	}
+
+	private int getFrameSize(final int frameNumber, final int sizeOffset) {
+		return sizeOffset + frameNumber % 256;
+	}
+
+	/**
+	 * Write frames 0 to the given one, each with a size of its own, then check that the filesystem reports those sizes for
+	 * the last ones.
+	 *
+	 * @return Whether all sizes matched.
+	 */
+	private boolean render(final VirtualUserFS virtualFS, final int frames, final int sizeOffset) throws Exception {
+		for (int i = 0; i < frames; i++) {
+			virtualFS.writeFile(getFrameName(i), new byte[getFrameSize(i, sizeOffset)]);
+		}
+		boolean matched = true;
+		for (int i = Math.max(0, frames - checkedFrames); i < frames; i++) {
+			final long size = virtualFS.getFileSize(getFrameName(i));
+			if (size != getFrameSize(i, sizeOffset)) {
+				System.err.println("Frame " + i + " reported " + size + " bytes instead of " + getFrameSize(i, sizeOffset));
+				matched = false;
+			}
+		}
+		return matched;
+	}
+
+	private boolean run() throws Exception {
+		UserFSUtils.setVirtualBackend(true);
+		UserFSUtils.init();
+		outputDirectory.mkdirs();
+		final SrcDemoFS fs = new SrcDemoFS(outputDirectory, new NullVideoHandlerFactory(), new NullAudioHandlerFactory());
+		if (!fs.mount(outputDirectory, true)) {
+			throw new Exception("Error while mounting.");
+		}
+		final VirtualUserFS virtualFS = (VirtualUserFS) fs.getBackend();
+		System.out.println("Testing frames wrapping around the ring...");
+		final boolean wrapped = render(virtualFS, ringSize + checkedFrames / 2, 1000);
+		System.out.println(wrapped ? "Frame sizes matched." : "Frame sizes did not match.");
+		System.out.println("Testing the same demo rendered again...");
+		final boolean rerendered = render(virtualFS, checkedFrames, 2000);
+		System.out.println(rerendered ? "Frame sizes matched." : "Frame sizes did not match.");
+		fs.unmount();
+		return wrapped && rerendered;
+	}
+}
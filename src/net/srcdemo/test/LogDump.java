@@ -0,0 +1,28 @@
+package net.srcdemo.test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import net.srcdemo.BinaryLog;
+
+/**
+ * Prints a debug log recorded with --srcdemo-debug-binary as text.
+ */
+final class LogDump {
+	public static final void main(final String[] args) {
+		if (args.length != 1) {
+			System.err.println("Usage: logfile");
+			System.exit(1);
+		}
+		try {
+			final InputStream input = new FileInputStream(args[0]);
+			BinaryLog.decode(input, System.out);
+			input.close();
+		}
+		catch (final Exception e) {
+			System.err.println("Error while reading log: " + e);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package net.srcdemo.test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import net.srcdemo.video.image.TGAWriter;
+
+/**
+ * A made-up capture, as the game would write it: numbered TGA sub-frames, and a WAV file growing by a few samples after
+ * each of them. Frames show a scrolling scene made of a flat sky, a textured middle and a gradient ground, so RLE compresses
+ * them about as well as it does real ones. Only a handful of distinct frames are generated and then cycled through, so
+ * that generating them doesn't get in the way of what is being measured.
+ */
+final class SyntheticCapture {
+	private static final int audioHeaderSize = 44;
+	private static final int bitsPerSample = 16;
+	private static final int bytesPerSample = bitsPerSample / 8;
+	private static final int channels = 2;
+	private static final int distinctFrames = 8;
+	private static final long seed = 0x5c2de4012L;
+
+	private static byte[] buildFrame(final int width, final int height, final int scroll, final boolean rle) {
+		final Random random = new Random(seed + scroll);
+		final int[] pixels = new int[width * height];
+		final int skyLine = height / 3;
+		final int groundLine = height * 2 / 3;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final int sceneX = x + scroll;
+				final int pixel;
+				if (y < skyLine) {
+					pixel = 0x5080c0;
+				} else if (y >= groundLine) {
+					final int shade = 64 + 96 * (y - groundLine) / (height - groundLine);
+					pixel = shade << 16 | shade << 8 | shade / 2;
+				} else if ((sceneX / 64 + y / 64) % 2 == 0) {
+					final int noise = random.nextInt(48);
+					pixel = (128 + noise) << 16 | (96 + noise) << 8 | (64 + noise);
+				} else {
+					pixel = random.nextInt(0x1000000);
+				}
+				pixels[y * width + x] = pixel;
+			}
+		}
+		return new TGAWriter(pixels, width, height, rle).getBytes();
+	}
+
+	private final byte[][] frames;
+	private final int sampleRate;
+	private final int subFrameRate;
+	private final int subFrames;
+
+	/**
+	 * @param subFrames
+	 *            Number of sub-frames in the capture.
+	 * @param subFrameRate
+	 *            Sub-frames per second of game time; the output frame rate times the blend rate. Sets how many audio
+	 *            samples come with each sub-frame.
+	 */
+	SyntheticCapture(final int width, final int height, final int subFrames, final boolean rle, final int sampleRate,
+		final int subFrameRate) {
+		this.subFrames = subFrames;
+		this.sampleRate = sampleRate;
+		this.subFrameRate = subFrameRate;
+		frames = new byte[Math.min(distinctFrames, subFrames)][];
+		for (int i = 0; i < frames.length; i++) {
+			frames[i] = buildFrame(width, height, i * 8, rle);
+		}
+	}
+
+	/**
+	 * @return Interleaved samples written after the given sub-frame: two tones, one per channel.
+	 */
+	byte[] getAudioChunk(final int subFrame) {
+		final long first = getAudioSamples(subFrame);
+		final int count = (int) (getAudioSamples(subFrame + 1) - first);
+		final ByteBuffer chunk = ByteBuffer.allocate(count * channels * bytesPerSample).order(ByteOrder.LITTLE_ENDIAN);
+		for (long i = first; i < first + count; i++) {
+			final double time = (double) i / sampleRate;
+			chunk.putShort((short) (Math.sin(2 * Math.PI * 220 * time) * 8000));
+			chunk.putShort((short) (Math.sin(2 * Math.PI * 330 * time) * 8000));
+		}
+		return chunk.array();
+	}
+
+	/**
+	 * @return The WAV header, with sizes for the whole capture. The game writes it first, then again once it has written all
+	 *         samples.
+	 */
+	byte[] getAudioHeader() {
+		final int dataSize = (int) (getAudioSamples(subFrames) * channels * bytesPerSample);
+		final ByteBuffer header = ByteBuffer.allocate(audioHeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+		header.put("RIFF".getBytes()).putInt(audioHeaderSize - 8 + dataSize).put("WAVE".getBytes());
+		header.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channels).putInt(sampleRate);
+		header.putInt(sampleRate * channels * bytesPerSample).putShort((short) (channels * bytesPerSample))
+			.putShort((short) bitsPerSample);
+		header.put("data".getBytes()).putInt(dataSize);
+		return header.array();
+	}
+
+	/**
+	 * @return Offset in the WAV file at which the samples of the given sub-frame go.
+	 */
+	long getAudioOffset(final int subFrame) {
+		return audioHeaderSize + getAudioSamples(subFrame) * channels * bytesPerSample;
+	}
+
+	/**
+	 * @return Samples in each channel written along with the sub-frames before the given one.
+	 */
+	private long getAudioSamples(final int subFrame) {
+		return (long) subFrame * sampleRate / subFrameRate;
+	}
+
+	byte[] getSubFrame(final int index) {
+		return frames[index % frames.length];
+	}
+
+	int getSubFrames() {
+		return subFrames;
+	}
+}
@@ -0,0 +1,285 @@
+package net.srcdemo.test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.srcdemo.LatencyHistogram;
+import net.srcdemo.Params;
+import net.srcdemo.PipelineMetrics;
+import net.srcdemo.SrcDemoFS;
+import net.srcdemo.SrcDemoListener;
+import net.srcdemo.audio.AudioHandlerFactory;
+import net.srcdemo.audio.BufferedAudioHandler.AudioBufferStatus;
+import net.srcdemo.audio.factories.BufferedAudioHandlerFactory;
+import net.srcdemo.audio.factories.DiskAudioHandlerFactory;
+import net.srcdemo.audio.factories.FlacAudioHandlerFactory;
+import net.srcdemo.audio.factories.NullAudioHandlerFactory;
+import net.srcdemo.userfs.UserFSUtils;
+import net.srcdemo.userfs.VirtualUserFS;
+import net.srcdemo.video.factories.FrameBlenderVideoHandlerFactory;
+import net.srcdemo.video.factories.JPEGSavingFactory;
+import net.srcdemo.video.factories.LinearFrameWeighter;
+import net.srcdemo.video.factories.PNGSavingFactory;
+import net.srcdemo.video.factories.TGASavingFactory;
+import net.srcdemo.video.image.ImageSavingTaskFactory;
+
+/**
+ * Writes synthetic captures into a SrcDemoFS without mounting it, one demo per thread, as fast as the filesystem takes them,
+ * then reports how many sub-frames per second went in, how many blended frames per second came out, how much heap it took
+ * and how long closing a sub-frame took. Useful to size hardware for a render, and to catch regressions before running a
+ * real one.
+ */
+final class ThroughputTest implements SrcDemoListener {
+	private static final int sampleRate = 44100;
+	/**
+	 * How long to wait for the next blended frame to be saved once all sub-frames are written, before giving up.
+	 */
+	private static final long saveTimeout = 60000L;
+	private static final String usage = "Usage: outputdir [threads=1] [resolution=1080p] [subframes=320] [blendrate=32] "
+		+ "[shutter=360] [rle=false] [chunk=bytes] [audio=none|wav|flac] [fps=30] [format=tga|png|jpg]";
+
+	private static AudioHandlerFactory buildAudioFactory(final String audio) {
+		final AudioHandlerFactory diskFactory;
+		if (audio.equals("none")) {
+			return new NullAudioHandlerFactory();
+		} else if (audio.equals("wav")) {
+			diskFactory = new DiskAudioHandlerFactory();
+		} else if (audio.equals("flac")) {
+			diskFactory = new FlacAudioHandlerFactory();
+		} else {
+			throw new IllegalArgumentException("Unknown audio output: " + audio);
+		}
+		return new BufferedAudioHandlerFactory(diskFactory, Params.audioBufferSizeDef, Params.audioBufferTimeoutDef);
+	}
+
+	private static ImageSavingTaskFactory buildImageFactory(final String format) {
+		if (format.equals("tga")) {
+			return new TGASavingFactory(false);
+		} else if (format.equals("png")) {
+			return new PNGSavingFactory();
+		} else if (format.equals("jpg")) {
+			return new JPEGSavingFactory(Params.jpegQualityDef / 100f);
+		}
+		throw new IllegalArgumentException("Unknown image format: " + format);
+	}
+
+	private static long getPeakHeap() {
+		long peak = 0L;
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	public static final void main(final String[] args) {
+		if (args.length < 1) {
+			System.err.println(usage);
+			System.exit(1);
+		}
+		final Map<String, String> options = new HashMap<String, String>();
+		for (int i = 1; i < args.length; i++) {
+			final int equals = args[i].indexOf('=');
+			if (equals == -1) {
+				System.err.println(usage);
+				System.exit(1);
+			}
+			options.put(args[i].substring(0, equals), args[i].substring(equals + 1));
+		}
+		try {
+			if (!new ThroughputTest(new File(args[0]), options).run()) {
+				System.exit(1);
+			}
+		}
+		catch (final Exception e) {
+			System.err.println(e);
+			e.printStackTrace();
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	private static void resetPeakHeap() {
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private final String audio;
+	private final int blendRate;
+	private final int chunkSize;
+	private final String format;
+	private final int fps;
+	private final int height;
+	private final AtomicLong lastSaved = new AtomicLong(0L);
+	private final File outputDirectory;
+	private final boolean rle;
+	private final AtomicInteger savedFrames = new AtomicInteger(0);
+	private final int shutterAngle;
+	private final int subFrames;
+	private final int threads;
+	private final int width;
+
+	private ThroughputTest(final File outputDirectory, final Map<String, String> options) {
+		this.outputDirectory = outputDirectory;
+		threads = Integer.parseInt(getOption(options, "threads", "1"));
+		final String resolution = getOption(options, "resolution", "1080p");
+		height = Integer.parseInt(resolution.substring(0, resolution.length() - 1));
+		width = height * 16 / 9;
+		subFrames = Integer.parseInt(getOption(options, "subframes", "320"));
+		blendRate = Integer.parseInt(getOption(options, "blendrate", Integer.toString(Params.blendRateDef)));
+		shutterAngle = Integer.parseInt(getOption(options, "shutter", "360"));
+		rle = Boolean.parseBoolean(getOption(options, "rle", "false"));
+		chunkSize = Integer.parseInt(getOption(options, "chunk", "-1"));
+		audio = getOption(options, "audio", "wav");
+		fps = Integer.parseInt(getOption(options, "fps", "30"));
+		format = getOption(options, "format", "tga");
+		if (!options.isEmpty()) {
+			throw new IllegalArgumentException("Unknown options: " + options.keySet());
+		}
+	}
+
+	private String getOption(final Map<String, String> options, final String name, final String defaultValue) {
+		final String value = options.remove(name);
+		return value == null ? defaultValue : value;
+	}
+
+	@Override
+	public void onAudioBuffer(final AudioBufferStatus status, final int occupied, final int total) {
+	}
+
+	@Override
+	public void onFramePreview(final int[] pixels, final int width, final int height) {
+	}
+
+	@Override
+	public void onFrameProcessed(final String frameName) {
+	}
+
+	@Override
+	public void onFrameSaved(final File savedFrame) {
+		savedFrames.incrementAndGet();
+		lastSaved.set(System.nanoTime());
+	}
+
+	private boolean run() throws Exception {
+		UserFSUtils.setVirtualBackend(true);
+		UserFSUtils.init();
+		outputDirectory.mkdirs();
+		final SrcDemoFS fs = new SrcDemoFS(outputDirectory, new FrameBlenderVideoHandlerFactory(buildImageFactory(format),
+			blendRate, shutterAngle, new LinearFrameWeighter()), buildAudioFactory(audio));
+		fs.addListener(this);
+		if (!fs.mount(outputDirectory, true)) {
+			throw new Exception("Error while mounting.");
+		}
+		final VirtualUserFS virtualFS = (VirtualUserFS) fs.getBackend();
+		if (chunkSize > 0) {
+			virtualFS.setChunkSize(chunkSize);
+		}
+		System.out.println("Generating " + width + "x" + height + (rle ? " RLE" : " raw") + " capture of " + subFrames
+			+ " sub-frames...");
+		final SyntheticCapture capture = new SyntheticCapture(width, height, subFrames, rle, sampleRate, fps * blendRate);
+		System.out.println("Writing it from " + threads + " thread(s) in chunks of " + virtualFS.getChunkSize()
+			+ " bytes, blending " + blendRate + " sub-frames per frame at " + shutterAngle + " degrees into " + format
+			+ ", audio: " + audio);
+		System.gc();
+		resetPeakHeap();
+		PipelineMetrics.reset();
+		final CountDownLatch startGate = new CountDownLatch(1);
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		final List<Thread> writers = new ArrayList<Thread>(threads);
+		for (int t = 0; t < threads; t++) {
+			final String prefix = File.separator + "synthetic" + t + "_";
+			final Thread writer = new Thread("Capture writer " + t) {
+				@Override
+				public void run() {
+					try {
+						startGate.await();
+						writeCapture(virtualFS, capture, prefix);
+					}
+					catch (final Exception e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			writer.start();
+			writers.add(writer);
+		}
+		final long start = System.nanoTime();
+		startGate.countDown();
+		for (final Thread writer : writers) {
+			writer.join();
+		}
+		final long written = System.nanoTime();
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		final int expectedFrames = threads * (subFrames / blendRate);
+		int lastCount = -1;
+		long lastProgress = System.currentTimeMillis();
+		while (savedFrames.get() < expectedFrames && System.currentTimeMillis() - lastProgress < saveTimeout) {
+			if (savedFrames.get() != lastCount) {
+				lastCount = savedFrames.get();
+				lastProgress = System.currentTimeMillis();
+			}
+			Thread.sleep(10);
+		}
+		final long peakHeap = getPeakHeap();
+		final long end = Math.max(written, lastSaved.get());
+		final double writeSeconds = (written - start) / 1e9d;
+		final double totalSeconds = (end - start) / 1e9d;
+		final int totalSubFrames = threads * subFrames;
+		final LatencyHistogram.Snapshot closes = virtualFS.getCloseLatencies();
+		System.out.println(String.format("Sub-frames:     %d in %.2f s, %.1f/s (%.1f MB/s)", totalSubFrames, writeSeconds,
+			totalSubFrames / writeSeconds, (double) totalSubFrames * capture.getSubFrame(0).length / writeSeconds / 1e6d));
+		System.out.println(String.format("Output frames:  %d of %d in %.2f s, %.2f/s", savedFrames.get(), expectedFrames,
+			totalSeconds, savedFrames.get() / totalSeconds));
+		System.out.println(String.format("Peak heap:      %.1f MB of %.1f MB", peakHeap / 1048576d, Runtime.getRuntime()
+			.maxMemory() / 1048576d));
+		System.out.println(String.format("Close latency:  p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+			closes.getPercentile(0.5d) / 1e6d, closes.getPercentile(0.99d) / 1e6d, closes.getMax() / 1e6d));
+		System.out.println();
+		System.out.print(fs.getMetrics());
+		fs.unmount();
+		if (savedFrames.get() < expectedFrames) {
+			System.err.println("Only " + savedFrames.get() + " of " + expectedFrames + " frames were saved.");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Write a whole capture the way the game does: the WAV header first, then each sub-frame followed by its audio, then the
+	 * WAV header again.
+	 */
+	private void writeCapture(final VirtualUserFS virtualFS, final SyntheticCapture capture, final String prefix)
+		throws Exception {
+		final boolean withAudio = !audio.equals("none");
+		final String audioFile = prefix + ".wav";
+		if (withAudio) {
+			virtualFS.writeFile(audioFile, capture.getAudioHeader(), 0L);
+		}
+		for (int i = 0; i < capture.getSubFrames(); i++) {
+			virtualFS.writeFile(prefix + String.format("%04d", i) + ".tga", capture.getSubFrame(i));
+			if (withAudio) {
+				virtualFS.writeFile(audioFile, capture.getAudioChunk(i), capture.getAudioOffset(i));
+			}
+		}
+		if (withAudio) {
+			virtualFS.writeFile(audioFile, capture.getAudioHeader(), 0L);
+		}
+	}
+}
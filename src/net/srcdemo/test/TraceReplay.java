@@ -0,0 +1,46 @@
+package net.srcdemo.test;
+
+import java.io.File;
+
+import net.srcdemo.Params;
+import net.srcdemo.SrcDemoFS;
+import net.srcdemo.audio.factories.DiskAudioHandlerFactory;
+import net.srcdemo.userfs.TraceReplayer;
+import net.srcdemo.userfs.UserFSUtils;
+import net.srcdemo.video.factories.FrameBlenderVideoHandlerFactory;
+import net.srcdemo.video.factories.LinearFrameWeighter;
+import net.srcdemo.video.factories.PNGSavingFactory;
+
+/**
+ * Replays a filesystem trace recorded with --fs-trace into a SrcDemoFS without mounting it, then prints how long each kind
+ * of operation took, then how long each stage of the capture pipeline took. Frames are blended and saved as PNG, and
+ * audio is written straight to disk.
+ */
+final class TraceReplay {
+	public static final void main(final String[] args) {
+		if (args.length < 2 || args.length > 4) {
+			System.err.println("Usage: tracefile outputdir [blendrate] [realtime]");
+			System.exit(1);
+		}
+		final boolean realTime = args[args.length - 1].equals("realtime");
+		final int blendRate = args.length > (realTime ? 3 : 2) ? Integer.parseInt(args[2]) : Params.blendRateDef;
+		try {
+			UserFSUtils.setVirtualBackend(true);
+			UserFSUtils.init();
+			final SrcDemoFS fs = new SrcDemoFS(new File(args[1]), new FrameBlenderVideoHandlerFactory(
+				new PNGSavingFactory(), blendRate, Params.shutterAngleDef, new LinearFrameWeighter()),
+				new DiskAudioHandlerFactory());
+			fs.mount(new File(args[1]), true);
+			new TraceReplayer(new File(args[0])).replay(fs, realTime, System.out);
+			// Frames are saved on daemon threads, which unmounting stops
+			fs.flushFrames();
+			fs.unmount();
+			System.out.print(fs.getMetrics());
+		}
+		catch (final Exception e) {
+			System.err.println(e);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package net.srcdemo.ui;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Timer;
@@ -8,6 +9,7 @@ import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.srcdemo.RollingRate;
+import net.srcdemo.RollingRate.Horizon;
 import net.srcdemo.SrcDemoListener;
 import net.srcdemo.Strings;
 import net.srcdemo.audio.BufferedAudioHandler.AudioBufferStatus;
@@ -248,13 +250,18 @@ class RenderingTab extends QWidget implements SrcDemoListener {
 	}
 
 	@Override
-	public void onFrameSaved(final File savedFrame, final int[] pixels, final int width, final int height) {
-		framesSaved.incrementAndGet();
+	public void onFramePreview(final int[] pixels, final int width, final int height) {
 		if (previewEnabled && hasFocus) {
-			previewPicture.push(pixels, width, height);
+			// The picture keeps the array until it is next drawn, but the blender reuses it
+			previewPicture.push(Arrays.copyOf(pixels, pixels.length), width, height);
 		}
 	}
 
+	@Override
+	public void onFrameSaved(final File savedFrame) {
+		framesSaved.incrementAndGet();
+	}
+
 	@SuppressWarnings("unused")
 	private void updatePreviewEnabled() {
 		previewEnabled = previewEnabledCheckbox.isChecked();
@@ -268,6 +275,9 @@ class RenderingTab extends QWidget implements SrcDemoListener {
 	private void updateUI() {
 		lblLastFrameProcessed.setText(Integer.toString(framesProcessed.get()));
 		lblFramesProcessedPerSecond.setText(framesProcessRate.getFormattedRate());
+		lblFramesProcessedPerSecond.setToolTip(Strings.lblFramesProcessedPerSecondMinute
+			+ framesProcessRate.getFormattedRate(Horizon.MINUTE) + Strings.lblFramesProcessedPerSecondTotal
+			+ framesProcessRate.getFormattedRate(Horizon.TOTAL));
 		lblLastFrameSaved.setText(Integer.toString(framesSaved.get()));
 		if (previewEnabled) {
 			previewPicture.updatePicture();
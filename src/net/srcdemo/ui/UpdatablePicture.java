@@ -148,7 +148,6 @@ public class UpdatablePicture extends QLabel {
 	}
 
 	public void updatePicture() {
-		boolean doGc = false;
 		lock.lock();
 		if (needUpdate) {
 			if (newPixmap != null) {
@@ -200,11 +199,7 @@ public class UpdatablePicture extends QLabel {
 					TransformationMode.SmoothTransformation));
 			}
 			needUpdate = false;
-			doGc = true;
 		}
 		lock.unlock();
-		if (doGc) {
-			System.gc();
-		}
 	}
 }
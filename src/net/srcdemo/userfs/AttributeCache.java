@@ -0,0 +1,113 @@
+package net.srcdemo.userfs;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of the attributes of backing files, so that bursts of getattr calls don't each hit the disk. Entries
+ * expire after a fixed time, and must be invalidated by every operation which changes the file.
+ */
+final class AttributeCache {
+	static final class Attributes {
+		private final long creationTime;
+		private final boolean exists;
+		private final long expiry;
+		private final long fileSize;
+		private final boolean isDirectory;
+		private final long lastAccessTime;
+		private final long lastWriteTime;
+
+		private Attributes(final boolean exists, final boolean isDirectory, final long fileSize, final long creationTime,
+			final long lastAccessTime, final long lastWriteTime, final long expiry) {
+			this.exists = exists;
+			this.isDirectory = isDirectory;
+			this.fileSize = fileSize;
+			this.creationTime = creationTime;
+			this.lastAccessTime = lastAccessTime;
+			this.lastWriteTime = lastWriteTime;
+			this.expiry = expiry;
+		}
+
+		/**
+		 * @return A new FileInfo for these attributes, or null if the file doesn't exist.
+		 */
+		FileInfo toFileInfo(final String fileName) {
+			if (!exists) {
+				return null;
+			}
+			if (isDirectory) {
+				return FileInfo.fromDirectory(fileName, creationTime, lastAccessTime, lastWriteTime);
+			}
+			return FileInfo.fromFile(fileName, fileSize, creationTime, lastAccessTime, lastWriteTime);
+		}
+	}
+
+	private final ConcurrentHashMap<String, Attributes> attributes;
+	private final int maxEntries;
+	private final long timeToLive;
+
+	/**
+	 * @param timeToLive
+	 *            Time in milliseconds after which cached attributes are read again.
+	 */
+	AttributeCache(final long timeToLive, final int maxEntries, final int concurrencyLevel) {
+		this.timeToLive = timeToLive * 1000000L;
+		this.maxEntries = maxEntries;
+		attributes = new ConcurrentHashMap<String, Attributes>(maxEntries, 0.75f, concurrencyLevel);
+	}
+
+	/**
+	 * @return The cached attributes of the given file, or null if they aren't cached. Files known not to exist are cached
+	 *         too, and turn into a null FileInfo.
+	 */
+	Attributes get(final String key) {
+		final Attributes cached = attributes.get(key);
+		if (cached == null) {
+			return null;
+		}
+		if (cached.expiry - System.nanoTime() < 0) {
+			attributes.remove(key, cached);
+			return null;
+		}
+		return cached;
+	}
+
+	void invalidate(final String key) {
+		attributes.remove(key);
+	}
+
+	/**
+	 * Invalidate the given file and the directory it is in, such as when the file is created or deleted.
+	 */
+	void invalidateWithParent(final String key) {
+		attributes.remove(key);
+		final int separator = key.lastIndexOf(File.separatorChar);
+		if (separator > 0) {
+			attributes.remove(key.substring(0, separator));
+		}
+	}
+
+	private Attributes put(final String key, final Attributes value) {
+		if (attributes.size() >= maxEntries) {
+			// Rather than tracking ages, just start over; a full cache only happens during large directory scans
+			attributes.clear();
+		}
+		attributes.put(key, value);
+		return value;
+	}
+
+	Attributes putDirectory(final String key, final long creationTime, final long lastAccessTime, final long lastWriteTime) {
+		return put(key, new Attributes(true, true, 0L, creationTime, lastAccessTime, lastWriteTime, System.nanoTime()
+			+ timeToLive));
+	}
+
+	Attributes putFile(final String key, final long fileSize, final long creationTime, final long lastAccessTime,
+		final long lastWriteTime) {
+		return put(key, new Attributes(true, false, fileSize, creationTime, lastAccessTime, lastWriteTime, System.nanoTime()
+			+ timeToLive));
+	}
+
+	Attributes putMissing(final String key) {
+		return put(key, new Attributes(false, false, 0L, 0L, 0L, 0L, System.nanoTime() + timeToLive));
+	}
+}
@@ -6,7 +6,6 @@ import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 import net.decasdev.dokan.ByHandleFileInformation;
 import net.decasdev.dokan.Dokan;
@@ -21,7 +20,6 @@ import net.decasdev.dokan.WinError;
 
 public class DokanUserFS implements DokanOperations, UserFSBackend {
 	private static final AtomicInteger volumeSerialNumber = new AtomicInteger(1337);
-	private final AtomicLong currentFileHandle = new AtomicLong(0);
 	private String mountPoint = null;
 	private final int serialNumber = volumeSerialNumber.incrementAndGet();
 	private UserFS userFS = null;
@@ -29,14 +27,14 @@ public class DokanUserFS implements DokanOperations, UserFSBackend {
 	@Override
 	public final void onCleanup(final String fileName, final DokanFileInfo fileInfo) throws DokanOperationException {
 		if (userFS.shouldLog()) {
-			userFS.implLog("Cleanup", "Clean up: " + fileName);
+			userFS.implLog("Cleanup: Clean up: {}", fileName);
 		}
 		// Do nothing
 	}
 
 	@Override
 	public final void onCloseFile(final String fileName, final DokanFileInfo fileInfo) throws DokanOperationException {
-		userFS._closeFile(fileName);
+		userFS._closeFile(fileInfo.handle, fileName);
 	}
 
 	@Override
@@ -49,10 +47,11 @@ public class DokanUserFS implements DokanOperations, UserFSBackend {
 		final int creationDisposition, final int flagsAndAttributes, final DokanFileInfo fileInfo)
 		throws DokanOperationException {
 		final FileCreationFlags disposition = FileCreationFlags.fromDokan(creationDisposition);
-		if (!userFS._createFile(fileName, disposition)) {
+		final long handle = userFS._openFile(fileName, disposition);
+		if (handle == 0L) {
 			throw new DokanOperationException(ERROR_FILE_NOT_FOUND);
 		}
-		return currentFileHandle.incrementAndGet();
+		return handle;
 	}
 
 	@Override
@@ -89,7 +88,7 @@ public class DokanUserFS implements DokanOperations, UserFSBackend {
 	public final Win32FindData[] onFindFilesWithPattern(final String pathName, final String searchPattern,
 		final DokanFileInfo fileInfo) throws DokanOperationException {
 		if (userFS.shouldLog()) {
-			userFS.implLog("FindFilesWithPattern", "Find files in: " + pathName + " with pattern " + searchPattern);
+			userFS.implLog("FindFilesWithPattern: Find files in: {} with pattern {}", pathName, searchPattern);
 		}
 		// Unimplemented
 		return null;
@@ -108,7 +107,7 @@ public class DokanUserFS implements DokanOperations, UserFSBackend {
 	@Override
 	public final ByHandleFileInformation onGetFileInformation(final String fileName, final DokanFileInfo fileInfo)
 		throws DokanOperationException {
-		final FileInfo info = userFS._getFileInfo(fileName);
+		final FileInfo info = userFS._getFileInfo(fileInfo.handle, fileName);
 		if (info == null) {
 			throw new DokanOperationException(WinError.ERROR_FILE_NOT_FOUND);
 		}
@@ -119,7 +118,7 @@ public class DokanUserFS implements DokanOperations, UserFSBackend {
 	public final DokanVolumeInformation onGetVolumeInformation(final String volumeName, final DokanFileInfo fileInfo)
 		throws DokanOperationException {
 		if (userFS.shouldLog()) {
-			userFS.implLog("GetVolumeInformation", "Get volume information");
+			userFS.implLog("GetVolumeInformation: Get volume information");
 		}
 		return new DokanVolumeInformation(userFS.getVolumeName(), userFS.getFilesystemName(),
 			userFS.getMaximumComponentLength(), serialNumber);
@@ -140,28 +139,29 @@ public class DokanUserFS implements DokanOperations, UserFSBackend {
 	@Override
 	public final long onOpenDirectory(final String fileName, final DokanFileInfo fileInfo) throws DokanOperationException {
 		if (userFS.shouldLog()) {
-			userFS.implLog("OpenDirectory", "Open directory: " + fileName);
+			userFS.implLog("OpenDirectory: Open directory: {}", fileName);
 		}
-		return currentFileHandle.incrementAndGet();
+		// Directories carry no open file context
+		return 0L;
 	}
 
 	@Override
 	public final int onReadFile(final String fileName, final ByteBuffer buffer, final long offset, final DokanFileInfo fileInfo)
 		throws DokanOperationException {
-		return userFS._readFile(fileName, buffer, offset);
+		return userFS._readFile(fileInfo.handle, fileName, buffer, offset);
 	}
 
 	@Override
 	public final void onSetEndOfFile(final String fileName, final long length, final DokanFileInfo fileInfo)
 		throws DokanOperationException {
-		userFS._truncateFile(fileName, length);
+		userFS._truncateFile(fileInfo.handle, fileName, length);
 	}
 
 	@Override
 	public final void onSetFileAttributes(final String fileName, final int fileAttributes, final DokanFileInfo fileInfo)
 		throws DokanOperationException {
 		if (userFS.shouldLog()) {
-			userFS.implLog("SetFileAttributes", "Set file attributes: " + fileName + " to " + fileAttributes);
+			userFS.implLog("SetFileAttributes: Set file attributes: {} to {}", fileName, fileAttributes);
 		}
 		// Unimplemented
 	}
@@ -170,8 +170,8 @@ public class DokanUserFS implements DokanOperations, UserFSBackend {
 	public final void onSetFileTime(final String fileName, final long creationTime, final long lastAccessTime,
 		final long lastWriteTime, final DokanFileInfo fileInfo) throws DokanOperationException {
 		if (userFS.shouldLog()) {
-			userFS.implLog("SetFileTime", "Set file time: " + fileName + " to {C: " + creationTime + "; A: " + lastAccessTime
-				+ "; W: " + lastWriteTime + "}");
+			userFS.implLog("SetFileTime: Set file time: {} to {C: {}; A: {}; W: {}}", fileName, creationTime,
+				lastAccessTime, lastWriteTime);
 		}
 		// Unimplemented
 	}
@@ -190,11 +190,11 @@ public class DokanUserFS implements DokanOperations, UserFSBackend {
 	@Override
 	public final int onWriteFile(final String fileName, final ByteBuffer buffer, final long offset, final DokanFileInfo fileInfo)
 		throws DokanOperationException {
-		return userFS._writeFile(fileName, buffer, offset);
+		return userFS._writeFile(fileInfo.handle, fileName, buffer, offset);
 	}
 
 	@Override
-	public boolean userfs_mount(final UserFS userFS, final File mountPoint) {
+	public boolean userfs_mount(final UserFS userFS, final File mountPoint, final MountOptions options) {
 		this.userFS = userFS;
 		this.mountPoint = mountPoint.getAbsolutePath();
 		try {
@@ -203,7 +203,8 @@ public class DokanUserFS implements DokanOperations, UserFSBackend {
 		catch (final Throwable e) {
 			// Too bad
 		}
-		final DokanOptions dokanOptions = new DokanOptions(this.mountPoint, 0, 0);
+		// A thread count of 0 lets Dokan pick its default
+		final DokanOptions dokanOptions = new DokanOptions(this.mountPoint, options.isMultithreaded() ? 0 : 1, 0);
 		final int result = Dokan.mount(dokanOptions, this);
 		return result == Dokan.DOKAN_SUCCESS;
 	}
@@ -0,0 +1,188 @@
+package net.srcdemo.userfs;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache of the channels LoopbackFS reads and writes backing files through. Entries are reference-counted: every open file
+ * holds a reference for as long as it is open, and every path-based operation holds one while it runs. A channel is only
+ * opened on first use, and is closed once the last open file releases it. Channels used without being opened stay cached
+ * while idle, up to a maximum number of open channels past which the least recently used idle ones are closed.
+ */
+final class FileChannelCache {
+	final class Entry {
+		private volatile FileChannel channel = null;
+		private final File file;
+		private final String key;
+		private volatile long lastUse;
+		private int references = 0;
+		private boolean removed = false;
+
+		private Entry(final String key, final File file) {
+			this.key = key;
+			this.file = file;
+		}
+
+		/**
+		 * Must only be called while holding a reference to this entry.
+		 * 
+		 * @return The channel of this entry, or null if the file doesn't exist or couldn't be opened.
+		 */
+		FileChannel getChannel() {
+			FileChannel current = channel;
+			if (current != null) {
+				return current;
+			}
+			synchronized (this) {
+				if (channel == null) {
+					if (!file.exists()) {
+						return null;
+					}
+					try {
+						@SuppressWarnings("resource")
+						final FileChannel opened = new RandomAccessFile(file, "rw").getChannel();
+						channel = opened;
+					}
+					catch (final FileNotFoundException e) {
+						System.err.println("Unable to open handle to file: " + file);
+						e.printStackTrace();
+						return null;
+					}
+					openChannels.incrementAndGet();
+				}
+				current = channel;
+			}
+			if (openChannels.get() > maxOpenChannels) {
+				closeIdleChannels();
+			}
+			return current;
+		}
+
+		File getFile() {
+			return file;
+		}
+
+		String getKey() {
+			return key;
+		}
+
+		/**
+		 * Close the channel and drop the entry from the cache. Must be called while synchronized on the entry.
+		 */
+		private void remove() {
+			removed = true;
+			entries.remove(key, this);
+			if (channel != null) {
+				closeChannel(channel, file);
+				channel = null;
+				openChannels.decrementAndGet();
+			}
+		}
+	}
+
+	private static void closeChannel(final FileChannel channel, final File file) {
+		try {
+			channel.close();
+		}
+		catch (final IOException e) {
+			System.err.println("Error while closing handle: " + file);
+			e.printStackTrace();
+		}
+	}
+
+	private final ConcurrentHashMap<String, Entry> entries;
+	private final int maxOpenChannels;
+	private final AtomicInteger openChannels = new AtomicInteger(0);
+
+	FileChannelCache(final int maxOpenChannels, final int concurrencyLevel) {
+		this.maxOpenChannels = maxOpenChannels;
+		entries = new ConcurrentHashMap<String, Entry>(maxOpenChannels, 0.75f, concurrencyLevel);
+	}
+
+	/**
+	 * Get the entry of the given file and take a reference to it. The reference must be given back through
+	 * {@link #release(Entry, boolean)}.
+	 */
+	Entry acquire(final String key, final File file) {
+		while (true) {
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				final Entry created = new Entry(key, file);
+				entry = entries.putIfAbsent(key, created);
+				if (entry == null) {
+					entry = created;
+				}
+			}
+			synchronized (entry) {
+				// A removed entry is being dropped from the map; just try again
+				if (!entry.removed) {
+					entry.references++;
+					entry.lastUse = System.nanoTime();
+					return entry;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Close channels which aren't referenced, starting with the least recently used, until no more than the maximum number of
+	 * channels is open.
+	 */
+	private void closeIdleChannels() {
+		while (openChannels.get() > maxOpenChannels) {
+			Entry oldest = null;
+			for (final Entry entry : entries.values()) {
+				if (entry.channel != null && (oldest == null || entry.lastUse < oldest.lastUse)) {
+					synchronized (entry) {
+						if (entry.references == 0) {
+							oldest = entry;
+						}
+					}
+				}
+			}
+			if (oldest == null) {
+				return;
+			}
+			synchronized (oldest) {
+				if (oldest.references == 0 && !oldest.removed) {
+					oldest.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Close the channel of the given file if nobody uses it, such as before the file gets deleted or renamed.
+	 */
+	void evict(final String key) {
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+			synchronized (entry) {
+				if (entry.references == 0 && !entry.removed) {
+					entry.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Give back a reference to an entry.
+	 * 
+	 * @param close
+	 *            Whether to close the channel if this was the last reference (when an open file is closed), or to keep it
+	 *            cached (after a path-based operation).
+	 */
+	void release(final Entry entry, final boolean close) {
+		synchronized (entry) {
+			entry.references--;
+			if (entry.references == 0 && (close || entry.channel == null)) {
+				entry.remove();
+			}
+		}
+	}
+}
@@ -2,7 +2,9 @@ package net.srcdemo.userfs;
 
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import net.fusejna.DirectoryFiller;
 import net.fusejna.ErrorCodes;
@@ -16,11 +18,16 @@ import net.fusejna.util.FuseFilesystemAdapterFull;
 
 public final class FuseUserFS extends FuseFilesystemAdapterFull implements UserFSBackend {
 	private static final long fakeBlockSize = 4096L;
+	private MountOptions options = null;
 	private UserFS userFS = null;
 
 	@Override
 	public int create(final String path, final ModeWrapper mode, final FileInfoWrapper info) {
-		userFS._createFile(path, FileCreationFlags.CREATE_ALWAYS);
+		final long handle = userFS._openFile(path, FileCreationFlags.CREATE_ALWAYS);
+		if (handle == 0L) {
+			return -ErrorCodes.EIO;
+		}
+		info.fh(handle);
 		return 0;
 	}
 
@@ -29,6 +36,23 @@ public final class FuseUserFS extends FuseFilesystemAdapterFull implements UserF
 		userFS._onUnmount();
 	}
 
+	@Override
+	public int fgetattr(final String path, final StatWrapper stat, final FileInfoWrapper info) {
+		final long handle = info.fh();
+		if (handle == 0L) {
+			return getattr(path, stat);
+		}
+		return fillStat(userFS._getFileInfo(handle, path), stat);
+	}
+
+	private int fillStat(final FileInfo info, final StatWrapper stat) {
+		if (info == null) {
+			return -ErrorCodes.ENOENT;
+		}
+		stat.setMode(info.isDirectory() ? NodeType.DIRECTORY : NodeType.FILE).size(info.getSize());
+		return 0;
+	}
+
 	@Override
 	public int flush(final String path, final FileInfoWrapper info) {
 		userFS._flushFile(path);
@@ -37,11 +61,7 @@ public final class FuseUserFS extends FuseFilesystemAdapterFull implements UserF
 
 	@Override
 	public int getattr(final String path, final StatWrapper stat) {
-		final FileInfo info = userFS._getFileInfo(path);
-		if (info != null) {
-			stat.setMode(info.isDirectory() ? NodeType.DIRECTORY : NodeType.FILE).size(info.getSize());
-		}
-		return info == null ? -ErrorCodes.ENOENT : 0;
+		return fillStat(userFS._getFileInfo(path), stat);
 	}
 
 	@Override
@@ -49,6 +69,31 @@ public final class FuseUserFS extends FuseFilesystemAdapterFull implements UserF
 		return userFS.getFilesystemName() + "-" + userFS.getVolumeName();
 	}
 
+	@Override
+	protected String[] getOptions() {
+		if (options == null) {
+			return null;
+		}
+		final List<String> args = new ArrayList<String>();
+		if (!options.isMultithreaded()) {
+			args.add("-s");
+		}
+		final StringBuilder mountOptions = new StringBuilder();
+		mountOptions.append("max_write=").append(options.getMaxWrite());
+		mountOptions.append(",attr_timeout=").append(options.getAttributeTimeout());
+		mountOptions.append(",entry_timeout=").append(options.getEntryTimeout());
+		// big_writes is gone from libfuse 3, the only one writeback_cache works with
+		if (options.hasBigWrites() && !options.hasWritebackCache()) {
+			mountOptions.append(",big_writes");
+		}
+		if (options.hasWritebackCache()) {
+			mountOptions.append(",writeback_cache");
+		}
+		args.add("-o");
+		args.add(mountOptions.toString());
+		return args.toArray(new String[args.size()]);
+	}
+
 	@Override
 	public int mkdir(final String path, final ModeWrapper mode) {
 		userFS._createDirectory(path);
@@ -57,13 +102,17 @@ public final class FuseUserFS extends FuseFilesystemAdapterFull implements UserF
 
 	@Override
 	public int open(final String path, final FileInfoWrapper info) {
-		userFS._createFile(path, FileCreationFlags.OPEN_EXISTING);
+		final long handle = userFS._openFile(path, FileCreationFlags.OPEN_EXISTING);
+		if (handle == 0L) {
+			return -ErrorCodes.ENOENT;
+		}
+		info.fh(handle);
 		return 0;
 	}
 
 	@Override
 	public int read(final String path, final ByteBuffer buffer, final long size, final long offset, final FileInfoWrapper info) {
-		return userFS._readFile(path, buffer, offset);
+		return userFS._readFile(info.fh(), path, buffer, offset);
 	}
 
 	@Override
@@ -77,7 +126,7 @@ public final class FuseUserFS extends FuseFilesystemAdapterFull implements UserF
 
 	@Override
 	public int release(final String path, final FileInfoWrapper info) {
-		userFS._closeFile(path);
+		userFS._closeFile(info.fh(), path);
 		return 0;
 	}
 
@@ -113,8 +162,9 @@ public final class FuseUserFS extends FuseFilesystemAdapterFull implements UserF
 	}
 
 	@Override
-	public boolean userfs_mount(final UserFS userFS, final File mountPoint) {
+	public boolean userfs_mount(final UserFS userFS, final File mountPoint, final MountOptions options) {
 		this.userFS = userFS;
+		this.options = options;
 		try {
 			mount(mountPoint, true);
 		}
@@ -138,6 +188,6 @@ public final class FuseUserFS extends FuseFilesystemAdapterFull implements UserF
 	@Override
 	public int write(final String path, final ByteBuffer buf, final long bufSize, final long writeOffset,
 		final FileInfoWrapper info) {
-		return userFS._writeFile(path, buf, writeOffset);
+		return userFS._writeFile(info.fh(), path, buf, writeOffset);
 	}
 }
@@ -1,22 +1,23 @@
 package net.srcdemo.userfs;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
 
 import net.srcdemo.SrcLogger;
 
 public class LoopbackFS extends UserFS {
+	private static final long attributeCacheTimeout = 1000L;
+	private static final int cacheConcurrency = 16;
+	private static final int maxCachedAttributes = 4096;
+	private static final int maxOpenChannels = 256;
+
 	public static void main(final String... args) {
 		if (args.length != 2) {
 			System.err.println("Usage: loopbackfs backingDirectory mountpoint");
@@ -34,9 +35,10 @@ public class LoopbackFS extends UserFS {
 		new LoopbackFS(args[0]).mount(new File(args[1]), true);
 	}
 
+	private final AttributeCache attributes = new AttributeCache(attributeCacheTimeout, maxCachedAttributes, cacheConcurrency);
 	private final File backingStorage;
-	private final ReentrantLock filesHandleLock = new ReentrantLock();
-	private final Map<File, FileChannel> openedFiles = new HashMap<File, FileChannel>();
+	private final boolean caseInsensitive = UserFSUtils.getOperatingSystem().isWindows();
+	private final FileChannelCache channels = new FileChannelCache(maxOpenChannels, cacheConcurrency);
 
 	protected LoopbackFS(final File backingStorage) {
 		this.backingStorage = backingStorage;
@@ -52,26 +54,28 @@ public class LoopbackFS extends UserFS {
 		this(new File(storageFolder));
 	}
 
+	private FileChannelCache.Entry acquireChannel(final String fileName) {
+		return channels.acquire(getPathKey(fileName), getBackedFile(fileName));
+	}
+
 	@Override
-	protected void closeFile(final String fileName) {
-		filesHandleLock.lock();
-		final FileChannel handle = getFileHandle(fileName, false);
-		if (handle != null) {
-			try {
-				handle.close();
-			}
-			catch (final IOException e) {
-				System.err.println("Error while closing handle: " + fileName);
-				e.printStackTrace();
-			}
-			openedFiles.remove(getBackedFile(fileName));
+	protected void closeFile(final Object context, final String fileName) {
+		if (context instanceof FileChannelCache.Entry) {
+			channels.release((FileChannelCache.Entry) context, true);
+		} else {
+			super.closeFile(context, fileName);
 		}
-		filesHandleLock.unlock();
+	}
+
+	@Override
+	protected void closeFile(final String fileName) {
+		channels.evict(getPathKey(fileName));
 	}
 
 	@Override
 	protected void createDirectory(final String fileName) {
 		getBackedFile(fileName).mkdirs();
+		attributes.invalidateWithParent(getPathKey(fileName));
 	}
 
 	@Override
@@ -79,6 +83,7 @@ public class LoopbackFS extends UserFS {
 		if (creation.shouldCreate()) {
 			try {
 				getBackedFile(fileName).createNewFile();
+				attributes.invalidateWithParent(getPathKey(fileName));
 			}
 			catch (final IOException e) {
 				System.err.println("Error in file creation: " + fileName);
@@ -95,12 +100,18 @@ public class LoopbackFS extends UserFS {
 
 	@Override
 	protected void deleteDirectory(final String fileName) {
+		final String key = getPathKey(fileName);
+		channels.evict(key);
 		getBackedFile(fileName).delete();
+		attributes.invalidateWithParent(key);
 	}
 
 	@Override
 	protected void deleteFile(final String fileName) {
+		final String key = getPathKey(fileName);
+		channels.evict(key);
 		getBackedFile(fileName).delete();
+		attributes.invalidateWithParent(key);
 	}
 
 	@Override
@@ -116,53 +127,38 @@ public class LoopbackFS extends UserFS {
 		return backingStorage;
 	}
 
-	private FileChannel getFileHandle(final File backing, final boolean open) {
-		filesHandleLock.lock();
-		if (!openedFiles.containsKey(backing)) {
-			if (!open || !backing.exists()) {
-				filesHandleLock.unlock();
-				return null;
-			}
-			try {
-				@SuppressWarnings("resource")
-				final FileChannel handle = new RandomAccessFile(backing, "rw").getChannel();
-				openedFiles.put(backing, handle);
-			}
-			catch (final FileNotFoundException e) {
-				System.err.println("Unable to open handle to file: " + backing);
-				e.printStackTrace();
-			}
-		}
-		final FileChannel handle = openedFiles.get(backing);
-		filesHandleLock.unlock();
-		return handle;
-	}
-
-	private FileChannel getFileHandle(final String fileName, final boolean open) {
-		return getFileHandle(getBackedFile(fileName), open);
+	private String getPathKey(final String fileName) {
+		return caseInsensitive ? fileName.toLowerCase() : fileName;
 	}
 
 	@Override
 	protected FileInfo getFileInfo(final String fileName) {
+		final String key = getPathKey(fileName);
+		final AttributeCache.Attributes cached = attributes.get(key);
+		if (cached != null) {
+			return cached.toFileInfo(fileName);
+		}
 		final File backing = getBackedFile(fileName);
-		long createTime = 0L;
-		long lastAccess = 0L;
-		final long lastWrite = backing.lastModified();
+		final BasicFileAttributes attr;
 		try {
-			final BasicFileAttributes attr = Files.readAttributes(backing.toPath(), BasicFileAttributes.class);
-			createTime = attr.creationTime().toMillis();
-			lastAccess = attr.lastAccessTime().toMillis();
+			attr = Files.readAttributes(backing.toPath(), BasicFileAttributes.class);
+		}
+		catch (final NoSuchFileException e) {
+			return attributes.putMissing(key).toFileInfo(fileName);
 		}
 		catch (final IOException e) {
 			System.err.println("Failed to obtain file attributes for file: " + backing);
 			return null;
 		}
-		if (backing.isDirectory()) {
-			return FileInfo.fromDirectory(fileName, createTime, lastAccess, lastWrite);
-		} else if (backing.isFile()) {
-			return FileInfo.fromFile(fileName, backing.length(), createTime, lastAccess, lastWrite);
+		final long createTime = attr.creationTime().toMillis();
+		final long lastAccess = attr.lastAccessTime().toMillis();
+		final long lastWrite = attr.lastModifiedTime().toMillis();
+		if (attr.isDirectory()) {
+			return attributes.putDirectory(key, createTime, lastAccess, lastWrite).toFileInfo(fileName);
+		} else if (attr.isRegularFile()) {
+			return attributes.putFile(key, attr.size(), createTime, lastAccess, lastWrite).toFileInfo(fileName);
 		}
-		return null;
+		return attributes.putMissing(key).toFileInfo(fileName);
 	}
 
 	@Override
@@ -206,14 +202,30 @@ public class LoopbackFS extends UserFS {
 		if (newFile.exists() && !replaceExisiting) {
 			return;
 		}
+		final String existingKey = getPathKey(existingFileName);
+		final String newKey = getPathKey(newFileName);
+		channels.evict(existingKey);
+		channels.evict(newKey);
 		getBackedFile(existingFileName).renameTo(newFile);
+		attributes.invalidateWithParent(existingKey);
+		attributes.invalidateWithParent(newKey);
 	}
 
 	@Override
-	protected int readFile(final String fileName, final ByteBuffer buffer, final long offset) {
-		final File backed = getBackedFile(fileName);
+	protected Object openFile(final String fileName, final FileCreationFlags flags) {
+		if (!createFile(fileName, flags)) {
+			return null;
+		}
+		return acquireChannel(fileName);
+	}
+
+	private int readFile(final FileChannelCache.Entry entry, final String fileName, final ByteBuffer buffer, final long offset) {
+		final FileChannel channel = entry.getChannel();
+		if (channel == null) {
+			return 0;
+		}
 		try {
-			return getFileHandle(backed, true).read(buffer, offset);
+			return channel.read(buffer, offset);
 		}
 		catch (final Exception e) {
 			System.err.println("Error reading file: " + fileName);
@@ -223,9 +235,29 @@ public class LoopbackFS extends UserFS {
 	}
 
 	@Override
-	protected void truncateFile(final String fileName, final long length) {
+	protected int readFile(final Object context, final String fileName, final ByteBuffer buffer, final long offset) {
+		if (context instanceof FileChannelCache.Entry) {
+			return readFile((FileChannelCache.Entry) context, fileName, buffer, offset);
+		}
+		return super.readFile(context, fileName, buffer, offset);
+	}
+
+	@Override
+	protected int readFile(final String fileName, final ByteBuffer buffer, final long offset) {
+		final FileChannelCache.Entry entry = acquireChannel(fileName);
+		final int read = readFile(entry, fileName, buffer, offset);
+		channels.release(entry, false);
+		return read;
+	}
+
+	private void truncateFile(final FileChannelCache.Entry entry, final String fileName, final long length) {
+		final FileChannel channel = entry.getChannel();
+		if (channel == null) {
+			return;
+		}
 		try {
-			getFileHandle(fileName, true).truncate(length);
+			channel.truncate(length);
+			attributes.invalidate(entry.getKey());
 		}
 		catch (final IOException e) {
 			System.err.println("Error truncating file: " + fileName);
@@ -234,10 +266,30 @@ public class LoopbackFS extends UserFS {
 	}
 
 	@Override
-	protected int writeFile(final String fileName, final ByteBuffer buffer, final long offset) {
-		final File backed = getBackedFile(fileName);
+	protected void truncateFile(final Object context, final String fileName, final long length) {
+		if (context instanceof FileChannelCache.Entry) {
+			truncateFile((FileChannelCache.Entry) context, fileName, length);
+		} else {
+			super.truncateFile(context, fileName, length);
+		}
+	}
+
+	@Override
+	protected void truncateFile(final String fileName, final long length) {
+		final FileChannelCache.Entry entry = acquireChannel(fileName);
+		truncateFile(entry, fileName, length);
+		channels.release(entry, false);
+	}
+
+	private int writeFile(final FileChannelCache.Entry entry, final String fileName, final ByteBuffer buffer, final long offset) {
+		final FileChannel channel = entry.getChannel();
+		if (channel == null) {
+			return 0;
+		}
 		try {
-			return getFileHandle(backed, true).write(buffer, offset);
+			final int written = channel.write(buffer, offset);
+			attributes.invalidate(entry.getKey());
+			return written;
 		}
 		catch (final IOException e) {
 			System.err.println("Error writing file: " + fileName);
@@ -245,4 +297,20 @@ public class LoopbackFS extends UserFS {
 		}
 		return 0;
 	}
+
+	@Override
+	protected int writeFile(final Object context, final String fileName, final ByteBuffer buffer, final long offset) {
+		if (context instanceof FileChannelCache.Entry) {
+			return writeFile((FileChannelCache.Entry) context, fileName, buffer, offset);
+		}
+		return super.writeFile(context, fileName, buffer, offset);
+	}
+
+	@Override
+	protected int writeFile(final String fileName, final ByteBuffer buffer, final long offset) {
+		final FileChannelCache.Entry entry = acquireChannel(fileName);
+		final int written = writeFile(entry, fileName, buffer, offset);
+		channels.release(entry, false);
+		return written;
+	}
 }
@@ -0,0 +1,150 @@
+package net.srcdemo.userfs;
+
+import java.io.File;
+
+/**
+ * Tuning options used when mounting a {@link UserFS}. Not every backend supports every option; unsupported ones are ignored.
+ * The defaults are the usual FUSE values rather than benchmarked ones: they could only be measured behind a kernel mount.
+ */
+public final class MountOptions {
+	public static final double defaultAttributeTimeout = 1.0d;
+	public static final boolean defaultBigWrites = true;
+	public static final double defaultEntryTimeout = 1.0d;
+	/**
+	 * The most kernels before 4.20 send in one FUSE write.
+	 */
+	public static final int defaultMaxWrite = 128 * 1024;
+	public static final boolean defaultMultithreaded = true;
+	public static final boolean defaultWritebackCache = false;
+	private static volatile MountOptions defaults = new MountOptions();
+
+	/**
+	 * @return The options used by {@link UserFS#mount(java.io.File, boolean)}.
+	 */
+	public static MountOptions getDefault() {
+		return defaults;
+	}
+
+	public static void setDefault(final MountOptions options) {
+		defaults = options;
+	}
+
+	private double attributeTimeout = defaultAttributeTimeout;
+	private boolean bigWrites = defaultBigWrites;
+	private double entryTimeout = defaultEntryTimeout;
+	private int maxWrite = defaultMaxWrite;
+	private boolean multithreaded = defaultMultithreaded;
+	private boolean traceData = false;
+	private File traceFile = null;
+	private boolean writebackCache = defaultWritebackCache;
+
+	/**
+	 * @return Time in seconds for which the kernel may cache file attributes.
+	 */
+	public double getAttributeTimeout() {
+		return attributeTimeout;
+	}
+
+	/**
+	 * @return Time in seconds for which the kernel may cache name lookups.
+	 */
+	public double getEntryTimeout() {
+		return entryTimeout;
+	}
+
+	/**
+	 * @return Maximum size in bytes of a single write request.
+	 */
+	public int getMaxWrite() {
+		return maxWrite;
+	}
+
+	/**
+	 * @return File to record a trace of all filesystem operations into, or null to not record any.
+	 */
+	public File getTraceFile() {
+		return traceFile;
+	}
+
+	/**
+	 * @return Whether writes larger than a page are allowed; required for {@link #getMaxWrite()} to matter on libfuse 2.
+	 *         libfuse 3 always allows them and no longer knows the option, so it is left out along with
+	 *         {@link #hasWritebackCache()}.
+	 */
+	public boolean hasBigWrites() {
+		return bigWrites;
+	}
+
+	/**
+	 * @return Whether the trace stores all written data, rather than only the start of each file.
+	 */
+	public boolean hasTraceData() {
+		return traceData;
+	}
+
+	/**
+	 * @return Whether the kernel may cache writes and send them in larger batches. Only libfuse 3 knows this option: libfuse 2
+	 *         refuses to mount with it, and Dokan ignores it.
+	 */
+	public boolean hasWritebackCache() {
+		return writebackCache;
+	}
+
+	/**
+	 * @return Whether requests are serviced by several threads at once.
+	 */
+	public boolean isMultithreaded() {
+		return multithreaded;
+	}
+
+	public MountOptions setAttributeTimeout(final double attributeTimeout) {
+		this.attributeTimeout = attributeTimeout;
+		return this;
+	}
+
+	public MountOptions setBigWrites(final boolean bigWrites) {
+		this.bigWrites = bigWrites;
+		return this;
+	}
+
+	public MountOptions setEntryTimeout(final double entryTimeout) {
+		this.entryTimeout = entryTimeout;
+		return this;
+	}
+
+	public MountOptions setMaxWrite(final int maxWrite) {
+		this.maxWrite = maxWrite;
+		return this;
+	}
+
+	public MountOptions setMultithreaded(final boolean multithreaded) {
+		this.multithreaded = multithreaded;
+		return this;
+	}
+
+	public MountOptions setTraceData(final boolean traceData) {
+		this.traceData = traceData;
+		return this;
+	}
+
+	public MountOptions setTraceFile(final File traceFile) {
+		this.traceFile = traceFile;
+		return this;
+	}
+
+	/**
+	 * Let the kernel cache writes and send them in larger batches. Only libfuse 3 knows this option: libfuse 2 refuses to
+	 * mount with it, and Dokan ignores it.
+	 */
+	public MountOptions setWritebackCache(final boolean writebackCache) {
+		this.writebackCache = writebackCache;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "MountOptions(maxWrite=" + maxWrite + ", bigWrites=" + bigWrites + ", multithreaded=" + multithreaded
+			+ ", attributeTimeout=" + attributeTimeout + ", entryTimeout=" + entryTimeout + ", writebackCache="
+			+ writebackCache + (traceFile == null ? "" : ", trace=" + traceFile) + ")";
+	}
+}
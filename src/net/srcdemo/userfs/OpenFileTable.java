@@ -0,0 +1,60 @@
+package net.srcdemo.userfs;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Maps the numeric handles given to the FUSE/Dokan layer back to the context object of each open file. Handles are slot
+ * indices (offset by one, so 0 never is a valid handle), which makes lookups a single array read. Opening and closing files
+ * is synchronized, looking up a handle is not.
+ */
+final class OpenFileTable {
+	private static final int initialCapacity = 64;
+	private int[] freeSlots = new int[initialCapacity];
+	private int freeSlotCount = 0;
+	private int nextSlot = 0;
+	private volatile AtomicReferenceArray<Object> slots = new AtomicReferenceArray<Object>(initialCapacity);
+
+	synchronized long add(final Object context) {
+		int slot;
+		if (freeSlotCount > 0) {
+			freeSlotCount--;
+			slot = freeSlots[freeSlotCount];
+		} else {
+			slot = nextSlot++;
+			if (slot == slots.length()) {
+				final AtomicReferenceArray<Object> grown = new AtomicReferenceArray<Object>(slot * 2);
+				for (int i = 0; i < slot; i++) {
+					grown.set(i, slots.get(i));
+				}
+				slots = grown;
+			}
+		}
+		slots.set(slot, context);
+		return slot + 1L;
+	}
+
+	Object get(final long handle) {
+		final AtomicReferenceArray<Object> current = slots;
+		if (handle <= 0 || handle > current.length()) {
+			return null;
+		}
+		return current.get((int) (handle - 1));
+	}
+
+	synchronized Object remove(final long handle) {
+		if (handle <= 0 || handle > nextSlot) {
+			return null;
+		}
+		final int slot = (int) (handle - 1);
+		final Object context = slots.getAndSet(slot, null);
+		if (context != null) {
+			if (freeSlotCount == freeSlots.length) {
+				final int[] grown = new int[freeSlots.length * 2];
+				System.arraycopy(freeSlots, 0, grown, 0, freeSlotCount);
+				freeSlots = grown;
+			}
+			freeSlots[freeSlotCount++] = slot;
+		}
+		return context;
+	}
+}
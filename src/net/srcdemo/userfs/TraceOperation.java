@@ -0,0 +1,17 @@
+package net.srcdemo.userfs;
+
+/**
+ * Operations stored in filesystem traces. Traces store the ordinal, so new operations must only ever be added at the end.
+ */
+enum TraceOperation {
+	PATH, OPEN, CLOSE, READ, WRITE, TRUNCATE, GET_INFO, LIST, CREATE_DIRECTORY, DELETE_FILE, DELETE_DIRECTORY, MOVE, FLUSH,
+	LOCK, UNLOCK;
+	private static final TraceOperation[] values = values();
+
+	static TraceOperation fromOrdinal(final int ordinal) {
+		if (ordinal < 0 || ordinal >= values.length) {
+			return null;
+		}
+		return values[ordinal];
+	}
+}
@@ -0,0 +1,120 @@
+package net.srcdemo.userfs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the operations a {@link UserFS} receives into a binary trace file, which {@link TraceReplayer} can later feed back
+ * into a filesystem.
+ * <p>
+ * The trace starts with a header (magic, version, whether all data is stored, wall-clock start time). Each record then starts
+ * with a {@link TraceOperation} ordinal. {@link TraceOperation#PATH} records assign an id to a path the first time it is
+ * seen; all other records hold the time since the start of the trace, the duration of the operation, the thread, the path
+ * id, the file handle, the offset, the length, the result, and the written data if any. Unless all data is stored, only
+ * writes at offset 0 keep their data, as those hold the file headers; the rest is replayed as zeroes.
+ */
+public final class TraceRecorder {
+	static final int magic = 0x53445452; // "SDTR"
+	private static final int maxBuffer = 1024 * 1024;
+	static final int version = 1;
+	private byte[] dataBuffer = new byte[64 * 1024];
+	private boolean failed = false;
+	private final File file;
+	private final DataOutputStream out;
+	private final Map<String, Integer> pathIds = new HashMap<String, Integer>();
+	private final long startTime;
+	private final boolean storeData;
+
+	public TraceRecorder(final File file, final boolean storeData) throws IOException {
+		this.file = file;
+		this.storeData = storeData;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), maxBuffer));
+		out.writeInt(magic);
+		out.writeInt(version);
+		out.writeBoolean(storeData);
+		out.writeLong(System.currentTimeMillis());
+		startTime = System.nanoTime();
+	}
+
+	public synchronized void close() {
+		if (failed) {
+			return;
+		}
+		failed = true;
+		try {
+			out.close();
+		}
+		catch (final IOException e) {
+			System.err.println("Error while closing trace: " + file);
+			e.printStackTrace();
+		}
+	}
+
+	private int getPathId(final String path) throws IOException {
+		if (path == null) {
+			return -1;
+		}
+		final Integer id = pathIds.get(path);
+		if (id != null) {
+			return id;
+		}
+		final int newId = pathIds.size();
+		pathIds.put(path, newId);
+		out.writeByte(TraceOperation.PATH.ordinal());
+		out.writeInt(newId);
+		out.writeUTF(path);
+		return newId;
+	}
+
+	/**
+	 * @param start
+	 *            {@link System#nanoTime()} when the operation started.
+	 * @param otherPath
+	 *            Destination of a move, stored as a path id in place of the offset.
+	 * @param data
+	 *            Data of a write, starting at its position, or null.
+	 */
+	synchronized void record(final TraceOperation operation, final long start, final String path, final String otherPath,
+		final long handle, final long offset, final int length, final int result, final ByteBuffer data) {
+		if (failed) {
+			return;
+		}
+		final long end = System.nanoTime();
+		try {
+			final int pathId = getPathId(path);
+			final long storedOffset = otherPath == null ? offset : getPathId(otherPath);
+			out.writeByte(operation.ordinal());
+			out.writeLong(start - startTime);
+			out.writeLong(end - start);
+			out.writeLong(Thread.currentThread().getId());
+			out.writeInt(pathId);
+			out.writeLong(handle);
+			out.writeLong(storedOffset);
+			out.writeInt(length);
+			out.writeInt(result);
+			if (operation == TraceOperation.WRITE) {
+				if (data != null && result > 0 && (storeData || offset == 0L)) {
+					if (dataBuffer.length < result) {
+						dataBuffer = new byte[result];
+					}
+					data.get(dataBuffer, 0, result);
+					out.writeInt(result);
+					out.write(dataBuffer, 0, result);
+				} else {
+					out.writeInt(0);
+				}
+			}
+		}
+		catch (final IOException e) {
+			System.err.println("Error while writing trace, tracing stopped: " + file);
+			e.printStackTrace();
+			close();
+		}
+	}
+}
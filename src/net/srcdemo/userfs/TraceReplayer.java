@@ -0,0 +1,240 @@
+package net.srcdemo.userfs;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feeds a trace recorded by {@link TraceRecorder} back into a filesystem, one operation at a time in recorded order, and
+ * measures how long each operation takes.
+ */
+public final class TraceReplayer {
+	private static final class OperationStatistics {
+		private int count = 0;
+		private long[] latencies = new long[256];
+		private long recordedTotal = 0L;
+		private long total = 0L;
+
+		private void add(final long latency, final long recordedLatency) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = latency;
+			total += latency;
+			recordedTotal += recordedLatency;
+		}
+
+		private double getPercentile(final long[] sorted, final double percentile) {
+			return sorted[Math.min(count - 1, (int) (count * percentile))] / 1000d;
+		}
+
+		private void print(final PrintStream out, final TraceOperation operation) {
+			final long[] sorted = Arrays.copyOf(latencies, count);
+			Arrays.sort(sorted);
+			out.println(String.format("%-16s %9d %11.1f %11.1f %11.1f %11.1f %11.1f", operation, count, total / 1000d / count,
+				getPercentile(sorted, 0.5d), getPercentile(sorted, 0.99d), sorted[count - 1] / 1000d, recordedTotal / 1000d
+					/ count));
+		}
+	}
+
+	private final File file;
+
+	public TraceReplayer(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return A buffer with its limit set to the given length; newly allocated buffers are zeroed.
+	 */
+	private ByteBuffer getBuffer(final ByteBuffer buffer, final int length) {
+		if (buffer != null && buffer.capacity() >= length) {
+			buffer.clear();
+			buffer.limit(length);
+			return buffer;
+		}
+		final ByteBuffer newBuffer = ByteBuffer.allocateDirect(Math.max(length, 64 * 1024));
+		newBuffer.limit(length);
+		return newBuffer;
+	}
+
+	/**
+	 * Replay the trace into the given filesystem, then print per-operation latencies (in microseconds) to the given stream.
+	 *
+	 * @param realTime
+	 *            Whether to wait between operations as long as was waited when recording, or to go as fast as possible.
+	 */
+	public void replay(final UserFS fs, final boolean realTime, final PrintStream report) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024 * 1024));
+		if (in.readInt() != TraceRecorder.magic) {
+			in.close();
+			throw new IOException("Not a filesystem trace: " + file);
+		}
+		if (in.readInt() != TraceRecorder.version) {
+			in.close();
+			throw new IOException("Unsupported trace version: " + file);
+		}
+		in.readBoolean(); // Whether all data was stored; records say it for themselves
+		in.readLong(); // Wall-clock start time
+		final List<String> paths = new ArrayList<String>();
+		final Map<Long, Long> handles = new HashMap<Long, Long>();
+		final OperationStatistics[] statistics = new OperationStatistics[TraceOperation.values().length];
+		ByteBuffer dataBuffer = null;
+		byte[] data = new byte[0];
+		ByteBuffer zeroes = null;
+		long bytesWritten = 0L;
+		final long replayStart = System.nanoTime();
+		while (true) {
+			final int ordinal;
+			try {
+				ordinal = in.readUnsignedByte();
+			}
+			catch (final EOFException e) {
+				break;
+			}
+			final TraceOperation operation = TraceOperation.fromOrdinal(ordinal);
+			if (operation == null) {
+				in.close();
+				throw new IOException("Corrupt trace: unknown operation " + ordinal);
+			}
+			if (operation == TraceOperation.PATH) {
+				final int id = in.readInt();
+				final String path = in.readUTF();
+				while (paths.size() <= id) {
+					paths.add(null);
+				}
+				paths.set(id, path);
+				continue;
+			}
+			final long time = in.readLong();
+			final long recordedLatency = in.readLong();
+			in.readLong(); // Thread
+			final int pathId = in.readInt();
+			final long recordedHandle = in.readLong();
+			final long offset = in.readLong();
+			final int length = in.readInt();
+			final int result = in.readInt();
+			int dataLength = 0;
+			if (operation == TraceOperation.WRITE) {
+				dataLength = in.readInt();
+				if (data.length < dataLength) {
+					data = new byte[dataLength];
+				}
+				in.readFully(data, 0, dataLength);
+			}
+			final String path = pathId < 0 ? null : paths.get(pathId);
+			final Long mappedHandle = handles.get(recordedHandle);
+			final long handle = mappedHandle == null ? 0L : mappedHandle;
+			ByteBuffer buffer = null;
+			if (operation == TraceOperation.READ) {
+				buffer = dataBuffer = getBuffer(dataBuffer, length);
+			} else if (operation == TraceOperation.WRITE) {
+				// Only as much as was written; zeroes when the data wasn't stored
+				final int size = Math.max(result, 0);
+				if (dataLength > 0) {
+					buffer = dataBuffer = getBuffer(dataBuffer, size);
+					buffer.put(data, 0, size);
+					buffer.flip();
+				} else {
+					zeroes = getBuffer(zeroes, size);
+					buffer = zeroes.duplicate();
+				}
+			}
+			if (realTime) {
+				final long wait = replayStart + time - System.nanoTime();
+				if (wait > 0L) {
+					try {
+						Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+					}
+					catch (final InterruptedException e) {
+						break;
+					}
+				}
+			}
+			final long start = System.nanoTime();
+			switch (operation) {
+				case OPEN:
+					final long newHandle = fs._openFile(path, FileCreationFlags.values()[length]);
+					if (recordedHandle != 0L && newHandle != 0L) {
+						handles.put(recordedHandle, newHandle);
+					}
+					break;
+				case CLOSE:
+					fs._closeFile(handle, path);
+					handles.remove(recordedHandle);
+					break;
+				case READ:
+					fs._readFile(handle, path, buffer, offset);
+					break;
+				case WRITE:
+					bytesWritten += fs._writeFile(handle, path, buffer, offset);
+					break;
+				case TRUNCATE:
+					if (recordedHandle == 0L) {
+						fs._truncateFile(path, offset);
+					} else {
+						fs._truncateFile(handle, path, offset);
+					}
+					break;
+				case GET_INFO:
+					if (recordedHandle == 0L) {
+						fs._getFileInfo(path);
+					} else {
+						fs._getFileInfo(handle, path);
+					}
+					break;
+				case LIST:
+					fs._listDirectory(path);
+					break;
+				case CREATE_DIRECTORY:
+					fs._createDirectory(path);
+					break;
+				case DELETE_FILE:
+					fs._deleteFile(path);
+					break;
+				case DELETE_DIRECTORY:
+					fs._deleteDirectory(path);
+					break;
+				case MOVE:
+					fs._moveFile(path, paths.get((int) offset), length != 0);
+					break;
+				case FLUSH:
+					fs._flushFile(path);
+					break;
+				case LOCK:
+					fs._lockFile(path, offset, length);
+					break;
+				case UNLOCK:
+					fs._unlockFile(path, offset, length);
+					break;
+				default:
+					break;
+			}
+			final long latency = System.nanoTime() - start;
+			if (statistics[ordinal] == null) {
+				statistics[ordinal] = new OperationStatistics();
+			}
+			statistics[ordinal].add(latency, recordedLatency);
+		}
+		in.close();
+		final long elapsed = System.nanoTime() - replayStart;
+		report.println(String.format("%-16s %9s %11s %11s %11s %11s %11s", "Operation", "Count", "Mean (us)", "p50 (us)",
+			"p99 (us)", "Max (us)", "Recorded"));
+		for (final TraceOperation operation : TraceOperation.values()) {
+			if (statistics[operation.ordinal()] != null) {
+				statistics[operation.ordinal()].print(report, operation);
+			}
+		}
+		report.println(String.format("Replayed in %.3f s; %d bytes written (%.1f MB/s).", elapsed / 1e9d, bytesWritten,
+			bytesWritten / 1048576d / (elapsed / 1e9d)));
+	}
+}
@@ -1,140 +1,280 @@
 package net.srcdemo.userfs;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 
 import net.srcdemo.SrcLogger;
 
 public abstract class UserFS {
+	/**
+	 * Context of open files which need none. Files opened with this context are handled by the path-based methods.
+	 */
+	protected static final Object noContext = new Object();
 	private final UserFSBackend backend;
 	private File mountPoint = null;
+	private final OpenFileTable openFiles = new OpenFileTable();
+	private volatile TraceRecorder trace = null;
 
 	public UserFS() {
 		backend = UserFSUtils.getNewBackend();
 	}
 
-	final void _closeFile(final String fileName) {
+	final void _closeFile(final long handle, final String fileName) {
 		if (shouldLog()) {
-			log("CloseFile", "Close file: " + fileName);
+			log("CloseFile: Close file: {}", fileName);
+		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
+		closeFile(openFiles.remove(handle), fileName);
+		if (recorder != null) {
+			recorder.record(TraceOperation.CLOSE, start, fileName, null, handle, 0L, 0, 0, null);
 		}
-		closeFile(fileName);
 	}
 
 	final void _createDirectory(final String fileName) {
 		if (shouldLog()) {
-			log("CreateDirectory", "Create directory: " + fileName);
+			log("CreateDirectory: Create directory: {}", fileName);
 		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
 		createDirectory(fileName);
+		if (recorder != null) {
+			recorder.record(TraceOperation.CREATE_DIRECTORY, start, fileName, null, 0L, 0L, 0, 0, null);
+		}
 	}
 
-	final boolean _createFile(final String fileName, final FileCreationFlags flags) {
+	/**
+	 * @return Handle of the opened file, to be passed to the handle-taking methods until the file is closed; 0 if the file
+	 * could not be opened.
+	 */
+	final long _openFile(final String fileName, final FileCreationFlags flags) {
 		if (shouldLog()) {
-			log("CreateFile", "Create file: " + fileName + " / Creation flags: " + flags);
+			log("CreateFile: Create file: {} / Creation flags: {}", fileName, flags);
+		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
+		final Object context = openFile(fileName, flags);
+		final long handle = context == null ? 0L : openFiles.add(context);
+		if (recorder != null) {
+			recorder.record(TraceOperation.OPEN, start, fileName, null, handle, 0L, flags.ordinal(), handle == 0L ? 0 : 1, null);
 		}
-		return createFile(fileName, flags);
+		return handle;
 	}
 
 	final void _deleteDirectory(final String fileName) {
 		if (shouldLog()) {
-			log("DeleteDirectory", "Delete directory: " + fileName);
+			log("DeleteDirectory: Delete directory: {}", fileName);
 		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
 		deleteDirectory(fileName);
+		if (recorder != null) {
+			recorder.record(TraceOperation.DELETE_DIRECTORY, start, fileName, null, 0L, 0L, 0, 0, null);
+		}
 	}
 
 	final void _deleteFile(final String fileName) {
 		if (shouldLog()) {
-			log("DeleteFile", "Delete file: " + fileName);
+			log("DeleteFile: Delete file: {}", fileName);
 		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
 		deleteFile(fileName);
+		if (recorder != null) {
+			recorder.record(TraceOperation.DELETE_FILE, start, fileName, null, 0L, 0L, 0, 0, null);
+		}
 	}
 
 	final void _flushFile(final String fileName) {
 		if (shouldLog()) {
-			log("FlushFileBuffer", "Flush file buffer: " + fileName);
+			log("FlushFileBuffer: Flush file buffer: {}", fileName);
 		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
 		flushFile(fileName);
+		if (recorder != null) {
+			recorder.record(TraceOperation.FLUSH, start, fileName, null, 0L, 0L, 0, 0, null);
+		}
+	}
+
+	final FileInfo _getFileInfo(final long handle, final String fileName) {
+		if (shouldLog()) {
+			log("GetFileInfo: Getting file info of {}", fileName);
+		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
+		final FileInfo info = getFileInfo(openFiles.get(handle), fileName);
+		if (recorder != null) {
+			recorder.record(TraceOperation.GET_INFO, start, fileName, null, handle, 0L, 0, info == null ? 0 : 1, null);
+		}
+		return info;
 	}
 
 	final FileInfo _getFileInfo(final String fileName) {
 		if (shouldLog()) {
-			log("GetFileInfo", "Getting file info of " + fileName);
+			log("GetFileInfo: Getting file info of {}", fileName);
 		}
-		return getFileInfo(fileName);
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
+		final FileInfo info = getFileInfo(fileName);
+		if (recorder != null) {
+			recorder.record(TraceOperation.GET_INFO, start, fileName, null, 0L, 0L, 0, info == null ? 0 : 1, null);
+		}
+		return info;
 	}
 
 	final Collection<String> _listDirectory(final String pathName) {
 		if (shouldLog()) {
-			log("FindFiles", "Find files in: " + pathName);
+			log("FindFiles: Find files in: {}", pathName);
+		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
+		final Collection<String> files = listDirectory(pathName);
+		if (recorder != null) {
+			recorder.record(TraceOperation.LIST, start, pathName, null, 0L, 0L, 0, files == null ? -1 : files.size(), null);
 		}
-		return listDirectory(pathName);
+		return files;
 	}
 
 	final void _lockFile(final String fileName, final long byteOffset, final long length) {
 		if (shouldLog()) {
-			log("LockFile", "Lock file: " + fileName);
+			log("LockFile: Lock file: {}", fileName);
 		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
 		lockFile(fileName, byteOffset, length);
+		if (recorder != null) {
+			recorder.record(TraceOperation.LOCK, start, fileName, null, 0L, byteOffset, (int) length, 0, null);
+		}
 	}
 
-	private final boolean _mount(final File mountPoint, final boolean wasBlocking) {
+	private final boolean _mount(final File mountPoint, final boolean wasBlocking, final MountOptions options) {
 		this.mountPoint = SymlinkResolver.resolveSymlinks(mountPoint);
 		if (UnconsequentialFiles.clearUnconsequentialFiles(this.mountPoint)) {
-			log("Mount", "Some unconsequential files were automatically deleted from mountpoint: " + this.mountPoint);
+			log("Mount: Some unconsequential files were automatically deleted from mountpoint: {}",
+				this.mountPoint);
 		}
 		if (shouldLog()) {
-			log("Mount", "Mounting to: " + this.mountPoint);
+			log("Mount: Mounting to: {} with {}", this.mountPoint, options);
+		}
+		if (options.getTraceFile() != null) {
+			try {
+				trace = new TraceRecorder(options.getTraceFile(), options.hasTraceData());
+			}
+			catch (final IOException e) {
+				SrcLogger.error("Couldn't create filesystem trace: " + options.getTraceFile(), e);
+			}
 		}
 		final long beforeTime = System.nanoTime();
-		final boolean result = backend.userfs_mount(this, mountPoint);
+		final boolean result = backend.userfs_mount(this, mountPoint, options);
 		final long time = (System.nanoTime() - beforeTime) / 1000000L;
 		if (shouldLog()) {
-			log("Mount", (wasBlocking ? "B" : "Non-b") + "locking attempt to mount at '" + this.mountPoint + "' (" + time
-				+ "ms ago) finished; resulted in " + (result ? "success" : "failure") + ".");
+			log("Mount: {}locking attempt to mount at '{}' ({}ms ago) finished; resulted in {}.", wasBlocking ? "B"
+				: "Non-b", this.mountPoint, time, result ? "success" : "failure");
 		}
 		return result;
 	}
 
 	final void _moveFile(final String existingFileName, final String newFileName, final boolean replaceExisiting) {
 		if (shouldLog()) {
-			log("MoveFile", "Move file: " + existingFileName + " -> " + newFileName);
+			log("MoveFile: Move file: {} -> {}", existingFileName, newFileName);
 		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
 		moveFile(existingFileName, newFileName, replaceExisiting);
+		if (recorder != null) {
+			recorder.record(TraceOperation.MOVE, start, existingFileName, newFileName, 0L, 0L, replaceExisiting ? 1 : 0, 0, null);
+		}
 	}
 
 	final boolean _onUnmount() {
 		if (shouldLog()) {
-			log("Unmount", "Unmounting.");
+			log("Unmount: Unmounting.");
+		}
+		final boolean result = onUnmount(mountPoint);
+		final TraceRecorder recorder = trace;
+		if (recorder != null) {
+			trace = null;
+			recorder.close();
 		}
-		return onUnmount(mountPoint);
+		return result;
 	}
 
-	final int _readFile(final String fileName, final ByteBuffer buffer, final long offset) {
+	final int _readFile(final long handle, final String fileName, final ByteBuffer buffer, final long offset) {
 		if (shouldLog()) {
-			log("ReadFile", "Read file: " + fileName);
+			log("ReadFile: Read file: {}", fileName);
+		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
+		final int length = buffer.remaining();
+		final int read = readFile(openFiles.get(handle), fileName, buffer, offset);
+		if (recorder != null) {
+			recorder.record(TraceOperation.READ, start, fileName, null, handle, offset, length, read, null);
+		}
+		return read;
+	}
+
+	final void _truncateFile(final long handle, final String fileName, final long length) {
+		if (shouldLog()) {
+			log("SetEndOfFile: Set end of file: {} at {}", fileName, length);
+		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
+		truncateFile(openFiles.get(handle), fileName, length);
+		if (recorder != null) {
+			recorder.record(TraceOperation.TRUNCATE, start, fileName, null, handle, length, 0, 0, null);
 		}
-		return readFile(fileName, buffer, offset);
 	}
 
 	final void _truncateFile(final String fileName, final long length) {
 		if (shouldLog()) {
-			log("SetEndOfFile", "Set end of file: " + fileName + " at " + length);
+			log("SetEndOfFile: Set end of file: {} at {}", fileName, length);
 		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
 		truncateFile(fileName, length);
+		if (recorder != null) {
+			recorder.record(TraceOperation.TRUNCATE, start, fileName, null, 0L, length, 0, 0, null);
+		}
 	}
 
 	final void _unlockFile(final String fileName, final long byteOffset, final long length) {
 		if (shouldLog()) {
-			log("UnlockFile", "Unlock file: " + fileName);
+			log("UnlockFile: Unlock file: {}", fileName);
 		}
+		final TraceRecorder recorder = trace;
+		final long start = recorder == null ? 0L : System.nanoTime();
 		unlockFile(fileName, byteOffset, length);
+		if (recorder != null) {
+			recorder.record(TraceOperation.UNLOCK, start, fileName, null, 0L, byteOffset, (int) length, 0, null);
+		}
 	}
 
-	final int _writeFile(final String fileName, final ByteBuffer buffer, final long offset) {
+	final int _writeFile(final long handle, final String fileName, final ByteBuffer buffer, final long offset) {
 		if (shouldLog()) {
-			log("WriteFile", "Write file: " + fileName);
+			log("WriteFile: Write file: {}", fileName);
 		}
-		return writeFile(fileName, buffer, offset);
+		final TraceRecorder recorder = trace;
+		if (recorder == null) {
+			return writeFile(openFiles.get(handle), fileName, buffer, offset);
+		}
+		final ByteBuffer data = buffer.duplicate();
+		final long start = System.nanoTime();
+		final int written = writeFile(openFiles.get(handle), fileName, buffer, offset);
+		recorder.record(TraceOperation.WRITE, start, fileName, null, handle, offset, data.remaining(), written, data);
+		return written;
+	}
+
+	/**
+	 * Close an open file.
+	 * 
+	 * @param context
+	 *            Context returned by {@link #openFile(String, FileCreationFlags)} when the file was opened, or null if unknown.
+	 */
+	protected void closeFile(final Object context, final String fileName) {
+		closeFile(fileName);
 	}
 
 	protected abstract void closeFile(String fileName);
@@ -151,6 +291,14 @@ public abstract class UserFS {
 		// Do nothing
 	}
 
+	public final UserFSBackend getBackend() {
+		return backend;
+	}
+
+	protected FileInfo getFileInfo(final Object context, final String fileName) {
+		return getFileInfo(fileName);
+	}
+
 	protected abstract FileInfo getFileInfo(String fileName);
 
 	protected abstract String getFilesystemName();
@@ -171,9 +319,9 @@ public abstract class UserFS {
 
 	protected abstract String getVolumeName();
 
-	final void implLog(final String method, final String message) {
+	final void implLog(final String pattern, final Object... args) {
 		if (shouldLog()) {
-			SrcLogger.logFS("(U) " + method + ": " + message);
+			SrcLogger.logFS("(U) " + pattern, args);
 		}
 	}
 
@@ -183,23 +331,31 @@ public abstract class UserFS {
 		// Do nothing
 	}
 
-	private final void log(final String method, final String message) {
+	/**
+	 * @param pattern
+	 *            Operation name, then the message, with a {} placeholder for each argument.
+	 */
+	private final void log(final String pattern, final Object... args) {
 		if (shouldLog()) {
-			SrcLogger.logFS(method + ": " + message);
+			SrcLogger.logFS(pattern, args);
 		}
 	}
 
 	public final boolean mount(final File mountPoint, final boolean blocking) {
+		return mount(mountPoint, blocking, MountOptions.getDefault());
+	}
+
+	public final boolean mount(final File mountPoint, final boolean blocking, final MountOptions options) {
 		if (!blocking) {
 			new Thread() {
 				@Override
 				public void run() {
-					_mount(mountPoint, false);
+					_mount(mountPoint, false, options);
 				}
 			}.start();
 			return true;
 		}
-		return _mount(mountPoint, true);
+		return _mount(mountPoint, true, options);
 	}
 
 	protected abstract void moveFile(String existingFileName, String newFileName, boolean replaceExisiting);
@@ -208,12 +364,32 @@ public abstract class UserFS {
 		return true;
 	}
 
+	/**
+	 * Open a file, creating it first if the flags say so. The returned context is handed back to the context-taking methods
+	 * for as long as the file stays open, which lets implementations resolve what a file name refers to once per open rather
+	 * than once per read or write. By default, this only calls {@link #createFile(String, FileCreationFlags)}.
+	 * 
+	 * @return Context of the open file, {@link #noContext} if the path-based methods should be used, or null if the file
+	 * could not be opened.
+	 */
+	protected Object openFile(final String fileName, final FileCreationFlags flags) {
+		return createFile(fileName, flags) ? noContext : null;
+	}
+
+	protected int readFile(final Object context, final String fileName, final ByteBuffer buffer, final long offset) {
+		return readFile(fileName, buffer, offset);
+	}
+
 	protected abstract int readFile(String fileName, ByteBuffer buffer, long offset);
 
 	protected boolean shouldLog() {
 		return SrcLogger.getLogFS();
 	}
 
+	protected void truncateFile(final Object context, final String fileName, final long length) {
+		truncateFile(fileName, length);
+	}
+
 	protected abstract void truncateFile(String fileName, long length);
 
 	protected void unlockFile(final String fileName, final long byteOffset, final long length) {
@@ -224,5 +400,9 @@ public abstract class UserFS {
 		return backend.userfs_unmount(mountPoint);
 	}
 
+	protected int writeFile(final Object context, final String fileName, final ByteBuffer buffer, final long offset) {
+		return writeFile(fileName, buffer, offset);
+	}
+
 	protected abstract int writeFile(String fileName, ByteBuffer buffer, long offset);
 }
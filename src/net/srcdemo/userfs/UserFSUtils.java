@@ -43,6 +43,7 @@ public final class UserFSUtils {
 	 */
 	private static Boolean initStatus = null;
 	private static OperatingSystem operatingSystem = null;
+	private static boolean virtualBackend = false;
 
 	private static void addPathToLibrary(final File path) {
 		final String newLibPath = path.getAbsolutePath() + File.pathSeparator + System.getProperty("java.library.path");
@@ -61,6 +62,9 @@ public final class UserFSUtils {
 	}
 
 	public static UserFSBackend getNewBackend() {
+		if (virtualBackend) {
+			return new VirtualUserFS();
+		}
 		if (getOperatingSystem().isWindows()) {
 			return new DokanUserFS();
 		} else {
@@ -97,6 +101,10 @@ public final class UserFSUtils {
 		if (initStatus != null) {
 			return initStatus;
 		}
+		if (virtualBackend) {
+			initStatus = true;
+			return true;
+		}
 		final OperatingSystem os = getOperatingSystem();
 		addPathToLibrary(os.getLibraryPath());
 		if (os.isWindows()) {
@@ -129,6 +137,14 @@ public final class UserFSUtils {
 	 * @return Whether the application needs to be restarted in order to mount a second time. True for Dokan.
 	 */
 	public static boolean needRestartToRemount() {
-		return getOperatingSystem().equals(OperatingSystem.WIN32);
+		return !virtualBackend && getOperatingSystem().equals(OperatingSystem.WIN32);
+	}
+
+	/**
+	 * Make filesystems created from now on use a {@link VirtualUserFS} instead of a kernel mount. Must be called before
+	 * {@link #init()} so that no native library is needed.
+	 */
+	public static void setVirtualBackend(final boolean virtual) {
+		virtualBackend = virtual;
 	}
 }
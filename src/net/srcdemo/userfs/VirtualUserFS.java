@@ -0,0 +1,226 @@
+package net.srcdemo.userfs;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.srcdemo.LatencyHistogram;
+import net.srcdemo.SrcLogger;
+
+/**
+ * Backend which doesn't mount anything. Instead, files are written into the filesystem by calling its entry points directly
+ * from Java, the same way the kernel would: lookup, create, writes in chunks of a fixed size, flush, then release. This makes
+ * it possible to test and benchmark a UserFS without FUSE or Dokan.
+ */
+public final class VirtualUserFS implements UserFSBackend {
+	private final ThreadLocal<byte[]> chunkArray = new ThreadLocal<byte[]>();
+	private final ThreadLocal<ByteBuffer> chunkBuffer = new ThreadLocal<ByteBuffer>();
+	private int chunkSize = -1;
+	private final LatencyHistogram closeLatencies = new LatencyHistogram();
+	private volatile UserFS userFS = null;
+
+	/**
+	 * Write the given files concurrently.
+	 *
+	 * @param files
+	 *            Map of paths inside the filesystem to the local files to copy there.
+	 * @param threads
+	 *            Number of files written at once.
+	 * @return Total number of bytes written.
+	 */
+	public long copyFiles(final Map<String, File> files, final int threads) throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Future<Long>> results = new ArrayList<Future<Long>>(files.size());
+		for (final Map.Entry<String, File> file : files.entrySet()) {
+			results.add(executor.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws IOException {
+					final InputStream in = new FileInputStream(file.getValue());
+					try {
+						return writeFile(file.getKey(), in);
+					}
+					finally {
+						in.close();
+					}
+				}
+			}));
+		}
+		executor.shutdown();
+		long total = 0L;
+		try {
+			for (final Future<Long> result : results) {
+				total += result.get();
+			}
+		}
+		catch (final InterruptedException e) {
+			executor.shutdownNow();
+			throw new IOException("Interrupted while writing files", e);
+		}
+		catch (final ExecutionException e) {
+			executor.shutdownNow();
+			throw new IOException("Error while writing files", e.getCause());
+		}
+		return total;
+	}
+
+	private ByteBuffer getChunkBuffer() {
+		ByteBuffer buffer = chunkBuffer.get();
+		if (buffer == null || buffer.capacity() != chunkSize) {
+			// Direct, like the buffers handed out by the FUSE and Dokan bindings
+			buffer = ByteBuffer.allocateDirect(chunkSize);
+			chunkBuffer.set(buffer);
+			chunkArray.set(new byte[chunkSize]);
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return Time taken to close each file written whole, which is when a SrcDemoFS decodes and blends a sub-frame. Appends
+	 *         made with {@link #writeFile(String, byte[], long)} are not counted.
+	 */
+	public LatencyHistogram.Snapshot getCloseLatencies() {
+		return closeLatencies.snapshot();
+	}
+
+	/**
+	 * @return Size of the given file as reported by the filesystem, or -1 if it doesn't report one.
+	 */
+	public long getFileSize(final String path) throws IOException {
+		final UserFS fs = userFS;
+		if (fs == null) {
+			throw new IOException("Not mounted");
+		}
+		final FileInfo info = fs._getFileInfo(path);
+		return info == null ? -1L : info.getSize();
+	}
+
+	public UserFS getUserFS() {
+		return userFS;
+	}
+
+	/**
+	 * @param chunkSize
+	 *            Size of each write call, in bytes. Defaults to the maximum write size of the mount options.
+	 */
+	public void setChunkSize(final int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public boolean userfs_mount(final UserFS userFS, final File mountPoint, final MountOptions options) {
+		if (chunkSize <= 0) {
+			chunkSize = options.getMaxWrite();
+		}
+		this.userFS = userFS;
+		return true;
+	}
+
+	@Override
+	public boolean userfs_unmount(final File mountPoint) {
+		final UserFS fs = userFS;
+		if (fs == null) {
+			return false;
+		}
+		userFS = null;
+		return fs._onUnmount();
+	}
+
+	public long writeFile(final String path, final byte[] data) throws IOException {
+		return writeFile(path, new ByteArrayInputStream(data));
+	}
+
+	/**
+	 * Write into a file at the given offset, creating it if needed but keeping what it already holds, the way the game
+	 * appends to its audio file as the demo plays.
+	 *
+	 * @return Number of bytes written.
+	 */
+	public long writeFile(final String path, final byte[] data, final long offset) throws IOException {
+		return writeFile(path, new ByteArrayInputStream(data), FileCreationFlags.OPEN_ALWAYS, offset);
+	}
+
+	/**
+	 * Write a file into the filesystem, replacing it if it exists.
+	 *
+	 * @param path
+	 *            Path of the file inside the filesystem, such as "/demo0001.tga".
+	 * @param in
+	 *            Contents of the file; read until its end but not closed.
+	 * @return Number of bytes written.
+	 */
+	public long writeFile(final String path, final InputStream in) throws IOException {
+		return writeFile(path, in, FileCreationFlags.CREATE_ALWAYS, 0L);
+	}
+
+	private long writeFile(final String path, final InputStream in, final FileCreationFlags flags, final long offset)
+		throws IOException {
+		final UserFS fs = userFS;
+		if (fs == null) {
+			throw new IOException("Not mounted");
+		}
+		fs._getFileInfo(path);
+		final long handle = fs._openFile(path, flags);
+		if (handle == 0L) {
+			throw new IOException("Could not create file: " + path);
+		}
+		final ByteBuffer buffer = getChunkBuffer();
+		final byte[] array = chunkArray.get();
+		long position = offset;
+		boolean written = false;
+		try {
+			int read;
+			while ((read = in.read(array, 0, chunkSize)) != -1) {
+				// Send whatever a short write left over again, as the kernel would
+				int done = 0;
+				while (done < read) {
+					buffer.clear();
+					buffer.put(array, done, read - done);
+					buffer.flip();
+					final int chunkWritten = fs._writeFile(handle, path, buffer, position);
+					if (chunkWritten <= 0) {
+						throw new IOException("Could not write " + (read - done) + " bytes at offset " + position + " of "
+							+ path + " (returned " + chunkWritten + ")");
+					}
+					done += chunkWritten;
+					position += chunkWritten;
+				}
+			}
+			fs._flushFile(path);
+			written = true;
+		}
+		finally {
+			// Close even if writing failed, as the kernel would once the writer goes away
+			final long closeStart = System.nanoTime();
+			try {
+				fs._closeFile(handle, path);
+			}
+			catch (final RuntimeException e) {
+				if (written) {
+					throw e;
+				}
+				// Keep the reason writing failed rather than this one
+				SrcLogger.error("Error while closing partly written file: " + path, e);
+			}
+			if (written && flags == FileCreationFlags.CREATE_ALWAYS) {
+				closeLatencies.record(System.nanoTime() - closeStart);
+			}
+		}
+		return position - offset;
+	}
+}
@@ -0,0 +1,274 @@
+package net.srcdemo.video;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.srcdemo.SrcLogger;
+import net.srcdemo.video.image.ImageSavingTask;
+import net.srcdemo.video.image.ImageSavingTaskFactory;
+
+/**
+ * Blends TGA sub-frames which are already on disk, such as those left behind by an earlier capture, without mounting
+ * anything. Since all sub-frames are there up front, blended frames don't have to be made one after the other: each worker
+ * thread takes the next blended frame still to be done, reads its sub-frames through memory mappings, sums them up with its
+ * own {@link FrameAccumulator} and saves the result itself, so that encoding is spread over all cores as well.
+ */
+public class BatchBlender {
+	/**
+	 * One blended frame to make.
+	 */
+	private static final class Job {
+		/**
+		 * Last sub-frame of the blended frame, which is always there.
+		 */
+		private final File lastSubFrame;
+		private final String prefix;
+		private final int sequenceIndex;
+		private final Map<Integer, File> subFrames;
+
+		private Job(final String prefix, final Map<Integer, File> subFrames, final int sequenceIndex,
+			final File lastSubFrame) {
+			this.prefix = prefix;
+			this.subFrames = subFrames;
+			this.sequenceIndex = sequenceIndex;
+			this.lastSubFrame = lastSubFrame;
+		}
+	}
+
+	/**
+	 * Part of the heap which workers may fill with frames; the rest is left for encoders and everything else.
+	 */
+	private static final double memoryPortion = 0.6d;
+	private static final Pattern subFramePattern = Pattern.compile("^(.*?)(\\d+)\\.tga$", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * @return The TGA header of a sub-frame, without reading the rest of it.
+	 */
+	private static TGAReader readHeader(final File file) throws IOException {
+		final DataInputStream input = new DataInputStream(new FileInputStream(file));
+		try {
+			final byte[] header = new byte[TGAReader.headerSize];
+			input.readFully(header);
+			return new TGAReader(header);
+		}
+		finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Copy a sub-frame into the given buffer through a memory mapping, growing the buffer if it is too small.
+	 *
+	 * @return The buffer holding the sub-frame.
+	 */
+	private static byte[] readSubFrame(final File file, final byte[] buffer) throws IOException {
+		final FileInputStream input = new FileInputStream(file);
+		try {
+			final FileChannel channel = input.getChannel();
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Sub-frame too large: " + file);
+			}
+			final byte[] data = buffer == null || buffer.length < size ? new byte[(int) size] : buffer;
+			final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+			mapped.get(data, 0, (int) size);
+			return data;
+		}
+		finally {
+			input.close();
+		}
+	}
+
+	private final int blendRate;
+	private final AtomicInteger framesSaved = new AtomicInteger(0);
+	private volatile int framesTotal = 0;
+	private final ImageSavingTaskFactory savingFactory;
+	private final int shutterAngle;
+	private final int threads;
+	private final FrameWeighter weighter;
+
+	/**
+	 * @param threads
+	 *            Number of blended frames to make at once, or 0 for one per core. Fewer are used if the heap can't hold
+	 *            that many frames.
+	 */
+	public BatchBlender(final ImageSavingTaskFactory savingFactory, final int blendRate, final int shutterAngle,
+		final FrameWeighter weighter, final int threads) {
+		this.savingFactory = savingFactory;
+		this.blendRate = blendRate;
+		this.shutterAngle = shutterAngle;
+		this.weighter = weighter;
+		this.threads = threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads;
+	}
+
+	/**
+	 * Blend all sub-frames found in the input directory into the output directory. Sub-frames are grouped into demos by
+	 * the part of their name before the frame number, and blended frames are named the same way as when rendering through
+	 * the filesystem. As when rendering, a blended frame is only made if its last sub-frame is there; other missing
+	 * sub-frames are left out of the blend.
+	 *
+	 * @return Number of blended frames saved.
+	 */
+	public int blend(final File inputDirectory, final File outputDirectory) throws IOException {
+		final List<Job> jobs = findJobs(inputDirectory);
+		framesTotal = jobs.size();
+		if (jobs.isEmpty()) {
+			return 0;
+		}
+		final int workerCount = Math.min(jobs.size(), getWorkerCount(jobs.get(0)));
+		if (SrcLogger.getLogVideo()) {
+			SrcLogger.logVideo("Blending {} frames from {} on {} threads", jobs.size(), inputDirectory, workerCount);
+		}
+		final AtomicInteger nextJob = new AtomicInteger(0);
+		final List<Thread> workers = new ArrayList<Thread>(workerCount);
+		for (int i = 0; i < workerCount; i++) {
+			final Thread worker = new Thread("Batch blending thread " + i) {
+				@Override
+				public void run() {
+					final FrameAccumulator accumulator = new FrameAccumulator(blendRate, shutterAngle, weighter);
+					byte[] buffer = null;
+					int job;
+					while ((job = nextJob.getAndIncrement()) < jobs.size()) {
+						buffer = blendFrame(jobs.get(job), accumulator, buffer, outputDirectory);
+					}
+				}
+			};
+			worker.start();
+			workers.add(worker);
+		}
+		try {
+			for (final Thread worker : workers) {
+				worker.join();
+			}
+		}
+		catch (final InterruptedException e) {
+			nextJob.set(jobs.size());
+			throw new IOException("Interrupted while blending", e);
+		}
+		return framesSaved.get();
+	}
+
+	/**
+	 * @return The buffer used to read sub-frames, to be reused for the next blended frame.
+	 */
+	private byte[] blendFrame(final Job job, final FrameAccumulator accumulator, final byte[] buffer,
+		final File outputDirectory) {
+		byte[] data = buffer;
+		File subFrame = null;
+		try {
+			final int last = accumulator.getLastAcceptedFrame(job.sequenceIndex);
+			for (int frameNumber = accumulator.getFirstAcceptedFrame(job.sequenceIndex); frameNumber <= last; frameNumber++) {
+				subFrame = job.subFrames.get(frameNumber);
+				if (subFrame == null) {
+					if (SrcLogger.getLogVideo()) {
+						SrcLogger.logVideo("Sub-frame {} of {} is missing; leaving it out.", frameNumber, job.prefix);
+					}
+					continue;
+				}
+				try {
+					data = readSubFrame(subFrame, data);
+				}
+				catch (final IOException e) {
+					SrcLogger.error("Error while reading sub-frame " + subFrame, e);
+					continue;
+				}
+				accumulator.add(frameNumber, new TGAReader(data));
+			}
+			if (accumulator.getWeight() == 0) {
+				SrcLogger.error("Nothing to blend into frame " + job.sequenceIndex + " of " + job.prefix);
+				return data;
+			}
+			final int width = accumulator.getWidth();
+			final int height = accumulator.getHeight();
+			final int[] finalPixels = new int[width * height];
+			accumulator.pack(finalPixels);
+			final ImageSavingTask task = savingFactory.buildSavingTask(job.sequenceIndex, finalPixels, width, height);
+			final File outputFile = new File(outputDirectory, job.prefix + String.format("%06d", job.sequenceIndex) + "."
+				+ task.getExtension());
+			if (task.save(outputFile)) {
+				framesSaved.incrementAndGet();
+			}
+		}
+		catch (final RuntimeException e) {
+			// Such as a truncated or corrupt sub-frame; drop this frame rather than the whole worker
+			SrcLogger.error("Error while blending frame " + job.sequenceIndex + " of " + job.prefix + " at sub-frame "
+				+ subFrame, e);
+			accumulator.release();
+		}
+		return data;
+	}
+
+	/**
+	 * @return One job per blended frame to make, demo by demo, in order.
+	 */
+	private List<Job> findJobs(final File inputDirectory) throws IOException {
+		final File[] files = inputDirectory.listFiles();
+		if (files == null) {
+			throw new IOException("Cannot list sub-frames in " + inputDirectory);
+		}
+		final Map<String, TreeMap<Integer, File>> demos = new TreeMap<String, TreeMap<Integer, File>>();
+		for (final File file : files) {
+			final Matcher match = subFramePattern.matcher(file.getName());
+			if (!file.isFile() || !match.matches()) {
+				continue;
+			}
+			TreeMap<Integer, File> subFrames = demos.get(match.group(1));
+			if (subFrames == null) {
+				subFrames = new TreeMap<Integer, File>();
+				demos.put(match.group(1), subFrames);
+			}
+			subFrames.put(Integer.parseInt(match.group(2)), file);
+		}
+		final FrameAccumulator accumulator = new FrameAccumulator(blendRate, shutterAngle, weighter);
+		final List<Job> jobs = new ArrayList<Job>();
+		for (final Map.Entry<String, TreeMap<Integer, File>> demo : demos.entrySet()) {
+			final TreeMap<Integer, File> subFrames = demo.getValue();
+			final int firstSequence = accumulator.getSequenceIndex(subFrames.firstKey());
+			final int lastSequence = accumulator.getSequenceIndex(subFrames.lastKey());
+			for (int sequenceIndex = firstSequence; sequenceIndex <= lastSequence; sequenceIndex++) {
+				final File lastSubFrame = subFrames.get(accumulator.getLastAcceptedFrame(sequenceIndex));
+				if (lastSubFrame != null) {
+					jobs.add(new Job(demo.getKey(), subFrames, sequenceIndex, lastSubFrame));
+				}
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * @return Number of blended frames saved so far.
+	 */
+	public int getFramesSaved() {
+		return framesSaved.get();
+	}
+
+	/**
+	 * @return Number of blended frames to make, once the input directory has been looked through.
+	 */
+	public int getFramesTotal() {
+		return framesTotal;
+	}
+
+	/**
+	 * @return Number of workers to use, given how much memory blending a frame like the one of the given job takes.
+	 */
+	private int getWorkerCount(final Job sample) throws IOException {
+		final File subFrame = sample.lastSubFrame;
+		final TGAReader header = readHeader(subFrame);
+		// Sum, final pixels and the encoder's copy of them, plus the sub-frame being read
+		final long perWorker = header.getNumPixels() * (12L + 4L + 4L) + subFrame.length();
+		final long fitting = (long) (Runtime.getRuntime().maxMemory() * memoryPortion / perWorker);
+		return (int) Math.max(1L, Math.min(threads, fitting));
+	}
+}
@@ -0,0 +1,52 @@
+package net.srcdemo.video;
+
+import net.srcdemo.video.image.ImageSavingTaskFactory;
+
+/**
+ * One way of turning a demo's sub-frames into frames: how they are blended, how the blended frames are saved, and where.
+ */
+public final class BlendVariant {
+	private final int blendRate;
+	private final String directory;
+	private final ImageSavingTaskFactory savingFactory;
+	private final int shutterAngle;
+	private final FrameWeighter weighter;
+
+	/**
+	 * @param directory
+	 *            Folder to save frames into, relative to where the demo's frames are normally saved, or null to save them
+	 *            there.
+	 */
+	public BlendVariant(final String directory, final ImageSavingTaskFactory savingFactory, final int blendRate,
+		final int shutterAngle, final FrameWeighter weighter) {
+		this.directory = directory;
+		this.savingFactory = savingFactory;
+		this.blendRate = blendRate;
+		this.shutterAngle = shutterAngle;
+		this.weighter = weighter;
+	}
+
+	public int getBlendRate() {
+		return blendRate;
+	}
+
+	/**
+	 * @return Folder to save frames into, relative to where the demo's frames are normally saved, or null to save them
+	 *         there.
+	 */
+	public String getDirectory() {
+		return directory;
+	}
+
+	public ImageSavingTaskFactory getSavingFactory() {
+		return savingFactory;
+	}
+
+	public int getShutterAngle() {
+		return shutterAngle;
+	}
+
+	public FrameWeighter getWeighter() {
+		return weighter;
+	}
+}
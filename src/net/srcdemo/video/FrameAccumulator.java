@@ -0,0 +1,166 @@
+package net.srcdemo.video;
+
+import java.util.Arrays;
+
+import net.srcdemo.PipelineMetrics;
+import net.srcdemo.PipelineMetrics.Stage;
+import net.srcdemo.SrcLogger;
+
+/**
+ * Sums up the sub-frames of one blended frame at a time, each weighted by its position within the shutter, then turns the
+ * sum into final pixels. Sub-frames outside of the shutter are not accepted. Not thread-safe: sub-frames of a blended frame
+ * must be added one at a time, in order.
+ */
+class FrameAccumulator {
+	private final double acceptedFrameGap;
+	private final int blendRate;
+	private int height = -1;
+	private int maxAcceptedFrame;
+	private int[] mergedFrame = null;
+	private int minAcceptedFrame = 0;
+	private int weight = 0;
+	private final FrameWeighter weighter;
+	private int width = -1;
+
+	FrameAccumulator(final int blendRate, final int shutterAngle, final FrameWeighter weighter) {
+		this.blendRate = blendRate;
+		this.weighter = weighter;
+		maxAcceptedFrame = (int) Math.ceil((shutterAngle * blendRate) / 360.0) - 1;
+		if (maxAcceptedFrame < blendRate - 1) { // Offset by 1
+			maxAcceptedFrame++;
+			minAcceptedFrame = 1;
+		}
+		acceptedFrameGap = maxAcceptedFrame - minAcceptedFrame;
+	}
+
+	boolean accepts(final int frameNumber) {
+		final int framePosition = frameNumber % blendRate;
+		return framePosition >= minAcceptedFrame && framePosition <= maxAcceptedFrame;
+	}
+
+	/**
+	 * Add a sub-frame to the blended frame it belongs to. A new sum is started with the first sub-frame of a blended frame,
+	 * or with whichever comes first after the previous sum was packed.
+	 *
+	 * @return Whether the sub-frame was added; false if its size doesn't match the other sub-frames of its blended frame.
+	 */
+	boolean add(final int frameNumber, final TGAReader tga) {
+		final int framePosition = frameNumber % blendRate;
+		final int totalNeededSize = tga.getNumPixels() * 3;
+		if (framePosition == minAcceptedFrame || weight == 0) { // First frame of the sequence
+			if (SrcLogger.getLogVideo()) {
+				SrcLogger.logVideo("This is the first frame of the sequence. Allocating memory.");
+			}
+			if (mergedFrame == null || totalNeededSize != mergedFrame.length) {
+				if (SrcLogger.getLogVideo()) {
+					SrcLogger.logVideo("Memory allocation size is different. Needed: {} / Current: {}", totalNeededSize,
+						mergedFrame == null ? -1 : mergedFrame.length);
+				}
+				mergedFrame = new int[totalNeededSize];
+			} else {
+				Arrays.fill(mergedFrame, 0);
+			}
+			width = tga.getWidth();
+			height = tga.getHeight();
+			weight = 0;
+		}
+		if (totalNeededSize != mergedFrame.length) {
+			SrcLogger.error("Invalid frame size for frame #" + frameNumber + "! Allocated = " + mergedFrame.length
+				+ "; Frame = " + totalNeededSize);
+			return false;
+		}
+		if (SrcLogger.getLogVideo()) {
+			SrcLogger.logVideo("Merging frame: {} on thread {}", frameNumber, Thread.currentThread().getId());
+		}
+		final int frameWeight = weighter.weight((framePosition - minAcceptedFrame) / acceptedFrameGap);
+		final long accumulationStart = System.nanoTime();
+		if (frameWeight == 1) {
+			tga.addToArray(mergedFrame);
+		} else if (frameWeight > 1) {
+			tga.addToArrayWeighted(mergedFrame, frameWeight);
+		}
+		PipelineMetrics.record(Stage.ACCUMULATION, accumulationStart);
+		weight += frameWeight;
+		return true;
+	}
+
+	/**
+	 * @return Number of the first sub-frame of the given blended frame which is accepted.
+	 */
+	int getFirstAcceptedFrame(final int sequenceIndex) {
+		return (sequenceIndex - 1) * blendRate + minAcceptedFrame;
+	}
+
+	int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return Bytes taken by the sum.
+	 */
+	long getHeldBytes() {
+		return mergedFrame == null ? 0L : mergedFrame.length * 4L;
+	}
+
+	/**
+	 * @return Number of the last sub-frame of the given blended frame which is accepted.
+	 */
+	int getLastAcceptedFrame(final int sequenceIndex) {
+		return (sequenceIndex - 1) * blendRate + maxAcceptedFrame;
+	}
+
+	/**
+	 * @return Sum of the current blended frame, as blue, green and red values for each pixel.
+	 */
+	int[] getMergedFrame() {
+		return mergedFrame;
+	}
+
+	/**
+	 * @return Number of the blended frame the given sub-frame belongs to, counting from 1.
+	 */
+	int getSequenceIndex(final int frameNumber) {
+		return 1 + frameNumber / blendRate;
+	}
+
+	/**
+	 * @return Sum of the weights of the sub-frames added to the current blended frame so far.
+	 */
+	int getWeight() {
+		return weight;
+	}
+
+	int getWidth() {
+		return width;
+	}
+
+	boolean isLast(final int frameNumber) {
+		return frameNumber % blendRate == maxAcceptedFrame;
+	}
+
+	/**
+	 * Divide the sum by the total weight into RGB pixels. The next sub-frame added starts a new sum.
+	 */
+	void pack(final int[] finalPixels) {
+		final int numPixels = width * height;
+		int rPosition;
+		for (int i = 0; i < numPixels; i++) {
+			rPosition = i * 3;
+			finalPixels[i] = ((mergedFrame[rPosition + 2] / weight) << 16) | ((mergedFrame[rPosition + 1] / weight) << 8)
+				| (mergedFrame[rPosition] / weight);
+		}
+		weight = 0;
+	}
+
+	/**
+	 * Mark the sum as packed after packing it some other way.
+	 */
+	void packed() {
+		weight = 0;
+	}
+
+	void release() {
+		mergedFrame = null;
+		weight = 0;
+	}
+}
@@ -5,68 +5,189 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
-import net.srcdemo.GCChecker;
+import net.srcdemo.FrameEventLog;
+import net.srcdemo.MemoryGovernor;
+import net.srcdemo.PipelineMetrics;
+import net.srcdemo.PipelineMetrics.Stage;
 import net.srcdemo.SrcDemo;
 import net.srcdemo.SrcLogger;
 import net.srcdemo.video.image.ImageSaver;
 import net.srcdemo.video.image.ImageSavingTaskFactory;
 
+/**
+ * Blends the sub-frames of a demo into frames. Sub-frames can be blended several ways at once, each into its own folder:
+ * each sub-frame is still only buffered and decoded once, then added to all {@link BlendVariant}s which want it.
+ */
 public class FrameBlender implements VideoHandler {
-	private final double acceptedFrameGap;
-	private final int blendRate;
+	private static final class FrameBuffer extends ByteArrayOutputStream {
+		private final long created = System.nanoTime();
+
+		private FrameBuffer(final int size) {
+			super(size);
+		}
+	}
+
+	/**
+	 * Blending state and saving thread of one variant.
+	 */
+	private static final class Output {
+		private final FrameAccumulator accumulator;
+		private ImageSaver imageSaver;
+		private final ImageSavingTaskFactory savingFactory;
+
+		private Output(final SrcDemo demo, final BlendVariant variant) {
+			accumulator = new FrameAccumulator(variant.getBlendRate(), variant.getShutterAngle(), variant.getWeighter());
+			savingFactory = variant.getSavingFactory();
+			imageSaver = new ImageSaver(demo, variant.getDirectory());
+		}
+	}
+
+	private static final long previewInterval = 250L;
+	private static final int previewMaxHeight = 240;
+	private static final int previewMaxWidth = 320;
 	private final ReentrantLock bufferLock = new ReentrantLock();
-	private int currentAllocatedSize = -1;
-	private int[] currentMergedFrame;
-	private int currentWeight = 0;
-	private final Map<Integer, ByteArrayOutputStream> frameData = new HashMap<Integer, ByteArrayOutputStream>();
+	private final SrcDemo demo;
+	private final String demoPrefix;
+	private final Map<Integer, FrameBuffer> frameData = new HashMap<Integer, FrameBuffer>();
 	private final ReentrantLock frameLock = new ReentrantLock();
-	private ImageSaver imageSaver;
-	private int maxAcceptedFrame;
+	private long lastPreview = 0L;
 	private int maxEncounteredByteSize = 1048576;
-	private int minAcceptedFrame = 0;
-	private final ImageSavingTaskFactory savingFactory;
-	private final FrameWeighter weighter;
+	private final Output[] outputs;
+	private int[] previewColumns = null;
+	private int[] previewCounts = null;
+	private int previewHeight = 0;
+	private int[] previewPixels = null;
+	private int previewSourceHeight = -1;
+	private int previewSourceWidth = -1;
+	private int[] previewSums = null;
+	private int previewWidth = 0;
 
 	public FrameBlender(final SrcDemo demo, final ImageSavingTaskFactory savingFactory, final int blendRate,
 		final int shutterAngle, final FrameWeighter weighter) {
-		this.blendRate = blendRate;
-		maxAcceptedFrame = (int) Math.ceil((shutterAngle * blendRate) / 360.0) - 1;
-		if (maxAcceptedFrame < blendRate - 1) { // Offset by 1
-			maxAcceptedFrame++;
-			minAcceptedFrame = 1;
+		this(demo, Collections.singletonList(new BlendVariant(null, savingFactory, blendRate, shutterAngle, weighter)));
+	}
+
+	/**
+	 * @param variants
+	 *            Ways to blend sub-frames; previews are made from the first one.
+	 */
+	public FrameBlender(final SrcDemo demo, final List<BlendVariant> variants) {
+		this.demo = demo;
+		demoPrefix = demo.getPrefix();
+		outputs = new Output[variants.size()];
+		for (int i = 0; i < outputs.length; i++) {
+			outputs[i] = new Output(demo, variants.get(i));
+		}
+	}
+
+	/**
+	 * Size the preview for frames of the given dimensions, and work out which preview pixel each frame pixel falls into.
+	 * Only done when the frame size changes.
+	 */
+	private void allocatePreview(final int width, final int height) {
+		final double scale = Math.min(1d, Math.min((double) previewMaxWidth / width, (double) previewMaxHeight / height));
+		previewWidth = Math.max(1, (int) (width * scale));
+		previewHeight = Math.max(1, (int) (height * scale));
+		previewColumns = new int[width];
+		final int[] columnCounts = new int[previewWidth];
+		for (int x = 0; x < width; x++) {
+			previewColumns[x] = x * previewWidth / width;
+			columnCounts[previewColumns[x]]++;
+		}
+		final int[] rowCounts = new int[previewHeight];
+		for (int y = 0; y < height; y++) {
+			rowCounts[y * previewHeight / height]++;
+		}
+		previewCounts = new int[previewWidth * previewHeight];
+		for (int row = 0; row < previewHeight; row++) {
+			for (int column = 0; column < previewWidth; column++) {
+				previewCounts[row * previewWidth + column] = rowCounts[row] * columnCounts[column];
+			}
+		}
+		previewPixels = new int[previewWidth * previewHeight];
+		previewSums = new int[previewWidth * previewHeight * 3];
+		previewSourceWidth = width;
+		previewSourceHeight = height;
+	}
+
+	/**
+	 * Add a decoded sub-frame to one variant, and queue the blended frame for saving if it was the last one of it.
+	 */
+	private void blend(final Output output, final boolean withPreview, final int frameNumber, final TGAReader tga) {
+		final FrameAccumulator accumulator = output.accumulator;
+		if (!accumulator.accepts(frameNumber)) {
+			return;
+		}
+		final long heldBefore = accumulator.getHeldBytes();
+		final boolean added = accumulator.add(frameNumber, tga);
+		final long heldAfter = accumulator.getHeldBytes();
+		if (heldAfter != heldBefore) {
+			MemoryGovernor.release(heldBefore);
+			MemoryGovernor.reserve(heldAfter);
+		}
+		if (added && accumulator.isLast(frameNumber)) { // Last frame of the sequence
+			if (SrcLogger.getLogVideo()) {
+				SrcLogger.logVideo("This was the last frame of the sequence. Computing final image.");
+			}
+			final long packStart = System.nanoTime();
+			final int[] finalPixels = new int[tga.getNumPixels()];
+			final long now = System.currentTimeMillis();
+			if (withPreview && now - lastPreview >= previewInterval) {
+				lastPreview = now;
+				packWithPreview(accumulator, finalPixels, tga.getWidth(), tga.getHeight());
+			} else {
+				accumulator.pack(finalPixels);
+			}
+			PipelineMetrics.record(Stage.FINAL_PACK, packStart);
+			// At this point, we made a full copy, no need to keep the rest waiting
+			final int sequenceIndex = accumulator.getSequenceIndex(frameNumber);
+			output.imageSaver.add(output.savingFactory.buildSavingTask(sequenceIndex, finalPixels, tga.getWidth(),
+				tga.getHeight()));
+			if (FrameEventLog.isEnabled()) {
+				FrameEventLog.blendGroupFinalized(demoPrefix, sequenceIndex, packStart);
+			}
 		}
-		acceptedFrameGap = maxAcceptedFrame - minAcceptedFrame;
-		this.savingFactory = savingFactory;
-		this.weighter = weighter;
-		imageSaver = new ImageSaver(demo);
 	}
 
 	@Override
 	public void close(final int frameNumber) {
 		if (shouldIgnoreFrame(frameNumber)) {
 			if (SrcLogger.getLogVideo()) {
-				SrcLogger.logVideo("Frame " + frameNumber + " is being closed. Ignoring.");
+				SrcLogger.logVideo("Frame {} is being closed. Ignoring.", frameNumber);
 			}
 			return;
 		}
 		if (SrcLogger.getLogVideo()) {
-			SrcLogger.logVideo("Frame " + frameNumber + " is being closed. Processing.");
+			SrcLogger.logVideo("Frame {} is being closed. Processing.", frameNumber);
 		}
+		MemoryGovernor.awaitCapacity();
 		bufferLock.lock();
 		if (!frameData.containsKey(frameNumber)) {
 			// Duplicate close call; ignore
 			bufferLock.unlock();
 			return;
 		}
-		final ByteArrayOutputStream buffer = getFrameByte(frameNumber);
+		final FrameBuffer buffer = getFrameByte(frameNumber);
 		maxEncounteredByteSize = Math.max(maxEncounteredByteSize, buffer.size());
 		frameData.remove(frameNumber);
 		bufferLock.unlock();
-		handleFrame(frameNumber, buffer.toByteArray());
+		PipelineMetrics.record(Stage.SUB_FRAME_BUFFERING, buffer.created);
+		if (FrameEventLog.isEnabled()) {
+			FrameEventLog.subFrame(demoPrefix, frameNumber, buffer.created);
+		}
+		final long start = System.nanoTime();
+		try {
+			handleFrame(frameNumber, buffer.toByteArray(), start);
+		}
+		finally {
+			MemoryGovernor.release(buffer.size());
+		}
 	}
 
 	@Override
@@ -79,83 +200,68 @@ public class FrameBlender implements VideoHandler {
 		// Do some preemptive null-ification
 		bufferLock.lock();
 		frameLock.lock();
+		long heldBytes = 0L;
+		for (final FrameBuffer buffer : frameData.values()) {
+			heldBytes += buffer.size();
+		}
 		frameData.clear();
-		currentMergedFrame = null;
-		imageSaver.interrupt();
-		imageSaver = null;
+		for (final Output output : outputs) {
+			heldBytes += output.accumulator.getHeldBytes();
+			output.accumulator.release();
+			output.imageSaver.interrupt();
+			output.imageSaver = null;
+		}
+		MemoryGovernor.release(heldBytes);
+		previewColumns = null;
+		previewCounts = null;
+		previewPixels = null;
+		previewSums = null;
+		previewSourceWidth = -1;
+		previewSourceHeight = -1;
 		frameLock.unlock();
 		bufferLock.unlock();
 	}
 
-	private ByteArrayOutputStream getFrameByte(final int frameNumber) {
+	@Override
+	public void flush() {
+		for (final Output output : outputs) {
+			final ImageSaver imageSaver = output.imageSaver;
+			if (imageSaver != null) {
+				imageSaver.flush();
+			}
+		}
+	}
+
+	private FrameBuffer getFrameByte(final int frameNumber) {
 		bufferLock.lock();
 		if (!frameData.containsKey(frameNumber)) {
-			final ByteArrayOutputStream buffer = new ByteArrayOutputStream(maxEncounteredByteSize);
+			final FrameBuffer buffer = new FrameBuffer(maxEncounteredByteSize);
 			frameData.put(frameNumber, buffer);
 			bufferLock.unlock();
 			return buffer;
 		}
-		final ByteArrayOutputStream buffer = frameData.get(frameNumber);
+		final FrameBuffer buffer = frameData.get(frameNumber);
 		bufferLock.unlock();
 		return buffer;
 	}
 
-	private void handleFrame(final int frameNumber, final byte[] frameData) {
-		final int framePosition = frameNumber % blendRate;
-		final TGAReader tga = new TGAReader(frameData);
-		final int numPixels = tga.getNumPixels();
-		final int totalNeededSize = numPixels * 3;
-		final double frameWeightX = (framePosition - minAcceptedFrame) / acceptedFrameGap;
-		final int frameWeight = weighter.weight(frameWeightX);
-		frameLock.lock();
-		if (framePosition == minAcceptedFrame) { // First frame of the sequence
-			if (SrcLogger.getLogVideo()) {
-				SrcLogger.logVideo("This is the first frame of the sequence. Allocating memory.");
-			}
-			if (totalNeededSize != currentAllocatedSize) {
-				if (SrcLogger.getLogVideo()) {
-					SrcLogger.logVideo("Memory allocation size is different. Needed: " + totalNeededSize + " / Current: "
-						+ currentAllocatedSize);
-				}
-				currentMergedFrame = new int[totalNeededSize];
-				currentAllocatedSize = totalNeededSize;
-			}
-			Arrays.fill(currentMergedFrame, 0);
-			currentWeight = 0;
-		}
-		if (totalNeededSize != currentAllocatedSize) {
-			SrcLogger.error("Invalid frame size for frame #" + frameNumber + "! Allocated = " + currentAllocatedSize
-				+ "; Frame = " + totalNeededSize);
-			frameLock.unlock();
-			return;
+	/**
+	 * @param start
+	 *            Time at which decoding started, including the copy of the frame data.
+	 */
+	private void handleFrame(final int frameNumber, final byte[] frameData, final long start) {
+		final TGAReader tga;
+		if (outputs.length == 1) {
+			tga = new TGAReader(frameData);
+		} else { // Decompress once rather than once per variant
+			tga = new TGAReader(frameData).uncompressed();
 		}
-		if (SrcLogger.getLogVideo()) {
-			SrcLogger.logVideo("Merging frame: " + frameNumber + " on thread " + Thread.currentThread().getId());
-		}
-		if (frameWeight == 1) {
-			tga.addToArray(currentMergedFrame);
-		} else if (frameWeight > 1) {
-			tga.addToArrayWeighted(currentMergedFrame, frameWeight);
-		}
-		currentWeight += frameWeight;
-		if (framePosition == maxAcceptedFrame) { // Last frame of the sequence
-			if (SrcLogger.getLogVideo()) {
-				SrcLogger.logVideo("This was the last frame of the sequence. Computing final image.");
-			}
-			final int[] finalPixels = new int[numPixels];
-			int rPosition;
-			for (int i = 0; i < numPixels; i++) {
-				rPosition = i * 3;
-				finalPixels[i] = ((currentMergedFrame[rPosition + 2] / currentWeight) << 16)
-					| ((currentMergedFrame[rPosition + 1] / currentWeight) << 8)
-					| (currentMergedFrame[rPosition] / currentWeight);
-			}
-			// At this point, we made a full copy, no need to keep the rest waiting
-			imageSaver.add(savingFactory.buildSavingTask(1 + frameNumber / blendRate, finalPixels, tga.getWidth(),
-				tga.getHeight()));
+		PipelineMetrics.record(Stage.TGA_DECODE, start);
+		frameLock.lock();
+		for (int i = 0; i < outputs.length; i++) {
+			blend(outputs[i], i == 0, frameNumber, tga);
 		}
 		frameLock.unlock();
-		GCChecker.poke();
 	}
 
 	@Override
@@ -168,9 +274,55 @@ public class FrameBlender implements VideoHandler {
 		// Nothing to do
 	}
 
+	/**
+	 * Same as the regular final pack, but also box-filters the frame into the preview buffer on the way, then hands the
+	 * preview to listeners.
+	 */
+	private void packWithPreview(final FrameAccumulator accumulator, final int[] finalPixels, final int width,
+		final int height) {
+		if (width != previewSourceWidth || height != previewSourceHeight) {
+			allocatePreview(width, height);
+		}
+		Arrays.fill(previewSums, 0);
+		final int[] mergedFrame = accumulator.getMergedFrame();
+		final int weight = accumulator.getWeight();
+		int i = 0;
+		int rPosition;
+		int r, g, b;
+		int sumPosition;
+		for (int y = 0; y < height; y++) {
+			final int rowOffset = y * previewHeight / height * previewWidth;
+			for (int x = 0; x < width; x++) {
+				rPosition = i * 3;
+				r = mergedFrame[rPosition + 2] / weight;
+				g = mergedFrame[rPosition + 1] / weight;
+				b = mergedFrame[rPosition] / weight;
+				finalPixels[i++] = (r << 16) | (g << 8) | b;
+				sumPosition = (rowOffset + previewColumns[x]) * 3;
+				previewSums[sumPosition] += r;
+				previewSums[sumPosition + 1] += g;
+				previewSums[sumPosition + 2] += b;
+			}
+		}
+		int count;
+		for (int p = 0; p < previewPixels.length; p++) {
+			count = previewCounts[p];
+			sumPosition = p * 3;
+			previewPixels[p] = ((previewSums[sumPosition] / count) << 16) | ((previewSums[sumPosition + 1] / count) << 8)
+				| (previewSums[sumPosition + 2] / count);
+		}
+		accumulator.packed();
+		// Still under the frame lock, so nothing can overwrite the preview while listeners look at it
+		demo.notifyFramePreview(previewPixels, previewWidth, previewHeight);
+	}
+
 	private boolean shouldIgnoreFrame(final int frameNumber) {
-		final int framePosition = frameNumber % blendRate;
-		return framePosition < minAcceptedFrame || framePosition > maxAcceptedFrame;
+		for (final Output output : outputs) {
+			if (output.accumulator.accepts(frameNumber)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	@Override
@@ -183,8 +335,10 @@ public class FrameBlender implements VideoHandler {
 		if (shouldIgnoreFrame(frameNumber)) {
 			return buffer.remaining();
 		}
-		final ByteArrayOutputStream output = getFrameByte(frameNumber);
+		MemoryGovernor.awaitCapacity();
+		final FrameBuffer output = getFrameByte(frameNumber);
 		final int toWrite = buffer.remaining();
+		MemoryGovernor.reserve(toWrite);
 		final byte[] gotten = new byte[toWrite];
 		buffer.get(gotten);
 		try {
@@ -25,6 +25,11 @@ public class NullVideoHandler implements VideoHandler {
 		// Do nothing
 	}
 
+	@Override
+	public void flush() {
+		// Do nothing
+	}
+
 	@Override
 	public boolean isLocked() {
 		return false;
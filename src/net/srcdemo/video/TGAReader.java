@@ -1,6 +1,7 @@
 package net.srcdemo.video;
 
 class TGAReader {
+	static final int headerSize = 18;
 	private final byte[] data;
 	private boolean headerDecoded = false;
 	private int height = -1;
@@ -12,8 +13,12 @@ class TGAReader {
 		this.data = data;
 	}
 
+	/**
+	 * Add the pixels to the given array, as blue, green and red values. May be done more than once.
+	 */
 	public void addToArray(final int[] pixels) {
 		decodeHeader();
+		offset = headerSize;
 		int i = 0;
 		final int maxValues = numPixels * 3;
 		if (data[2] == 0x02 && data[16] == 0x20) {
@@ -55,6 +60,7 @@ class TGAReader {
 
 	public void addToArrayWeighted(final int[] pixels, final int weight) {
 		decodeHeader();
+		offset = headerSize;
 		int i = 0;
 		final int maxValues = numPixels * 3;
 		if (data[2] == 0x02 && data[16] == 0x20) {
@@ -129,4 +135,51 @@ class TGAReader {
 	private void skip(final int bytes) {
 		offset += bytes;
 	}
+
+	/**
+	 * @return A reader over the same image as raw 24-bit pixels, which are the quickest to add; this reader if it already is
+	 *         one. Worth it when the image is added more than once.
+	 */
+	TGAReader uncompressed() {
+		decodeHeader();
+		if (data[2] == 0x02 && data[16] == 0x18) {
+			return this;
+		}
+		final byte[] raw = new byte[headerSize + numPixels * 3];
+		System.arraycopy(data, 0, raw, 0, headerSize);
+		raw[0] = 0; // No image ID follows
+		raw[2] = 0x02;
+		raw[16] = 0x18;
+		offset = headerSize;
+		int i = headerSize;
+		if (data[2] == 0x02 && data[16] == 0x20) {
+			while (i < raw.length) {
+				raw[i++] = data[offset++];
+				raw[i++] = data[offset++];
+				raw[i++] = data[offset++];
+				skip(1); // Ignore alpha
+			}
+		} else {
+			while (i < raw.length) {
+				int nb = read(data);
+				if ((nb & 0x80) == 0) {
+					final int length = (nb + 1) * 3;
+					System.arraycopy(data, offset, raw, i, length);
+					offset += length;
+					i += length;
+				} else {
+					nb &= 0x7f;
+					final byte b = data[offset++];
+					final byte g = data[offset++];
+					final byte r = data[offset++];
+					for (int j = 0; j <= nb; j++) {
+						raw[i++] = b;
+						raw[i++] = g;
+						raw[i++] = r;
+					}
+				}
+			}
+		}
+		return new TGAReader(raw);
+	}
 }
@@ -10,6 +10,11 @@ public interface VideoHandler {
 
 	public void destroy();
 
+	/**
+	 * Wait until every frame made from the sub-frames closed so far has been saved.
+	 */
+	public void flush();
+
 	public boolean isLocked();
 
 	public void modifyFindResults(String pathName, Collection<String> existingFiles);
@@ -1,6 +1,11 @@
 package net.srcdemo.video.factories;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import net.srcdemo.SrcDemo;
+import net.srcdemo.video.BlendVariant;
 import net.srcdemo.video.FrameBlender;
 import net.srcdemo.video.FrameWeighter;
 import net.srcdemo.video.VideoHandler;
@@ -8,21 +13,23 @@ import net.srcdemo.video.VideoHandlerFactory;
 import net.srcdemo.video.image.ImageSavingTaskFactory;
 
 public class FrameBlenderVideoHandlerFactory extends VideoHandlerFactory {
-	private final int blendRate;
-	private final FrameWeighter frameWeighter;
-	private final ImageSavingTaskFactory imgFactory;
-	private final int shutterAngle;
+	private final List<BlendVariant> variants;
 
 	public FrameBlenderVideoHandlerFactory(final ImageSavingTaskFactory imgFactory, final int blendRate,
 		final int shutterAngle, final FrameWeighter frameWeighter) {
-		this.imgFactory = imgFactory;
-		this.blendRate = blendRate;
-		this.shutterAngle = shutterAngle;
-		this.frameWeighter = frameWeighter;
+		this(Collections.singletonList(new BlendVariant(null, imgFactory, blendRate, shutterAngle, frameWeighter)));
+	}
+
+	/**
+	 * @param variants
+	 *            Ways to blend each demo's sub-frames, all from the same capture; previews are made from the first one.
+	 */
+	public FrameBlenderVideoHandlerFactory(final List<BlendVariant> variants) {
+		this.variants = new ArrayList<BlendVariant>(variants);
 	}
 
 	@Override
 	public VideoHandler buildHandler(final SrcDemo demo) {
-		return new FrameBlender(demo, imgFactory, blendRate, shutterAngle, frameWeighter);
+		return new FrameBlender(demo, variants);
 	}
 }
@@ -3,38 +3,124 @@ package net.srcdemo.video.image;
 import java.io.File;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+import net.srcdemo.FrameEventLog;
+import net.srcdemo.MemoryGovernor;
+import net.srcdemo.PipelineMetrics;
+import net.srcdemo.PipelineMetrics.Queue;
 import net.srcdemo.SrcDemo;
 import net.srcdemo.SrcLogger;
 
 public class ImageSaver extends Thread {
-	private SrcDemo demo;
-	private BlockingQueue<ImageSavingTask> tasks = new ArrayBlockingQueue<ImageSavingTask>(4);
+	private volatile SrcDemo demo;
+	private final String directory;
+	/**
+	 * Number of tasks added but not saved or dropped yet.
+	 */
+	private int pending = 0;
+	private final ReentrantLock pendingLock = new ReentrantLock();
+	private final Condition pendingSaved = pendingLock.newCondition();
+	private volatile BlockingQueue<ImageSavingTask> tasks = new ArrayBlockingQueue<ImageSavingTask>(4);
 
 	public ImageSaver(final SrcDemo demo) {
+		this(demo, null);
+	}
+
+	/**
+	 * @param directory
+	 *            Folder to save frames into, relative to where the demo's frames are normally saved, or null to save them
+	 *            there. Created when the first frame is saved. Only the saver without a folder counts its frames as
+	 *            saved frames of the demo, so that extra variants don't count each frame again.
+	 */
+	public ImageSaver(final SrcDemo demo, final String directory) {
 		super("Image saving thread");
 		this.demo = demo;
+		this.directory = directory;
 		setDaemon(true);
 		start();
 	}
 
 	public void add(final ImageSavingTask imgSavingTask) {
+		MemoryGovernor.reserveQueued(imgSavingTask.getReservedBytes());
+		pendingLock.lock();
+		try {
+			pending++;
+		}
+		finally {
+			pendingLock.unlock();
+		}
 		try {
 			tasks.put(imgSavingTask);
+			PipelineMetrics.enqueued(Queue.IMAGE_SAVE);
+			if (FrameEventLog.isEnabled()) {
+				FrameEventLog.saveQueued(demo.getPrefix(), imgSavingTask.getSequenceIndex());
+			}
 			if (SrcLogger.getLogVideo()) {
-				SrcLogger.logVideo("Image saving task queued: " + imgSavingTask);
+				SrcLogger.logVideo("Image saving task queued: {}", imgSavingTask);
 			}
 		}
 		catch (final InterruptedException e) {
+			MemoryGovernor.releaseQueued(imgSavingTask.getReservedBytes());
+			taskDone();
 			if (SrcLogger.getLogVideo()) {
 				SrcLogger.logVideo("ImageSaver interrupted while putting: " + imgSavingTask);
 			}
 		}
 	}
 
+	/**
+	 * Wait until every task added so far has been saved, or until this saver is interrupted.
+	 */
+	public void flush() {
+		pendingLock.lock();
+		try {
+			while (pending > 0 && tasks != null) {
+				pendingSaved.await();
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			pendingLock.unlock();
+		}
+	}
+
+	private File getOutputFile(final SrcDemo savingDemo, final String fileSuffix) {
+		final File backedFile = savingDemo.getBackedFile(fileSuffix);
+		if (directory == null) {
+			return backedFile;
+		}
+		final File outputDirectory = new File(backedFile.getParentFile(), directory);
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			SrcLogger.error("Cannot create folder to save frames into: " + outputDirectory);
+		}
+		return new File(outputDirectory, backedFile.getName());
+	}
+
 	@Override
 	public void interrupt() {
+		// Tasks which will never be saved don't hold memory anymore
+		final BlockingQueue<ImageSavingTask> remaining = tasks;
+		if (remaining != null) {
+			ImageSavingTask task;
+			while ((task = remaining.poll()) != null) {
+				PipelineMetrics.dequeued(Queue.IMAGE_SAVE);
+				MemoryGovernor.releaseQueued(task.getReservedBytes());
+				taskDone();
+			}
+		}
 		tasks = null;
+		// Nothing will be saved anymore; don't leave anyone waiting for it
+		pendingLock.lock();
+		try {
+			pendingSaved.signalAll();
+		}
+		finally {
+			pendingLock.unlock();
+		}
 		demo = null;
 		super.interrupt();
 	}
@@ -42,9 +128,14 @@ public class ImageSaver extends Thread {
 	@Override
 	public void run() {
 		while (true) {
+			final BlockingQueue<ImageSavingTask> queue = tasks;
+			if (queue == null) {
+				break;
+			}
 			ImageSavingTask task;
 			try {
-				task = tasks.take();
+				task = queue.take();
+				PipelineMetrics.dequeued(Queue.IMAGE_SAVE);
 			}
 			catch (final InterruptedException e) {
 				if (SrcLogger.getLogVideo()) {
@@ -52,11 +143,40 @@ public class ImageSaver extends Thread {
 				}
 				break;
 			}
-			final File outputFile = demo.getBackedFile(String.format("%06d", task.getSequenceIndex()) + "."
-				+ task.getExtension());
-			if (task.save(outputFile)) {
-				demo.notifyFrameSaved(outputFile, task.pixelData, task.width, task.height);
+			final long start = System.nanoTime();
+			try {
+				// Unset once interrupted, possibly while this task was being saved
+				final SrcDemo savingDemo = demo;
+				if (savingDemo == null) {
+					continue;
+				}
+				final File outputFile = getOutputFile(savingDemo, String.format("%06d", task.getSequenceIndex()) + "."
+					+ task.getExtension());
+				if (task.save(outputFile) && directory == null) {
+					savingDemo.notifyFrameSaved(outputFile);
+				}
+				if (FrameEventLog.isEnabled()) {
+					FrameEventLog.saveFinished(savingDemo.getPrefix(), task.getSequenceIndex(), start);
+				}
+			}
+			catch (final RuntimeException e) {
+				SrcLogger.error("Error while saving frame " + task.getSequenceIndex(), e);
 			}
+			finally {
+				MemoryGovernor.releaseQueued(task.getReservedBytes());
+				taskDone();
+			}
+		}
+	}
+
+	private void taskDone() {
+		pendingLock.lock();
+		try {
+			pending--;
+			pendingSaved.signalAll();
+		}
+		finally {
+			pendingLock.unlock();
 		}
 	}
 }
@@ -1,8 +1,11 @@
 package net.srcdemo.video.image;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 
+import net.srcdemo.PipelineMetrics;
+import net.srcdemo.PipelineMetrics.Stage;
 import net.srcdemo.SrcLogger;
 
 public abstract class ImageSavingTask {
@@ -18,34 +21,70 @@ public abstract class ImageSavingTask {
 		this.height = height;
 	}
 
-	protected abstract boolean doSave(File outputFile) throws IOException;
+	/**
+	 * @return The image, encoded in its file format.
+	 */
+	protected abstract byte[] encode() throws IOException;
 
 	public abstract String getExtension();
 
+	/**
+	 * @return Approximate number of bytes held by this task until it is saved.
+	 */
+	long getReservedBytes() {
+		return width * (long) height * 4L;
+	}
+
 	int getSequenceIndex() {
 		return sequenceIndex;
 	}
 
-	boolean save(final File outputFile) {
+	/**
+	 * Encode the image and write it to the given file. The pixels are let go of once encoded.
+	 *
+	 * @return Whether the image was saved; errors are logged.
+	 */
+	public boolean save(final File outputFile) {
 		if (SrcLogger.getLogVideo()) {
-			SrcLogger.logVideo("Spawned " + getExtension() + " image saving task to: " + outputFile);
+			SrcLogger.logVideo("Spawned {} image saving task to: {}", getExtension(), outputFile);
 		}
-		boolean result;
+		final byte[] encoded;
 		try {
-			result = doSave(outputFile);
+			final long start = System.nanoTime();
+			encoded = encode();
+			PipelineMetrics.record(Stage.IMAGE_ENCODE, start);
+		}
+		catch (final IOException e) {
+			SrcLogger.error("Error while encoding " + getExtension() + " for " + outputFile, e);
+			return false;
+		}
+		finally {
+			// The encoded image is all that's needed from here on; don't hold on to the frame while writing it
+			pixelData = null;
+		}
+		if (encoded == null) {
+			SrcLogger.error("Error while encoding " + getExtension() + " for " + outputFile + " (unspecified).");
+			return false;
+		}
+		try {
+			final long start = System.nanoTime();
+			write(outputFile, encoded);
+			PipelineMetrics.record(Stage.DISK_WRITE, start);
 		}
 		catch (final IOException e) {
 			SrcLogger.error("Error while writing " + getExtension() + " to " + outputFile, e);
 			return false;
 		}
-		if (result) {
-			if (SrcLogger.getLogVideo()) {
-				SrcLogger.logVideo("Finished writing " + getExtension() + " to " + outputFile);
-			}
-		} else {
-			SrcLogger.error("Error while writing " + getExtension() + " to " + outputFile + " (unspecified).");
+		if (SrcLogger.getLogVideo()) {
+			SrcLogger.logVideo("Finished writing {} to {}", getExtension(), outputFile);
 		}
-		return result;
+		return true;
+	}
+
+	protected void write(final File outputFile, final byte[] encoded) throws IOException {
+		final FileOutputStream stream = new FileOutputStream(outputFile);
+		stream.write(encoded);
+		stream.close();
 	}
 
 	@Override
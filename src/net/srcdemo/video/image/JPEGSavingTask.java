@@ -1,14 +1,15 @@
 package net.srcdemo.video.image;
 
 import java.awt.image.BufferedImage;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
-import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 public class JPEGSavingTask extends ImageSavingTask {
 	private final float quality;
@@ -19,7 +20,7 @@ public class JPEGSavingTask extends ImageSavingTask {
 	}
 
 	@Override
-	protected boolean doSave(final File outputFile) throws IOException {
+	protected byte[] encode() throws IOException {
 		// I hate Java IO
 		final BufferedImage finalImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 		finalImage.setRGB(0, 0, width, height, pixelData, 0, width);
@@ -27,10 +28,14 @@ public class JPEGSavingTask extends ImageSavingTask {
 		final ImageWriteParam params = writer.getDefaultWriteParam();
 		params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
 		params.setCompressionQuality(quality);
-		writer.setOutput(new FileImageOutputStream(outputFile));
+		final ByteArrayOutputStream encoded = new ByteArrayOutputStream(width * height / 4);
+		final ImageOutputStream output = new MemoryCacheImageOutputStream(encoded);
+		writer.setOutput(output);
 		final IIOImage image = new IIOImage(finalImage, null, null);
 		writer.write(null, image, params);
-		return true;
+		writer.dispose();
+		output.close();
+		return encoded.toByteArray();
 	}
 
 	@Override
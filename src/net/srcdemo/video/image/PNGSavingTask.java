@@ -1,7 +1,7 @@
 package net.srcdemo.video.image;
 
 import java.awt.image.BufferedImage;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 import javax.imageio.ImageIO;
@@ -12,11 +12,14 @@ public class PNGSavingTask extends ImageSavingTask {
 	}
 
 	@Override
-	protected boolean doSave(final File outputFile) throws IOException {
+	protected byte[] encode() throws IOException {
 		final BufferedImage finalImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 		finalImage.setRGB(0, 0, width, height, pixelData, 0, width);
-		ImageIO.write(finalImage, "png", outputFile);
-		return true;
+		final ByteArrayOutputStream encoded = new ByteArrayOutputStream(width * height);
+		if (!ImageIO.write(finalImage, "png", encoded)) {
+			return null;
+		}
+		return encoded.toByteArray();
 	}
 
 	@Override
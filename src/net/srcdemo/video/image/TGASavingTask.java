@@ -3,6 +3,7 @@ package net.srcdemo.video.image;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 public class TGASavingTask extends ImageSavingTask {
@@ -15,18 +16,22 @@ public class TGASavingTask extends ImageSavingTask {
 	}
 
 	@Override
-	protected boolean doSave(final File outputFile) throws IOException {
-		final FileOutputStream stream = new FileOutputStream(outputFile);
-		final FileChannel chan = stream.getChannel();
-		chan.write(tgaWriter.getBuffer());
-		chan.force(true);
-		chan.close();
-		stream.close();
-		return true;
+	protected byte[] encode() {
+		return tgaWriter.getBytes();
 	}
 
 	@Override
 	public String getExtension() {
 		return "tga";
 	}
+
+	@Override
+	protected void write(final File outputFile, final byte[] encoded) throws IOException {
+		final FileOutputStream stream = new FileOutputStream(outputFile);
+		final FileChannel chan = stream.getChannel();
+		chan.write(ByteBuffer.wrap(encoded));
+		chan.force(true);
+		chan.close();
+		stream.close();
+	}
 }